@@ -1,6 +1,9 @@
 import * as path from 'path';
 import * as fs from 'fs';
-import {DatabaseMetadata, foreignKeyFieldNames, makeRelId, relIdsEqual} from '../dbmd';
+import {
+  combineDbmdShards, DatabaseMetadata, DbmdShardManifest, foreignKeyFieldNames, getShardsContainingRelations,
+  isDbmdShardManifest, makeRelId, parseStoredDatabaseMetadataOrShardManifest, relIdsEqual, StoredDatabaseMetadata
+} from '../dbmd';
 import { relIdDescn } from '../util/database-names';
 
 const dbmdPath = path.join(__dirname, 'db', 'pg', 'dbmd.json');
@@ -139,3 +142,71 @@ test('rel ids equal', () => {
     makeRelId('AUTHORITY', 'DRUGS', 'INSENSITIVE_STORED_UPPER')
   ));
 });
+
+test('foreign key is indexed when child has index leading with fk fields', () => {
+  const dbmd = new DatabaseMetadata({
+    ...dbmdStoredProps,
+    relationMetadatas: dbmdStoredProps.relationMetadatas.map((relMd: any) =>
+      relMd.relationId.name === 'compound' ?
+        { ...relMd, indexes: [{ name: 'compound_enteredby_ix', unique: false, fieldNames: ['entered_by', 'id'] }] }
+      : relMd.relationId.name === 'drug_reference' ? { ...relMd, indexes: [] }
+      : relMd
+    ),
+  });
+  const compoundRelId = makeRelId('compound', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const analystRelId = makeRelId('analyst', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const drugRelId = makeRelId('drug', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const drugRefRelId = makeRelId('drug_reference', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const enteredByFk = dbmd.getForeignKeyFromTo(compoundRelId, analystRelId, new Set(['entered_by']));
+  const approvedByFk = dbmd.getForeignKeyFromTo(compoundRelId, analystRelId, new Set(['approved_by']));
+  const drugRefDrugFk = dbmd.getForeignKeyFromTo(drugRefRelId, drugRelId);
+  const drugCompoundFk = dbmd.getForeignKeyFromTo(drugRelId, compoundRelId);
+  expect(dbmd.isForeignKeyIndexed(enteredByFk!)).toBe(true);
+  expect(dbmd.isForeignKeyIndexed(approvedByFk!)).toBe(false);
+  expect(dbmd.isForeignKeyIndexed(drugRefDrugFk!)).toBe(false);
+  expect(dbmd.isForeignKeyIndexed(drugCompoundFk!)).toBeNull(); // no index information recorded for drug
+});
+
+test('shards containing relations are found and combined with the foreign keys between them', () => {
+  const inShard1 = (relMd: any) => ['analyst', 'compound'].includes(relMd.relationId.name);
+  const shardDbmd = (relMds: any[]): StoredDatabaseMetadata => ({
+    ...dbmdStoredProps,
+    relationMetadatas: relMds,
+    foreignKeys: dbmdStoredProps.foreignKeys.filter((fk: any) =>
+      relMds.some(relMd => relIdsEqual(relMd.relationId, fk.foreignKeyRelationId))
+    ),
+  });
+  const shard1Dbmd = shardDbmd(dbmdStoredProps.relationMetadatas.filter(inShard1));
+  const shard2Dbmd = shardDbmd(dbmdStoredProps.relationMetadatas.filter((relMd: any) => !inShard1(relMd)));
+  const manifestJson = JSON.stringify({
+    dbmsName: dbmdStoredProps.dbmsName,
+    dbmsVersion: dbmdStoredProps.dbmsVersion,
+    caseSensitivity: dbmdStoredProps.caseSensitivity,
+    shards: [shard1Dbmd, shard2Dbmd].map((d, ix) => ({
+      file: `dbmd-shards.json.shard-${ix + 1}.json`,
+      schema: null,
+      relations: d.relationMetadatas.map(relMd => relMd.relationId),
+      referencedShards: [],
+      referencingShards: [],
+      hash: '',
+    })),
+  });
+
+  const manifest = parseStoredDatabaseMetadataOrShardManifest(manifestJson) as DbmdShardManifest;
+  expect(isDbmdShardManifest(manifest)).toBe(true);
+  expect(isDbmdShardManifest(parseStoredDatabaseMetadataOrShardManifest(JSON.stringify(dbmdStoredProps)))).toBe(false);
+
+  const compoundRelId = makeRelId('compound', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const analystRelId = makeRelId('analyst', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  const drugRelId = makeRelId('drug', 'drugs', 'INSENSITIVE_STORED_LOWER');
+  expect(getShardsContainingRelations(manifest, [compoundRelId, analystRelId]).map(s => s.file))
+    .toEqual(['dbmd-shards.json.shard-1.json']);
+  expect(getShardsContainingRelations(manifest, [drugRelId, analystRelId]).length).toBe(2);
+
+  const dbmd = new DatabaseMetadata(combineDbmdShards(manifest, [shard1Dbmd]));
+  expect(dbmd.getRelationMetadata(compoundRelId)).toBeTruthy();
+  expect(dbmd.getRelationMetadata(drugRelId)).toBeFalsy();
+  expect(dbmd.getForeignKeyFromTo(compoundRelId, analystRelId, new Set(['entered_by']))).toBeTruthy();
+  // Foreign keys to relations in shards not loaded are omitted.
+  expect(dbmd.foreignKeys.every(fk => inShard1({ relationId: fk.primaryKeyRelationId }))).toBe(true);
+});
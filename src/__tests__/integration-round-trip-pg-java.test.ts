@@ -788,6 +788,71 @@ test('unwrapped child collection of unwrapped child collection property', async
   dbClient.end();
 });
 
+test('generated JSON readers read the same results as the object mapper', async () => {
+  const querySpec: QuerySpec =
+    {
+      queryName: 'test query',
+      resultRepresentations: ['JSON_OBJECT_ROWS'],
+      tableJson: {
+        table: 'drug',
+        fieldExpressions: ['id', 'name', 'cid', 'descr'],
+        parentTables: [
+          {
+            referenceName: 'compound',
+            table: 'compound',
+            fieldExpressions: ['id', 'display_name']
+          }
+        ],
+        childTables: [
+          {
+            collectionName: 'brands',
+            table: 'brand',
+            fieldExpressions: ['brand_name', 'language_code'],
+            parentTables: [
+              {
+                referenceName: 'manufacturer',
+                table: 'manufacturer',
+                fieldExpressions: ['name']
+              }
+            ]
+          },
+          {
+            collectionName: 'referencePriorities',
+            unwrap: true,
+            table: 'drug_reference',
+            fieldExpressions: ['priority']
+          }
+        ]
+      }
+    };
+
+  const qsrcs = generateQueryGroupSources(
+    {defaultSchema: 'drugs', querySpecs: [querySpec]},
+    dbmd,
+    { resultTypeLanguages: ['Java'], javaEmitJsonReaders: true }
+  );
+  const sql = qsrcs[0].generatedSqlsByResultRepr.get('JSON_OBJECT_ROWS')?.sqlText || '';
+  const resTypesSrc = qsrcs[0].generatedResultTypes?.sourceCodeByLanguage.get('Java')?.sourceCode;
+
+  const dbClient: Client = await getDbClient();
+
+  const queryRes = await dbClient.query(sql);
+
+  await testWithResultTypes(
+    resTypesSrc ?? '',
+    queryRes.rows.map((resRow, ix) => (
+      `String row${ix+1}Json = ${JSON.stringify(JSON.stringify(resRow.json))};\n` +
+      `Drug row${ix+1} = jsonMapper.readValue(row${ix+1}Json.getBytes(), Drug.class);\n` +
+      `com.fasterxml.jackson.core.JsonParser row${ix+1}Parser = jsonMapper.createParser(row${ix+1}Json);\n` +
+      `row${ix+1}Parser.nextToken();\n` +
+      `if (!JsonReaders.readDrug(row${ix+1}Parser).equals(row${ix+1}))\n` +
+      `  throw new AssertionError("Generated reader result differs for row ${ix+1}.");\n`
+    )).join('\n')
+  );
+
+  dbClient.end();
+});
+
 test('generateQueries() produces expected output files', async () => {
   const queryGroupSpec: QueryGroupSpec =
   {
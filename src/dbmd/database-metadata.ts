@@ -47,12 +47,24 @@ const FieldDef =
   }).strict();
 export type Field = z.infer<typeof FieldDef>;
 
+// Unique and primary key constraints are represented by the unique indexes which enforce them.
+const IndexDef =
+  z.object({
+    name: z.string(),
+    unique: z.boolean(),
+    fieldNames: z.array(z.string()),
+    cardinality: z.number().nullable().optional(), // estimated number of distinct keys
+  }).strict();
+export type Index = z.infer<typeof IndexDef>;
+
 const RelMetadataDef =
   z.object({
     relationId: RelIdDef,
     relationType: RelTypeDef,
     fields: z.array(FieldDef),
-    comment: z.string().nullable().optional()
+    comment: z.string().nullable().optional(),
+    indexes: z.array(IndexDef).optional(), // absent in metadata generated before indexes were recorded
+    estimatedRowCount: z.number().nullable().optional()
   }).strict();
 export type RelMetadata = z.infer<typeof RelMetadataDef>;
 
@@ -86,6 +98,30 @@ const StoredDatabaseMetadataDef =
 
 export type StoredDatabaseMetadata = z.infer<typeof StoredDatabaseMetadataDef>;
 
+// A shard of database metadata split into shard files, each holding the shard's relations and the foreign keys from
+// its tables. Related shards are listed by file name, and the hash is the hex SHA-256 hash of the shard file.
+const DbmdShardDef =
+  z.object({
+    file: z.string(),
+    schema: z.string().nullable().optional(), // present when sharded by schema
+    relations: z.array(RelIdDef),
+    referencedShards: z.array(z.string()),
+    referencingShards: z.array(z.string()),
+    hash: z.string(),
+  }).strict();
+export type DbmdShard = z.infer<typeof DbmdShardDef>;
+
+const DbmdShardManifestDef =
+  z.object({
+    dbmsName: z.string(),
+    dbmsVersion: z.string(),
+    majorVersion: z.number().nullable().optional(),
+    minorVersion: z.number().nullable().optional(),
+    caseSensitivity: CaseSensitivityDef,
+    shards: z.array(DbmdShardDef),
+  }).strict();
+export type DbmdShardManifest = z.infer<typeof DbmdShardManifestDef>;
+
 export class DatabaseMetadata implements StoredDatabaseMetadata
 {
   readonly relationMetadatas: RelMetadata[];
@@ -166,6 +202,24 @@ export class DatabaseMetadata implements StoredDatabaseMetadata
     return soughtFk;
   }
 
+  // Determine whether the child table of the foreign key has an index with the foreign key fields as its leading
+  // fields, allowing the child rows for a parent row to be found without scanning the child table. Returns null if
+  // the metadata does not record indexes for the child table.
+  isForeignKeyIndexed(fk: ForeignKey): Nullable<boolean>
+  {
+    const childRelMd = this.getRelationMetadata(fk.foreignKeyRelationId);
+
+    if (childRelMd?.indexes == null)
+      return null;
+
+    const fkFieldNames = new Set(foreignKeyFieldNames(fk));
+
+    return childRelMd.indexes.some(index =>
+      index.fieldNames.length >= fkFieldNames.size &&
+      setsEqual(new Set(index.fieldNames.slice(0, fkFieldNames.size)), fkFieldNames)
+    );
+  }
+
   getForeignKeysFromTo
     (
       childRelId: Nullable<RelId>,
@@ -332,4 +386,53 @@ export function parseStoredDatabaseMetadata(s: string): StoredDatabaseMetadata
 {
   const obj = JSON.parse(s);
   return StoredDatabaseMetadataDef.parse(obj);
+}
+
+// Parse the contents of a database metadata file, which may hold either the metadata or a manifest of its shards.
+export function parseStoredDatabaseMetadataOrShardManifest(s: string): StoredDatabaseMetadata | DbmdShardManifest
+{
+  const obj = JSON.parse(s);
+  return 'shards' in obj ? DbmdShardManifestDef.parse(obj) : StoredDatabaseMetadataDef.parse(obj);
+}
+
+export function isDbmdShardManifest(x: StoredDatabaseMetadata | DbmdShardManifest): x is DbmdShardManifest
+{
+  return 'shards' in x;
+}
+
+// Get the shards containing any of the given relations.
+export function getShardsContainingRelations
+  (
+    manifest: DbmdShardManifest,
+    relIds: RelId[]
+  )
+  : DbmdShard[]
+{
+  const relIdKeys = new Set(relIds.map(relIdKey));
+
+  return manifest.shards.filter(shard => shard.relations.some(relId => relIdKeys.has(relIdKey(relId))));
+}
+
+// Combine shards loaded for a manifest as a single database metadata, with the foreign keys between their relations.
+export function combineDbmdShards
+  (
+    manifest: DbmdShardManifest,
+    shardDbmds: StoredDatabaseMetadata[]
+  )
+  : StoredDatabaseMetadata
+{
+  const relationMetadatas = shardDbmds.flatMap(shardDbmd => shardDbmd.relationMetadatas);
+  const relIdKeys = new Set(relationMetadatas.map(relMd => relIdKey(relMd.relationId)));
+
+  return {
+    dbmsName: manifest.dbmsName,
+    dbmsVersion: manifest.dbmsVersion,
+    majorVersion: manifest.majorVersion,
+    minorVersion: manifest.minorVersion,
+    caseSensitivity: manifest.caseSensitivity,
+    relationMetadatas,
+    foreignKeys:
+      shardDbmds.flatMap(shardDbmd => shardDbmd.foreignKeys)
+      .filter(fk => relIdKeys.has(relIdKey(fk.primaryKeyRelationId))),
+  };
 }
\ No newline at end of file
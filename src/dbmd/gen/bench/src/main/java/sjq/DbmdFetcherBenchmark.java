@@ -0,0 +1,152 @@
+package sjq;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import static java.util.stream.Collectors.toSet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import sjq.JdbcDbmdFetcher.RelDescr;
+import sjq.models.ForeignKey;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+import sjq.models.RelType;
+import sjq.models.StoredDatabaseMetadata;
+
+// Benchmarks each phase of metadata retrieval via JDBC, the end-to-end retrieval via JdbcDbmdFetcher and via
+// DbmdFetcher (which uses predefined SQL where available for the database type), and serialization of the result,
+// over synthetic in-memory HSQLDB catalogs. Run with "-prof gc" to also report allocation rates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class DbmdFetcherBenchmark
+{
+  private static final String SCHEMA = "BENCH";
+
+  @Param({"100", "1000", "10000"})
+  public int tables;
+
+  @Param({"10"})
+  public int columnsPerTable;
+
+  @Param({"0.2"})
+  public double compositePkFraction;
+
+  @Param({"2"})
+  public int fksPerTable;
+
+  @Param({"0.1"})
+  public double viewFraction;
+
+  private Connection conn;
+  private DatabaseMetaData dbmd;
+  private List<RelDescr> relDescrs;
+  private Set<RelId> relIds;
+  private List<RelId> tableRelIds;
+  private StoredDatabaseMetadata storedDbmd;
+  private ObjectMapper objectMapper;
+  private Path jdbcPropsFile;
+  private DbmdFetcher dbmdFetcher;
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws SQLException, IOException
+  {
+    String jdbcUrl = "jdbc:hsqldb:mem:bench_" + tables + "_" + columnsPerTable + "_" + System.nanoTime();
+
+    conn = DriverManager.getConnection(jdbcUrl, "SA", "");
+    new SyntheticCatalog(SCHEMA, tables, columnsPerTable, compositePkFraction, fksPerTable, viewFraction).create(conn);
+    dbmd = conn.getMetaData();
+
+    var fetcher = new JdbcDbmdFetcher();
+    relDescrs = fetcher.fetchRelationDescriptions(dbmd, SCHEMA, true, null, null);
+    relIds = relDescrs.stream().map(RelDescr::relId).collect(toSet());
+    tableRelIds = relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+    storedDbmd = fetcher.fetchMetadata(conn, SCHEMA, true, true, null, null);
+
+    objectMapper = new ObjectMapper();
+    objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+
+    jdbcPropsFile = Files.createTempFile("bench-jdbc", ".properties");
+    Files.writeString(jdbcPropsFile,
+      "jdbc.driverClassName=org.hsqldb.jdbc.JDBCDriver\n" +
+      "jdbc.url=" + jdbcUrl + "\n" +
+      "jdbc.username=SA\n" +
+      "jdbc.password=\n"
+    );
+    dbmdFetcher = new DbmdFetcher(jdbcPropsFile, false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws SQLException, IOException
+  {
+    try (Statement stmt = conn.createStatement())
+    {
+      stmt.execute("shutdown");
+    }
+    conn.close();
+    Files.deleteIfExists(jdbcPropsFile);
+  }
+
+  @Benchmark
+  public List<RelDescr> relationDescriptions()
+    throws SQLException
+  {
+    return new JdbcDbmdFetcher().fetchRelationDescriptions(dbmd, SCHEMA, true, null, null);
+  }
+
+  @Benchmark
+  public Map<RelId, Map<String, Integer>> primaryKeys()
+    throws SQLException
+  {
+    return new JdbcDbmdFetcher().fetchPrimaryKeyPartNumbers(dbmd, SCHEMA, relIds);
+  }
+
+  // Includes fetching the primary keys, which are needed to construct the fields.
+  @Benchmark
+  public List<RelMetadata> relationMetadatas()
+    throws SQLException
+  {
+    return new JdbcDbmdFetcher().fetchRelationMetadatas(relDescrs, SCHEMA, dbmd);
+  }
+
+  @Benchmark
+  public List<ForeignKey> foreignKeys()
+    throws SQLException
+  {
+    return new JdbcDbmdFetcher().fetchForeignKeys(dbmd, SCHEMA, tableRelIds);
+  }
+
+  @Benchmark
+  public StoredDatabaseMetadata endToEndJdbc()
+  {
+    return new JdbcDbmdFetcher().fetchMetadata(conn, SCHEMA, true, true, null, null);
+  }
+
+  @Benchmark
+  public StoredDatabaseMetadata endToEndDbmdFetcher()
+  {
+    return dbmdFetcher.fetchMetadata("hsql", SCHEMA + "[.].*", "^$");
+  }
+
+  @Benchmark
+  public byte[] jsonSerialization()
+    throws IOException
+  {
+    return objectMapper.writeValueAsBytes(storedDbmd);
+  }
+}
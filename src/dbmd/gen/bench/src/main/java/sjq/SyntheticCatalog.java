@@ -0,0 +1,130 @@
+package sjq;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Creates a synthetic catalog of tables and views in a schema, for benchmarking metadata retrieval over catalogs
+// of varying size and shape. Tables have a single or (for the given fraction of tables) two-part primary key,
+// foreign keys to randomly chosen earlier tables, and further columns of assorted types. Generation is
+// deterministic for given parameters.
+public record SyntheticCatalog
+  (
+    String schema,
+    int tables,
+    int columnsPerTable,
+    double compositePkFraction,
+    int fksPerTable,
+    double viewFraction
+  )
+{
+  private static final String[] COLUMN_TYPES = {
+    "VARCHAR(50)", "VARCHAR(4000)", "NUMERIC(12,2)", "INTEGER", "BIGINT", "DATE", "TIMESTAMP", "BOOLEAN", "CLOB"
+  };
+
+  private static final int BATCH_SIZE = 500;
+
+  public SyntheticCatalog
+  {
+    if (tables < 1 || columnsPerTable < 2 || fksPerTable < 0)
+      throw new IllegalArgumentException("At least one table with two columns is required.");
+  }
+
+  public static String tableName(int tableNum) { return String.format("T%05d", tableNum); }
+
+  public static String viewName(int tableNum) { return String.format("V%05d", tableNum); }
+
+  public void create(Connection conn)
+    throws SQLException
+  {
+    Random random = new Random(tables * 31L + columnsPerTable);
+    boolean[] compositePk = new boolean[tables];
+    List<String> ddls = new ArrayList<>();
+
+    ddls.add("create schema " + schema);
+
+    for (int t = 0; t < tables; ++t)
+    {
+      compositePk[t] = random.nextDouble() < compositePkFraction;
+
+      List<String> colDefs = new ArrayList<>();
+      List<String> constraints = new ArrayList<>();
+
+      colDefs.add("ID1 INTEGER NOT NULL");
+      if (compositePk[t])
+        colDefs.add("ID2 INTEGER NOT NULL");
+      constraints.add("constraint PK_" + tableName(t) + " primary key (" + (compositePk[t] ? "ID1, ID2" : "ID1") + ")");
+
+      for (int fk = 0; fk < fksPerTable && t > 0; ++fk)
+      {
+        int tgt = random.nextInt(t);
+        String fkCols = compositePk[tgt] ? "FK" + fk + "_1, FK" + fk + "_2" : "FK" + fk + "_1";
+        colDefs.add("FK" + fk + "_1 INTEGER");
+        if (compositePk[tgt])
+          colDefs.add("FK" + fk + "_2 INTEGER");
+        constraints.add(
+          "constraint FK_" + tableName(t) + "_" + fk + " foreign key (" + fkCols + ") " +
+          "references " + schema + "." + tableName(tgt) + (compositePk[tgt] ? " (ID1, ID2)" : " (ID1)")
+        );
+      }
+
+      for (int c = colDefs.size(); c < columnsPerTable; ++c)
+      {
+        String colType = COLUMN_TYPES[random.nextInt(COLUMN_TYPES.length)];
+        colDefs.add("C" + c + " " + colType + (random.nextBoolean() ? " NOT NULL" : ""));
+      }
+
+      ddls.add(
+        "create table " + schema + "." + tableName(t) + " (" +
+          String.join(", ", colDefs) + ", " + String.join(", ", constraints) +
+        ")"
+      );
+
+      if (random.nextDouble() < viewFraction)
+        ddls.add("create view " + schema + "." + viewName(t) + " as select * from " + schema + "." + tableName(t));
+    }
+
+    try (Statement stmt = conn.createStatement())
+    {
+      for (int i = 0; i < ddls.size(); ++i)
+      {
+        stmt.addBatch(ddls.get(i));
+        if ((i + 1) % BATCH_SIZE == 0 || i == ddls.size() - 1)
+          stmt.executeBatch();
+      }
+    }
+  }
+
+  // Create a synthetic catalog in the database at the given JDBC url.
+  public static void main(String[] args)
+    throws SQLException
+  {
+    if (args.length < 3)
+    {
+      System.err.println(
+        "Expected arguments: <jdbc-url> <tables> <columns-per-table> " +
+        "[<composite-pk-fraction> [<fks-per-table> [<view-fraction> [<schema>]]]]"
+      );
+      System.exit(1);
+    }
+
+    var catalog = new SyntheticCatalog(
+      args.length > 6 ? args[6] : "BENCH",
+      Integer.parseInt(args[1]),
+      Integer.parseInt(args[2]),
+      args.length > 3 ? Double.parseDouble(args[3]) : 0.2,
+      args.length > 4 ? Integer.parseInt(args[4]) : 2,
+      args.length > 5 ? Double.parseDouble(args[5]) : 0.1
+    );
+
+    try (Connection conn = DriverManager.getConnection(args[0], "SA", ""); Statement stmt = conn.createStatement())
+    {
+      catalog.create(conn);
+      stmt.execute("shutdown");
+    }
+  }
+}
@@ -71,9 +71,9 @@ async function queryViaPgClient
   {
     const sql =
       (await readTextFile(path.join(__dirname, 'src', 'main', 'resources', 'pg-dbmd.sql')))
-      .replace(/:relIncludePat/g, '$1').replace(/:relExcludePat/g, '$2');
+      .replace(/:relIncludePat/g, '$1').replace(/:relExcludePat/g, '$2').replace(/:relChunkPat/g, '$3');
 
-    const res = await pgClient.query(sql, [include, exclude]);
+    const res = await pgClient.query(sql, [include, exclude, '.*']);
 
     const dbmdJson = JSON.stringify(JSON.parse(res.rows[0].json), null, 2);
 
@@ -110,11 +110,13 @@ async function queryViaMySQLClient
   try
   {
     // Replace named parameters in the SQL with ?'s and make corresponding values array.
-    const paramRegex = /(:rel(In|Ex)cludePat)/g;
+    const paramRegex = /(:rel(Include|Exclude|Chunk)Pat)/g;
     const origSql = await readTextFile(path.join(__dirname, 'src', 'main', 'resources', 'mysql-dbmd.sql'));
     const sql = origSql.replace(paramRegex, '?');
     const paramMatches = Array.from(origSql.matchAll(paramRegex));
-    const paramVals = paramMatches.map(paramMatch => paramMatch[2] === 'In' ? include : exclude);
+    const paramVals = paramMatches.map(paramMatch =>
+      paramMatch[2] === 'Include' ? include : paramMatch[2] === 'Exclude' ? exclude : '.*'
+    );
 
     const res: [any[], any] = await dbConn.execute(sql, paramVals);
 
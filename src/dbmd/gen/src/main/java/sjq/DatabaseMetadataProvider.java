@@ -0,0 +1,206 @@
+package sjq;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.jetbrains.annotations.Nullable;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+import sjq.models.ForeignKey;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+
+// Provides metadata for individual relations on demand, for applications which need only a few relations at a time
+// from a database whose full metadata would be costly to fetch. A relation's metadata, and separately the foreign
+// keys from and to it, are fetched on first access and cached, up to a maximum number of cached items with the least
+// recently used evicted first, and for at most the given time to live. Safe for concurrent use: concurrent requests
+// for an item not yet cached share a single fetch. Failed fetches are not cached.
+public class DatabaseMetadataProvider
+{
+  private final ConnectionSource connSource;
+  private final JdbcDbmdFetcher.DateMapping dateMapping;
+  private final int maxCachedItems;
+  private final long ttlNanos;
+
+  // Guarded by itself. Iterates in least to most recently used order.
+  private final LinkedHashMap<CacheKey, CacheEntry> cache;
+
+  public record RelationForeignKeys
+    (
+      List<ForeignKey> foreignKeysFrom,
+      List<ForeignKey> foreignKeysTo
+    )
+  {}
+
+  private enum Item { RELATION_METADATA, FOREIGN_KEYS }
+
+  private record CacheKey(RelId relId, Item item) {}
+
+  private record CacheEntry(CompletableFuture<Object> value, long createdNanos) {}
+
+  public DatabaseMetadataProvider
+    (
+      ConnectionSource connSource,
+      JdbcDbmdFetcher.DateMapping dateMapping,
+      int maxCachedItems,
+      Duration timeToLive
+    )
+  {
+    if (maxCachedItems < 1)
+      throw new IllegalArgumentException("At least one cached item must be allowed.");
+
+    this.connSource = connSource;
+    this.dateMapping = dateMapping;
+    this.maxCachedItems = maxCachedItems;
+    this.ttlNanos = timeToLive.toNanos();
+    this.cache = new LinkedHashMap<>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest)
+      {
+        return size() > DatabaseMetadataProvider.this.maxCachedItems;
+      }
+    };
+  }
+
+  // Get the metadata for the given relation, or null if the relation does not exist.
+  public @Nullable RelMetadata getRelationMetadata(RelId relId)
+  {
+    return (RelMetadata) get(new CacheKey(relId, Item.RELATION_METADATA));
+  }
+
+  public RelationForeignKeys getForeignKeys(RelId relId)
+  {
+    return (RelationForeignKeys) get(new CacheKey(relId, Item.FOREIGN_KEYS));
+  }
+
+  public List<ForeignKey> getForeignKeysFrom(RelId relId)
+  {
+    return getForeignKeys(relId).foreignKeysFrom();
+  }
+
+  public List<ForeignKey> getForeignKeysTo(RelId relId)
+  {
+    return getForeignKeys(relId).foreignKeysTo();
+  }
+
+  // Remove cached items for the given relation, including the cached foreign keys of other relations which
+  // reference or are referenced by it, so they are fetched again on next access. A fetch in progress for a removed
+  // item still completes for its waiting callers, but its result is not cached.
+  public void invalidate(RelId relId)
+  {
+    synchronized (cache)
+    {
+      Iterator<Map.Entry<CacheKey, CacheEntry>> entries = cache.entrySet().iterator();
+      while (entries.hasNext())
+      {
+        Map.Entry<CacheKey, CacheEntry> entry = entries.next();
+        if (entry.getKey().relId().equals(relId) || referencesRelation(entry.getValue(), relId))
+          entries.remove();
+      }
+    }
+  }
+
+  public void invalidateAll()
+  {
+    synchronized (cache)
+    {
+      cache.clear();
+    }
+  }
+
+  public int cachedItemCount()
+  {
+    synchronized (cache)
+    {
+      return cache.size();
+    }
+  }
+
+  private @Nullable Object get(CacheKey key)
+  {
+    CacheEntry entry;
+    boolean fetchHere = false;
+
+    synchronized (cache)
+    {
+      @Nullable CacheEntry cached = cache.get(key);
+      if (cached != null && System.nanoTime() - cached.createdNanos() < ttlNanos)
+        entry = cached;
+      else
+      {
+        entry = new CacheEntry(new CompletableFuture<>(), System.nanoTime());
+        cache.put(key, entry);
+        fetchHere = true;
+      }
+    }
+
+    if (fetchHere)
+    {
+      try
+      {
+        entry.value().complete(fetch(key));
+      }
+      catch (Exception e)
+      {
+        synchronized (cache)
+        {
+          cache.remove(key, entry);
+        }
+        entry.value().completeExceptionally(e);
+      }
+    }
+
+    try
+    {
+      return entry.value().join();
+    }
+    catch (CompletionException e)
+    {
+      if (e.getCause() instanceof RuntimeException re)
+        throw re;
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private @Nullable Object fetch(CacheKey key)
+    throws SQLException
+  {
+    // A fetcher is made for each fetch, so the names it interns are not held beyond the items cached here.
+    var fetcher = new JdbcDbmdFetcher(dateMapping);
+
+    try (Connection conn = connSource.openConnection())
+    {
+      DatabaseMetaData dbmd = conn.getMetaData();
+      RelId relId = key.relId();
+
+      return switch (key.item())
+      {
+        case RELATION_METADATA -> fetcher.fetchRelationMetadata(dbmd, relId);
+        case FOREIGN_KEYS -> new RelationForeignKeys(
+          fetcher.fetchForeignKeysFromTable(dbmd, relId),
+          fetcher.fetchForeignKeysToTable(dbmd, relId)
+        );
+      };
+    }
+  }
+
+  private static boolean referencesRelation(CacheEntry entry, RelId relId)
+  {
+    if (!entry.value().isDone() || entry.value().isCompletedExceptionally())
+      return false;
+
+    if (entry.value().join() instanceof RelationForeignKeys relFks)
+      return
+        relFks.foreignKeysFrom().stream().anyMatch(fk -> fk.primaryKeyRelationId().equals(relId)) ||
+        relFks.foreignKeysTo().stream().anyMatch(fk -> fk.foreignKeyRelationId().equals(relId));
+
+    return false;
+  }
+}
@@ -0,0 +1,265 @@
+package sjq;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jdbi.v3.core.ConnectionFactory;
+import org.jdbi.v3.core.Jdbi;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+
+// Generates database metadata for each entry of a manifest, running up to a given number of entries concurrently
+// in the same JVM. Entries with the same JDBC connection properties, whether or not from the same file, share a
+// Jdbi instance backed by a pool of connections, so that a connection opened for one entry is reused by later ones.
+// The entries' options are checked before any is run. A failing entry is reported in its result without affecting
+// the others.
+public class DbmdBatch
+{
+  private static final Logger log = LoggerFactory.getLogger(DbmdBatch.class);
+
+  private static final TypeReference<List<Entry>> ENTRIES_TYPE = new TypeReference<>() {};
+
+  private static final int CONNECTION_VALIDATION_TIMEOUT_SECS = 5;
+
+  private final int concurrency;
+  private final Map<Map<String, String>, ConnectionResources> connResourcesByProps = new ConcurrentHashMap<>();
+
+  // A manifest entry. Relative paths are resolved against the manifest file's directory.
+  public record Entry
+    (
+      String jdbcPropsFile,
+      String dbType,
+      String outputFile,
+      @Nullable String includeRegex,
+      @Nullable String excludeRegex,
+      @Nullable Boolean useJdbcMetadata,
+      @Nullable Integer parallelism,
+      @Nullable Boolean streamOutput,
+      @Nullable Boolean passThroughSqlJson,
+      @Nullable Integer sqlChunks,
+      @Nullable String incremental
+    ) {}
+
+  public record EntryResult
+    (
+      Path outputFile,
+      boolean success,
+      @Nullable String error,
+      long elapsedMillis
+    ) {}
+
+  private record ConnectionResources(Properties props, PooledConnectionFactory connFactory, Jdbi jdbi) {}
+
+  public DbmdBatch(int concurrency)
+  {
+    if (concurrency < 1)
+      throw new IllegalArgumentException("Batch concurrency must be at least 1.");
+    this.concurrency = concurrency;
+  }
+
+  // Read the entries of a manifest file, which should contain a JSON array of entry objects.
+  public static List<Entry> readManifest(Path manifestFile)
+    throws IOException
+  {
+    return new ObjectMapper().readValue(manifestFile.toFile(), ENTRIES_TYPE);
+  }
+
+  // Generate metadata for all entries, returning a result for each in entry order. Throws IllegalArgumentException
+  // without running any entry if some entry has options which may not be used together. Pooled connections are
+  // closed when all entries have been run.
+  public List<EntryResult> run(List<Entry> entries, Path baseDir)
+  {
+    for (Entry entry : entries)
+      checkOptions(entry);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(entries.size(), 1)));
+
+    try
+    {
+      List<Future<EntryResult>> resultFutures = new ArrayList<>();
+      for (Entry entry : entries)
+        resultFutures.add(executor.submit(() -> runEntry(entry, baseDir)));
+
+      List<EntryResult> results = new ArrayList<>();
+      for (Future<EntryResult> resultFuture : resultFutures)
+        results.add(resultFuture.get());
+
+      return results;
+    }
+    catch(InterruptedException | ExecutionException e) { throw new RuntimeException(e); }
+    finally
+    {
+      executor.shutdownNow();
+      closeConnections();
+    }
+  }
+
+  private static void checkOptions(Entry entry)
+  {
+    try
+    {
+      DbmdFetcher.checkOptions(
+        entry.parallelism() != null ? entry.parallelism() : 1,
+        Boolean.TRUE.equals(entry.streamOutput()),
+        Boolean.TRUE.equals(entry.passThroughSqlJson()),
+        entry.sqlChunks() != null ? entry.sqlChunks() : 1,
+        entry.incremental() != null
+      );
+    }
+    catch(IllegalArgumentException e)
+    {
+      throw new IllegalArgumentException(
+        "Invalid options for batch entry with output file " + entry.outputFile() + ": " + e.getMessage()
+      );
+    }
+  }
+
+  private EntryResult runEntry(Entry entry, Path baseDir)
+  {
+    Path outputFile = baseDir.resolve(entry.outputFile());
+    long start = System.nanoTime();
+
+    try
+    {
+      Path jdbcPropsFile = baseDir.resolve(entry.jdbcPropsFile());
+      if (!Files.isRegularFile(jdbcPropsFile))
+        throw new RuntimeException("File not found: " + jdbcPropsFile);
+
+      ConnectionResources connRes = getConnectionResources(jdbcPropsFile);
+
+      var dbmdFetcher = new DbmdFetcher(
+        jdbcPropsFile,
+        connRes.props(),
+        connRes.jdbi(),
+        connRes.connFactory(),
+        Boolean.TRUE.equals(entry.useJdbcMetadata()),
+        entry.parallelism() != null ? entry.parallelism() : 1,
+        Boolean.TRUE.equals(entry.streamOutput()),
+        Boolean.TRUE.equals(entry.passThroughSqlJson()),
+        entry.sqlChunks() != null ? entry.sqlChunks() : 1
+      );
+
+      dbmdFetcher.generateMetadata(
+        entry.dbType(),
+        entry.includeRegex() != null ? entry.includeRegex().trim() : ".*",
+        entry.excludeRegex() != null ? entry.excludeRegex().trim() : "^$",
+        outputFile,
+        entry.incremental() != null ? baseDir.resolve(entry.incremental()) : null
+      );
+
+      return new EntryResult(outputFile, true, null, elapsedMillisSince(start));
+    }
+    catch(Exception e)
+    {
+      log.error("Metadata generation failed for " + outputFile + ".", e);
+      String error = e.getMessage() != null ? e.getMessage() : e.toString();
+      return new EntryResult(outputFile, false, error, elapsedMillisSince(start));
+    }
+  }
+
+  private ConnectionResources getConnectionResources(Path jdbcPropsFile)
+  {
+    Properties props = DbmdFetcher.loadJdbcProperties(jdbcPropsFile);
+
+    Map<String, String> propsKey = new HashMap<>();
+    for (String propName : props.stringPropertyNames())
+      propsKey.put(propName, props.getProperty(propName));
+
+    return connResourcesByProps.computeIfAbsent(propsKey, k -> {
+      var connFactory = new PooledConnectionFactory(props);
+      return new ConnectionResources(props, connFactory, DbmdFetcher.configureJdbi(Jdbi.create(connFactory)));
+    });
+  }
+
+  private void closeConnections()
+  {
+    for (ConnectionResources connRes : connResourcesByProps.values())
+      connRes.connFactory().close();
+    connResourcesByProps.clear();
+  }
+
+  private static long elapsedMillisSince(long startNanos)
+  {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  // Hands out idle connections for handles where any are available, opening new ones otherwise, and takes back the
+  // connections of closed handles as idle, so that connections are only opened as needed by concurrent entries.
+  private static class PooledConnectionFactory implements ConnectionFactory, ConnectionSource
+  {
+    private final DriverConnector driverConnector;
+    private final Deque<Connection> idleConns = new ArrayDeque<>();
+    private boolean closed;
+
+    PooledConnectionFactory(Properties props)
+    {
+      this.driverConnector = new DriverConnector(props);
+    }
+
+    @Override
+    public Connection openConnection()
+      throws SQLException
+    {
+      while (true)
+      {
+        @Nullable Connection conn;
+        synchronized (this)
+        {
+          conn = idleConns.pollFirst();
+        }
+        if (conn == null)
+          return driverConnector.openConnection();
+        if (conn.isValid(CONNECTION_VALIDATION_TIMEOUT_SECS))
+          return conn;
+        closeQuietly(conn);
+      }
+    }
+
+    @Override
+    public synchronized void closeConnection(Connection conn)
+    {
+      if (closed) // handle closed after its entry's run was abandoned
+        closeQuietly(conn);
+      else
+        idleConns.addFirst(conn);
+    }
+
+    synchronized void close()
+    {
+      closed = true;
+      for (Connection conn : idleConns)
+        closeQuietly(conn);
+      idleConns.clear();
+    }
+
+    private static void closeQuietly(Connection conn)
+    {
+      try
+      {
+        conn.close();
+      }
+      catch (SQLException e)
+      {
+        log.warn("Error closing connection: " + e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package sjq;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.Field;
+import sjq.models.ForeignKey;
+import sjq.models.Index;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+import sjq.models.StoredDatabaseMetadata;
+
+// The differences between two versions of database metadata, with a content hash for each relation of the newer
+// version, for use by downstream generators to regenerate only what depends on changed relations. A relation's
+// hash covers its type, comment, fields (ordered by name), indexes (ordered by name) and the foreign keys from it
+// (ordered by referenced relation and constraint name), so the hash of a relation is unchanged exactly when none
+// of these has changed. Statistics, being expected to vary between runs, are not covered.
+// The versions are compared via hash maps keyed by relation id, field name and foreign key identity, in time
+// linear in the size of the metadata.
+@JsonPropertyOrder({
+  "addedRelations", "removedRelations", "modifiedRelations",
+  "addedForeignKeys", "removedForeignKeys", "modifiedForeignKeys",
+  "relationHashes"
+})
+public record DbmdChangeSet
+  (
+    List<RelId> addedRelations,
+    List<RelId> removedRelations,
+    List<RelationChange> modifiedRelations,
+    List<ForeignKey> addedForeignKeys,
+    List<ForeignKey> removedForeignKeys,
+    List<ForeignKey> modifiedForeignKeys,
+    List<RelationHash> relationHashes
+  )
+{
+  @JsonPropertyOrder({"relationId", "propertiesChanged", "addedFields", "removedFields", "modifiedFields"})
+  public record RelationChange
+    (
+      RelId relationId,
+      boolean propertiesChanged, // relation type, comment or indexes
+      List<String> addedFields,
+      List<String> removedFields,
+      List<String> modifiedFields
+    )
+  {}
+
+  @JsonPropertyOrder({"relationId", "hash"})
+  public record RelationHash
+    (
+      RelId relationId,
+      String hash
+    )
+  {}
+
+  // Foreign keys are identified by their relations and constraint name, or if unnamed, by their components too.
+  private record FkKey(RelId srcRel, RelId tgtRel, @Nullable String constraintName, @Nullable Object unnamedComps) {}
+
+  private static final ObjectMapper hashingMapper = new ObjectMapper();
+
+  private static final Comparator<RelId> RELID_ORDER =
+    Comparator.comparing(RelId::schema, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+    .thenComparing(RelId::name);
+
+  private static final Comparator<ForeignKey> FK_ORDER =
+    Comparator.comparing(ForeignKey::foreignKeyRelationId, RELID_ORDER)
+    .thenComparing(ForeignKey::primaryKeyRelationId, RELID_ORDER)
+    .thenComparing(ForeignKey::constraintName, Comparator.nullsFirst(Comparator.naturalOrder()))
+    .thenComparing(fk -> fk.foreignKeyComponents().toString());
+
+  // Compare the previous metadata, if any, with the current metadata. Without previous metadata, all relations and
+  // foreign keys are reported as added.
+  public static DbmdChangeSet compute
+    (
+      @Nullable StoredDatabaseMetadata prevDbmd,
+      StoredDatabaseMetadata dbmd
+    )
+  {
+    Map<RelId, List<ForeignKey>> fksBySrcRel = foreignKeysBySourceRelation(dbmd);
+    Map<RelId, List<ForeignKey>> prevFksBySrcRel =
+      prevDbmd != null ? foreignKeysBySourceRelation(prevDbmd) : Map.of();
+
+    Map<RelId, RelMetadata> prevRelMds = new HashMap<>();
+    if (prevDbmd != null)
+      prevDbmd.relationMetadatas().forEach(relMd -> prevRelMds.put(relMd.relationId(), relMd));
+
+    List<RelId> added = new ArrayList<>();
+    List<RelationChange> modified = new ArrayList<>();
+    List<RelationHash> hashes = new ArrayList<>();
+
+    for (RelMetadata relMd : dbmd.relationMetadatas())
+    {
+      RelId relId = relMd.relationId();
+      List<ForeignKey> relFks = fksBySrcRel.getOrDefault(relId, List.of());
+      String hash = relationHash(relMd, relFks);
+      hashes.add(new RelationHash(relId, hash));
+
+      @Nullable RelMetadata prevRelMd = prevRelMds.remove(relId);
+      if (prevRelMd == null)
+        added.add(relId);
+      else if (!hash.equals(relationHash(prevRelMd, prevFksBySrcRel.getOrDefault(relId, List.of()))))
+      {
+        @Nullable RelationChange relChange = compareRelations(prevRelMd, relMd);
+        // A relation may be modified only in its foreign keys, which are reported separately.
+        modified.add(relChange != null ? relChange : new RelationChange(relId, false, List.of(), List.of(), List.of()));
+      }
+    }
+
+    List<RelId> removed = new ArrayList<>(prevRelMds.keySet());
+
+    Map<FkKey, ForeignKey> prevFks = new HashMap<>();
+    if (prevDbmd != null)
+      prevDbmd.foreignKeys().forEach(fk -> prevFks.put(fkKey(fk), fk));
+
+    List<ForeignKey> addedFks = new ArrayList<>();
+    List<ForeignKey> modifiedFks = new ArrayList<>();
+    for (ForeignKey fk : dbmd.foreignKeys())
+    {
+      @Nullable ForeignKey prevFk = prevFks.remove(fkKey(fk));
+      if (prevFk == null)
+        addedFks.add(fk);
+      else if (!prevFk.equals(fk))
+        modifiedFks.add(fk);
+    }
+    List<ForeignKey> removedFks = new ArrayList<>(prevFks.values());
+
+    added.sort(RELID_ORDER);
+    removed.sort(RELID_ORDER);
+    modified.sort(Comparator.comparing(RelationChange::relationId, RELID_ORDER));
+    addedFks.sort(FK_ORDER);
+    removedFks.sort(FK_ORDER);
+    modifiedFks.sort(FK_ORDER);
+    hashes.sort(Comparator.comparing(RelationHash::relationId, RELID_ORDER));
+
+    return new DbmdChangeSet(added, removed, modified, addedFks, removedFks, modifiedFks, hashes);
+  }
+
+  @JsonIgnore
+  public boolean isEmpty()
+  {
+    return
+      addedRelations.isEmpty() && removedRelations.isEmpty() && modifiedRelations.isEmpty() &&
+      addedForeignKeys.isEmpty() && removedForeignKeys.isEmpty() && modifiedForeignKeys.isEmpty();
+  }
+
+  // Compute a hex-encoded SHA-256 hash of the relation's metadata and foreign keys which does not depend on the
+  // order of its fields or foreign keys.
+  public static String relationHash(RelMetadata relMd, List<ForeignKey> relFks)
+  {
+    List<Field> sortedFields = new ArrayList<>(relMd.fields());
+    sortedFields.sort(Comparator.comparing(Field::name));
+
+    List<ForeignKey> sortedFks = new ArrayList<>(relFks);
+    sortedFks.sort(FK_ORDER);
+
+    record HashedContent(RelMetadata relMd, List<ForeignKey> fks) {}
+
+    var content = new HashedContent(
+      new RelMetadata(
+        relMd.relationId(), relMd.relationType(), sortedFields, relMd.comment(), indexDefinitions(relMd), null
+      ),
+      sortedFks
+    );
+
+    try
+    {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(md.digest(hashingMapper.writeValueAsBytes(content)));
+    }
+    catch (NoSuchAlgorithmException | JsonProcessingException e) { throw new RuntimeException(e); }
+  }
+
+  // Compare versions of a relation by its properties and fields, returning null if these are the same.
+  private static @Nullable RelationChange compareRelations(RelMetadata prevRelMd, RelMetadata relMd)
+  {
+    boolean propsChanged =
+      prevRelMd.relationType() != relMd.relationType() ||
+      !Objects.equals(prevRelMd.comment(), relMd.comment()) ||
+      !indexDefinitions(prevRelMd).equals(indexDefinitions(relMd));
+
+    Map<String, Field> prevFields = new HashMap<>();
+    prevRelMd.fields().forEach(f -> prevFields.put(f.name(), f));
+
+    List<String> addedFields = new ArrayList<>();
+    List<String> modifiedFields = new ArrayList<>();
+    for (Field f : relMd.fields())
+    {
+      @Nullable Field prevField = prevFields.remove(f.name());
+      if (prevField == null)
+        addedFields.add(f.name());
+      else if (!prevField.equals(f))
+        modifiedFields.add(f.name());
+    }
+
+    // Removed fields are listed in their previous order, the others in their current order.
+    List<String> removedFields =
+      prevRelMd.fields().stream().map(Field::name).filter(prevFields::containsKey).toList();
+
+    if (!propsChanged && addedFields.isEmpty() && removedFields.isEmpty() && modifiedFields.isEmpty())
+      return null;
+
+    return new RelationChange(relMd.relationId(), propsChanged, addedFields, removedFields, modifiedFields);
+  }
+
+  // Get the relation's indexes ordered by name and without their statistics.
+  private static List<Index> indexDefinitions(RelMetadata relMd)
+  {
+    return
+      relMd.indexes().stream()
+      .map(ix -> new Index(ix.name(), ix.unique(), ix.fieldNames(), null))
+      .sorted(Comparator.comparing(Index::name))
+      .toList();
+  }
+
+  private static Map<RelId, List<ForeignKey>> foreignKeysBySourceRelation(StoredDatabaseMetadata dbmd)
+  {
+    Map<RelId, List<ForeignKey>> fksBySrcRel = new HashMap<>();
+    for (ForeignKey fk : dbmd.foreignKeys())
+      fksBySrcRel.computeIfAbsent(fk.foreignKeyRelationId(), k -> new ArrayList<>()).add(fk);
+    return fksBySrcRel;
+  }
+
+  private static FkKey fkKey(ForeignKey fk)
+  {
+    return new FkKey(
+      fk.foreignKeyRelationId(),
+      fk.primaryKeyRelationId(),
+      fk.constraintName(),
+      fk.constraintName() == null ? fk.foreignKeyComponents() : null
+    );
+  }
+}
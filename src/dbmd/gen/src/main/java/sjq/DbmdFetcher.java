@@ -3,40 +3,188 @@ package sjq;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.statement.SqlStatements;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+import sjq.models.CaseSensitivity;
+import sjq.models.ForeignKey;
+import sjq.models.RelChangeSignal;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
 import sjq.models.StoredDatabaseMetadata;
 
 public class DbmdFetcher
 {
-  private final ObjectMapper objectMapper;
+  private @Nullable ObjectMapper objectMapper; // created on first use, see objectMapper()
   private final Path jdbcPropsFile;
+  private final Properties jdbcProps;
+  private final DriverConnector driverConnector; // for new connections, which their users close themselves
   private final Jdbi jdbi;
+  private final ConnectionSource connSource; // for the connections of parallel retrieval, from jdbi's connections
   private final boolean useJdbcMetadata;
+  private final int parallelism;
+  private final boolean streamOutput;
+  private final boolean passThroughSqlJson;
+  private final int sqlChunks;
   private static final Logger log = LoggerFactory.getLogger(DbmdFetcher.class);
 
+  private static final JdbcDbmdFetcher.DateMapping DATE_MAPPING = JdbcDbmdFetcher.DateMapping.DATES_AS_DRIVER_REPORTED;
+
+  // Relation chunk pattern for predefined SQL which selects all relations, as when the query is not chunked.
+  private static final String ALL_RELATIONS_CHUNK_PATTERN = ".*";
+
+  private static final String CHUNK_NAME_LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+  // For copying JSON token by token without object binding, which needs only the Jackson core library.
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final TypeReference<List<RelChangeSignal>> REL_CHANGE_SIGNALS_TYPE = new TypeReference<>() {};
+
+  private static final StoredDatabaseMetadata EMPTY_DBMD =
+    new StoredDatabaseMetadata("", "", null, null, CaseSensitivity.SENSITIVE, List.of(), List.of());
+
   public DbmdFetcher(Path jdbcPropsFile, boolean useJdbcMetadata)
   {
-    this.objectMapper = new ObjectMapper();
-    this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    this(jdbcPropsFile, useJdbcMetadata, 1);
+  }
+
+  public DbmdFetcher(Path jdbcPropsFile, boolean useJdbcMetadata, int parallelism)
+  {
+    this(jdbcPropsFile, useJdbcMetadata, parallelism, false, false);
+  }
+
+  public DbmdFetcher
+    (
+      Path jdbcPropsFile,
+      boolean useJdbcMetadata,
+      int parallelism,
+      boolean streamOutput,
+      boolean passThroughSqlJson
+    )
+  {
+    this(jdbcPropsFile, useJdbcMetadata, parallelism, streamOutput, passThroughSqlJson, 1);
+  }
+
+  public DbmdFetcher
+    (
+      Path jdbcPropsFile,
+      boolean useJdbcMetadata,
+      int parallelism,
+      boolean streamOutput,
+      boolean passThroughSqlJson,
+      int sqlChunks
+    )
+  {
+    this(
+      jdbcPropsFile, loadJdbcProperties(jdbcPropsFile), useJdbcMetadata, parallelism, streamOutput, passThroughSqlJson,
+      sqlChunks
+    );
+  }
+
+  private DbmdFetcher
+    (
+      Path jdbcPropsFile,
+      Properties jdbcProps,
+      boolean useJdbcMetadata,
+      int parallelism,
+      boolean streamOutput,
+      boolean passThroughSqlJson,
+      int sqlChunks
+    )
+  {
+    this(
+      jdbcPropsFile, jdbcProps, createJdbi(jdbcProps), new DriverConnector(jdbcProps), useJdbcMetadata, parallelism,
+      streamOutput, passThroughSqlJson, sqlChunks
+    );
+  }
+
+  // Create a fetcher using an existing Jdbi instance for the connection properties, e.g. to reuse connections, with
+  // the source of connections for parallel retrieval backed by the same connection factory.
+  DbmdFetcher
+    (
+      Path jdbcPropsFile,
+      Properties jdbcProps,
+      Jdbi jdbi,
+      ConnectionSource connSource,
+      boolean useJdbcMetadata,
+      int parallelism,
+      boolean streamOutput,
+      boolean passThroughSqlJson,
+      int sqlChunks
+    )
+  {
+    checkOptions(parallelism, streamOutput, passThroughSqlJson, sqlChunks, false);
+
     this.jdbcPropsFile = jdbcPropsFile;
-    this.jdbi = createJdbi(jdbcPropsFile);
+    this.jdbcProps = jdbcProps;
+    this.driverConnector = new DriverConnector(jdbcProps);
+    this.jdbi = jdbi;
+    this.connSource = connSource;
     this.useJdbcMetadata = useJdbcMetadata;
+    this.parallelism = parallelism;
+    this.streamOutput = streamOutput;
+    this.passThroughSqlJson = passThroughSqlJson;
+    this.sqlChunks = sqlChunks;
+  }
+
+  // Check that the given options may be used together, throwing IllegalArgumentException if they may not.
+  static void checkOptions
+    (
+      int parallelism,
+      boolean streamOutput,
+      boolean passThroughSqlJson,
+      int sqlChunks,
+      boolean incremental
+    )
+  {
+    if ( parallelism < 1 )
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    if ( streamOutput && parallelism > 1 )
+      throw new IllegalArgumentException("Streaming output is not supported with parallel metadata retrieval.");
+    if ( sqlChunks < 1 || sqlChunks > CHUNK_NAME_LETTERS.length() )
+      throw new IllegalArgumentException("SQL chunks must be from 1 to " + CHUNK_NAME_LETTERS.length() + ".");
+    if ( passThroughSqlJson && sqlChunks > 1 )
+      throw new IllegalArgumentException("Passing through SQL JSON is not supported with chunked SQL.");
+    if ( incremental && (streamOutput || parallelism > 1 || sqlChunks > 1 || passThroughSqlJson) )
+      throw new IllegalArgumentException(
+        "Incremental generation is not supported with streaming output, parallel retrieval, chunked SQL or " +
+        "passing through SQL JSON."
+      );
   }
 
   private static String usage()
@@ -44,7 +192,7 @@ public class DbmdFetcher
     return """
       Expected arguments: [options] <jdbc-props-file> <database-type> <output-file>
         jdbc-props-file: JDBC properties file, with properties jdbc.driverClassName, jdbc.url, jdbc.username, jdbc.password.
-        database-type: database type, one of 'pg', 'mysql', 'hsql', 'ora'
+        database-type: database type, one of 'pg', 'mysql', 'hsql', 'ora', 'sqlite'
         output-file: File to which to write query result json value.
         [Options]
            --use-jdbc-md: Use jdbc metadata even if predefined dbmd SQL is found for the database type.
@@ -52,6 +200,56 @@ public class DbmdFetcher
            --exclude-regex <table/view-name regex>: Regular expression for names of tables/views to be excluded.
            --include-regex-base64 <table/view-name regex>: Regular expression for names of tables/views to be included, base-64 encoded.
            --exclude-regex-base64 <table/view-name regex>: Regular expression for names of tables/views to be excluded, base-64 encoded.
+           --parallelism <n>: Number of concurrent connections to use when retrieving metadata via JDBC (default 1).
+           --stream-output: When retrieving metadata via JDBC, write each relation's metadata to the output file as
+             soon as it is read instead of building the complete metadata in memory first.
+           --pass-through-sql-json: When querying via predefined SQL, stream the query's JSON result to the output file,
+             checking and reformatting it token by token, instead of binding it to metadata objects first.
+             Properties are then written in the order and with the omissions of the database's JSON output.
+           --sql-chunks <n>: When querying via predefined SQL, split the relations into n chunks (at most 26) by the first
+             letter of their names, and run the query for each chunk separately, up to <parallelism> chunks at once on
+             separate connections, merging the results. Relations and foreign keys are then ordered by relation id.
+           --server: Instead of the above arguments, serve generation requests read as JSON lines from standard input,
+             writing a JSON line response for each to standard output, until the input is closed. See DbmdServer.
+           --batch <manifest file> [--batch-concurrency <n>]: Instead of the above arguments, generate metadata for
+             each entry of the manifest, a JSON array of objects with properties jdbcPropsFile, dbType, outputFile and
+             optionally includeRegex, excludeRegex, useJdbcMetadata, parallelism, streamOutput, passThroughSqlJson,
+             sqlChunks and incremental, which are combined as for the corresponding options above. Up to n entries
+             (default 4) are run at once, with connections reused among entries having the same connection
+             properties. Relative paths are resolved against the manifest's directory. No entry is run if any has
+             options which may not be combined. Exits with failure status if any entry failed, after all entries
+             have been run.
+           --binary-snapshot <snapshot file>: After writing the output file, also write its metadata as a binary
+             snapshot file, which DbmdSnapshot can memory-map and read relation by relation without a full parse.
+           --metrics: Also write metrics for the run to <output-file>.metrics.json: wall time, catalog calls made and
+             rows read and kept for each phase, and bytes written. Phases are also recorded as JFR events
+             (sjq.DbmdFetchPhase) when a flight recording is active.
+           --incremental <previous dbmd file>: Re-fetch via JDBC only relations which are new or have changed since the
+             previous dbmd file was generated, according to change signals stored alongside it in
+             <previous dbmd file>.signals.json. The signals file for the new output is written the same way.
+             Indexes and estimated row counts are re-read for all tables, since row counts change without a change
+             signal.
+             Metadata is retrieved on a single connection, so this cannot be combined with --stream-output,
+             --parallelism greater than 1, --sql-chunks greater than 1 or --pass-through-sql-json.
+           --change-set <previous dbmd file>: Also write the changes from the previous dbmd file to the new output to
+             <output-file>.changes.json: relations, fields and foreign keys added, removed or modified, and a content
+             hash for each relation, which changes only when the relation's own metadata or foreign keys change. If
+             the previous file does not exist, all relations are reported as added. The previous file may be the
+             output file itself, in which case it is read before being overwritten.
+           --resumable [--max-attempts <n>]: Retrieve metadata via JDBC relation by relation, appending each relation's
+             metadata and each table's foreign keys to <output-file>.journal.jsonl as they are retrieved. If the run is
+             interrupted, running it again with the same connection properties and include and exclude patterns
+             resumes it, taking what is in the journal instead of retrieving it again. The journal is removed once the
+             output file is written. The catalog calls for a relation which fail are retried on a new connection, up
+             to n attempts in all (default 5) with exponentially increasing waits, before the run fails. This cannot
+             be combined with --incremental, --stream-output, --parallelism greater than 1, --sql-chunks greater than
+             1 or --pass-through-sql-json, and requires --use-jdbc-md for database types having a predefined SQL query.
+           --shards <manifest file> [--shard-size <n>]: After writing the output file, also write its metadata split
+             into shard files, one per schema or else of n relations each, named for the manifest file with a write
+             run id and shard number suffix. Previous shard files are removed only after the new manifest is in place.
+             The manifest lists each shard's relations, content hash, and the other shards related to it by foreign
+             keys. Each shard is a dbmd file holding the foreign keys from its tables, so consumers can load only the
+             shards containing the relations they need.
       """;
   }
 
@@ -64,8 +262,34 @@ public class DbmdFetcher
       return;
     }
 
+    if ( args.length == 1 && args[0].equals("--server") )
+    {
+      try (var server = new DbmdServer())
+      {
+        server.serve(System.in, System.out);
+      }
+      catch(Throwable t)
+      {
+        log.error(t.getMessage());
+        System.exit(1);
+      }
+      System.exit(0);
+    }
+
     var remArgs = new ArrayList<>(Arrays.asList(args));
 
+    @Nullable Path batchManifestFile = Args.pluckStringOption(remArgs, "--batch").map(Paths::get).orElse(null);
+    if ( batchManifestFile != null )
+    {
+      int batchConcurrency = Args.pluckIntOption(remArgs, "--batch-concurrency", 4);
+      if ( !remArgs.isEmpty() || batchConcurrency < 1 )
+      {
+        log.error(usage());
+        System.exit(1);
+      }
+      System.exit(runBatch(batchManifestFile, batchConcurrency) ? 0 : 1);
+    }
+
     String includeRegex =
       Args.pluckStringOption(remArgs, "--include-regex").orElseGet(() ->
         base64Decode(Args.pluckStringOption(remArgs, "--include-regex-base64").orElse("Lio=")) // .*
@@ -77,61 +301,467 @@ public class DbmdFetcher
 
     boolean useJdbcMetadata = remArgs.remove("--use-jdbc-md");
 
-    if ( remArgs.size() != 3 )
+    int parallelism = Args.pluckIntOption(remArgs, "--parallelism", 1);
+
+    boolean streamOutput = remArgs.remove("--stream-output");
+
+    boolean passThroughSqlJson = remArgs.remove("--pass-through-sql-json");
+
+    int sqlChunks = Args.pluckIntOption(remArgs, "--sql-chunks", 1);
+
+    @Nullable Path prevDbmdFile = Args.pluckStringOption(remArgs, "--incremental").map(Paths::get).orElse(null);
+
+    @Nullable Path snapshotFile = Args.pluckStringOption(remArgs, "--binary-snapshot").map(Paths::get).orElse(null);
+
+    boolean writeMetrics = remArgs.remove("--metrics");
+
+    @Nullable Path changeSetBaseFile = Args.pluckStringOption(remArgs, "--change-set").map(Paths::get).orElse(null);
+
+    boolean resumable = remArgs.remove("--resumable");
+
+    int maxAttempts = Args.pluckIntOption(remArgs, "--max-attempts", RetryPolicy.DEFAULT_MAX_ATTEMPTS);
+
+    @Nullable Path shardManifestFile = Args.pluckStringOption(remArgs, "--shards").map(Paths::get).orElse(null);
+
+    @Nullable Integer shardSize =
+      Args.pluckStringOption(remArgs, "--shard-size").map(Integer::parseInt).orElse(null);
+
+    try
+    {
+      checkOptions(parallelism, streamOutput, passThroughSqlJson, sqlChunks, prevDbmdFile != null);
+    }
+    catch(IllegalArgumentException e)
     {
+      log.error(e.getMessage());
       log.error(usage());
       System.exit(1);
     }
 
-    Path jdbcPropsFile = Paths.get(args[0]);
-    String dbType = args[1];
-    Path outputFile = Paths.get(args[2]);
+    if ( remArgs.size() != 3 || maxAttempts < 1 ||
+         (resumable && (prevDbmdFile != null || streamOutput || parallelism > 1 || sqlChunks > 1 ||
+                        passThroughSqlJson || !useJdbcMetadata && hasDbmdSql(remArgs.get(1)))) ||
+         (shardSize != null && (shardSize < 1 || shardManifestFile == null)) )
+    {
+      log.error(usage());
+      System.exit(1);
+    }
+
+    Path jdbcPropsFile = Paths.get(remArgs.get(0));
+    String dbType = remArgs.get(1);
+    Path outputFile = Paths.get(remArgs.get(2));
 
     if ( !Files.isRegularFile(jdbcPropsFile) )
       throw new RuntimeException("File not found: " + jdbcPropsFile);
 
-    var dbmdFetcher = new DbmdFetcher(jdbcPropsFile, useJdbcMetadata);
+    var dbmdFetcher =
+      new DbmdFetcher(jdbcPropsFile, useJdbcMetadata, parallelism, streamOutput, passThroughSqlJson, sqlChunks);
 
-    dbmdFetcher.generateMetadata(dbType, includeRegex, excludeRegex, outputFile);
+    try
+    {
+      // Read the base metadata for the change set first, since it may be the output file that's about to be replaced.
+      @Nullable StoredDatabaseMetadata changeSetBaseDbmd =
+        changeSetBaseFile != null ? dbmdFetcher.readMetadataIfPresent(changeSetBaseFile) : null;
+      FetchMetrics.Report metrics = resumable ?
+        dbmdFetcher.generateMetadataResumably(
+          includeRegex, excludeRegex, outputFile, RetryPolicy.withMaxAttempts(maxAttempts)
+        )
+        : dbmdFetcher.generateMetadata(dbType, includeRegex, excludeRegex, outputFile, prevDbmdFile);
+      if ( snapshotFile != null )
+      {
+        log.info("Writing binary snapshot file: " + snapshotFile);
+        DbmdSnapshot.writeFromJson(outputFile, snapshotFile);
+      }
+      if ( shardManifestFile != null )
+      {
+        log.info("Writing shards with manifest file: " + shardManifestFile);
+        DbmdShards.writeFromJson(outputFile, shardManifestFile, shardSize);
+      }
+      if ( writeMetrics )
+        dbmdFetcher.objectMapper().writeValue(getMetricsFile(outputFile).toFile(), metrics);
+      if ( changeSetBaseFile != null )
+      {
+        log.info("Writing change set from " + changeSetBaseFile + " to file: " + getChangeSetFile(outputFile));
+        dbmdFetcher.writeChangeSet(changeSetBaseDbmd, outputFile);
+      }
+      log.info("Success");
+      System.exit(0); // Added to keep Maven from complaining about lingering threads.
+    }
+    catch(Throwable t)
+    {
+      log.error(t.getMessage());
+      System.exit(1);
+    }
   }
 
-  private void generateMetadata
+  private static boolean runBatch(Path manifestFile, int concurrency)
+  {
+    try
+    {
+      List<DbmdBatch.EntryResult> results =
+        new DbmdBatch(concurrency).run(DbmdBatch.readManifest(manifestFile), manifestFile.toAbsolutePath().getParent());
+
+      long failures = results.stream().filter(r -> !r.success()).count();
+
+      for (DbmdBatch.EntryResult res : results)
+      {
+        if ( res.success() )
+          log.info("Succeeded: " + res.outputFile() + " (" + res.elapsedMillis() + " ms)");
+        else
+          log.error("Failed: " + res.outputFile() + " (" + res.elapsedMillis() + " ms): " + res.error());
+      }
+      log.info((results.size() - failures) + " of " + results.size() + " batch entries succeeded.");
+
+      return failures == 0;
+    }
+    catch(Throwable t)
+    {
+      log.error(t.getMessage());
+      return false;
+    }
+  }
+
+  // Generate database metadata to the given output file, returning metrics for the run. Unlike main(), this never
+  // exits the JVM, so it can be called repeatedly from a long-lived process.
+  public FetchMetrics.Report generateMetadata
     (
       String dbType,
       String includeRegex,
       String excludeRegex,
-      Path outputFile
+      Path outputFile,
+      @Nullable Path prevDbmdFile
     )
+    throws IOException, SQLException
   {
+    if ( prevDbmdFile != null )
+      checkOptions(parallelism, streamOutput, passThroughSqlJson, sqlChunks, true);
+
     log.info("Generating database metadata.");
     log.info("JDBC connection properties: " + jdbcPropsFile);
     log.info("Database type: " + dbType);
     log.info("Relations include pattern: '" + includeRegex + "'");
     log.info("Relations exclude pattern: '" + excludeRegex + "'");
     log.info("Output file: " + outputFile);
+    if ( prevDbmdFile != null )
+      log.info("Previous dbmd file for incremental generation: " + prevDbmdFile);
 
+    var metrics = new FetchMetrics();
+
+    if ( prevDbmdFile != null )
+      generateMetadataIncrementally(includeRegex, excludeRegex, outputFile, prevDbmdFile, metrics);
+    else
+    {
+      @Nullable String sql = getDbmdSql(dbType);
+
+      if ( sql != null && passThroughSqlJson )
+        copyDbmdSqlResult(sql, includeRegex, excludeRegex, outputFile, metrics);
+      else if ( sql == null && streamOutput )
+        streamDbmdFromJdbcMetadata(includeRegex, excludeRegex, outputFile, metrics);
+      else
+      {
+        StoredDatabaseMetadata dbmd = fetchMetadataVia(sql, includeRegex, excludeRegex, metrics);
+        FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.SERIALIZATION);
+        try
+        {
+          objectMapper().writeValue(outputFile.toFile(), dbmd);
+        }
+        finally
+        {
+          phase.close();
+        }
+      }
+    }
+
+    metrics.bytesWritten(Files.size(outputFile));
+
+    return metrics.report();
+  }
+
+  // Generate database metadata to the given output file via JDBC, journaling the relation metadatas and foreign keys
+  // as they are retrieved so that an interrupted run can be resumed, and retrying failed catalog calls per relation
+  // with the given policy. The journal file is removed when the output file has been written.
+  public FetchMetrics.Report generateMetadataResumably
+    (
+      String includeRegex,
+      String excludeRegex,
+      Path outputFile,
+      RetryPolicy retryPolicy
+    )
+    throws IOException
+  {
+    if ( streamOutput || parallelism > 1 || sqlChunks > 1 || passThroughSqlJson )
+      throw new IllegalArgumentException(
+        "Resumable generation is not supported with streaming output, parallel retrieval, chunked SQL or " +
+        "passing through SQL JSON."
+      );
+
+    log.info("Generating database metadata resumably via JDBC Connection::getMetaData().");
+    log.info("JDBC connection properties: " + jdbcPropsFile);
+    log.info("Relations include pattern: '" + includeRegex + "'");
+    log.info("Relations exclude pattern: '" + excludeRegex + "'");
+    log.info("Output file: " + outputFile);
+
+    var metrics = new FetchMetrics();
+
+    Path journalFile = getJournalFile(outputFile);
+
+    // A journal is only resumed from by a run with the same parameters, as recorded in the journal.
+    Map<String, String> journalParams = new TreeMap<>();
+    journalParams.put("jdbcUrl", jdbcProps.getProperty("jdbc.url"));
+    journalParams.put("jdbcUsername", jdbcProps.getProperty("jdbc.username"));
+    journalParams.put("includeRegex", includeRegex);
+    journalParams.put("excludeRegex", excludeRegex);
+
+    StoredDatabaseMetadata dbmd;
+    try (var journal = ExtractionJournal.open(journalFile, journalParams, objectMapper()))
+    {
+      if ( journal.relationMetadataCount() > 0 )
+        log.info(
+          "Resuming from journal file " + journalFile + " with " + journal.relationMetadataCount() +
+          " relation metadatas retrieved."
+        );
+      else
+        log.info("Journal file: " + journalFile);
+
+      dbmd = new JdbcDbmdFetcher(DATE_MAPPING, metrics).fetchMetadata(
+        this::openConnection,
+        null,
+        true,
+        true,
+        Pattern.compile(includeRegex),
+        Pattern.compile(excludeRegex),
+        journal,
+        retryPolicy
+      );
+    }
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.SERIALIZATION);
     try
     {
-      @Nullable String sql = useJdbcMetadata ? null : getTextResourceIfPresent(dbType + "-dbmd.sql");
+      objectMapper().writeValue(outputFile.toFile(), dbmd);
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    Files.delete(journalFile);
+
+    metrics.bytesWritten(Files.size(outputFile));
+
+    return metrics.report();
+  }
+
+  // Fetch database metadata without writing it to a file.
+  public StoredDatabaseMetadata fetchMetadata
+    (
+      String dbType,
+      String includeRegex,
+      String excludeRegex
+    )
+  {
+    return fetchMetadataVia(getDbmdSql(dbType), includeRegex, excludeRegex, new FetchMetrics());
+  }
+
+  // Create a provider of metadata for individual relations, fetched on demand via JDBC metadata and cached.
+  public DatabaseMetadataProvider createMetadataProvider
+    (
+      int maxCachedItems,
+      Duration timeToLive
+    )
+  {
+    return new DatabaseMetadataProvider(this::openConnection, DATE_MAPPING, maxCachedItems, timeToLive);
+  }
+
+  private StoredDatabaseMetadata fetchMetadataVia
+    (
+      @Nullable String sql,
+      String includeRegex,
+      String excludeRegex,
+      FetchMetrics metrics
+    )
+  {
+    // If there's dbmd sql defined for this database type then use that, else use jdbc metadata.
+    return sql != null
+      ? executeDbmdSql(sql, includeRegex, excludeRegex, metrics)
+      : constructDbmdFromJdbcMetadata(includeRegex, excludeRegex, metrics);
+  }
+
+  private static boolean hasDbmdSql(String dbType)
+  {
+    return DbmdFetcher.class.getClassLoader().getResource(dbType + "-dbmd.sql") != null;
+  }
+
+  private @Nullable String getDbmdSql(String dbType)
+  {
+    @Nullable String sql = useJdbcMetadata ? null : getTextResourceIfPresent(dbType + "-dbmd.sql");
+
+    log.info(sql == null ? "Retrieving metadata via JDBC Connection::getMetaData()."
+      : "Querying for metadata via predefined SQL query."
+    );
+
+    return sql;
+  }
+
+  private void generateMetadataIncrementally
+    (
+      String includeRegex,
+      String excludeRegex,
+      Path outputFile,
+      Path prevDbmdFile,
+      FetchMetrics metrics
+    )
+    throws IOException, SQLException
+  {
+    @Nullable StoredDatabaseMetadata prevDbmd = readMetadataIfPresent(prevDbmdFile);
+
+    Path prevSignalsFile = getRelChangeSignalsFile(prevDbmdFile);
+    Map<RelId, String> prevRelSignals = new HashMap<>();
+    if ( prevDbmd != null && Files.isRegularFile(prevSignalsFile) )
+    {
+      for (RelChangeSignal sig : objectMapper().readValue(prevSignalsFile.toFile(), REL_CHANGE_SIGNALS_TYPE))
+        prevRelSignals.put(sig.relationId(), sig.signal());
+    }
+    else
+      log.info("No previous dbmd or change signals file found, all relations will be fetched.");
+
+    record Result(StoredDatabaseMetadata dbmd, Map<RelId, String> relSignals) {}
+
+    Result res = jdbi.withHandle(db -> {
+      Connection conn = db.getConnection();
 
-      log.info(sql == null ? "Retrieving metadata via JDBC Connection::getMetaData()."
-        : "Querying for metadata via predefined SQL query."
+      @Nullable Map<RelId, String> relSignals;
+      FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.CHANGE_SIGNALS);
+      try
+      {
+        metrics.catalogCall();
+        relSignals = RelChangeSignals.fetch(conn.getMetaData());
+      }
+      finally
+      {
+        phase.close();
+      }
+      if ( relSignals == null )
+        throw new RuntimeException("Incremental generation is not supported for this database type.");
+
+      StoredDatabaseMetadata dbmd = new JdbcDbmdFetcher(DATE_MAPPING, metrics).fetchMetadata(
+        conn,
+        null,
+        true,
+        true,
+        Pattern.compile(includeRegex),
+        Pattern.compile(excludeRegex),
+        prevDbmd != null ? prevDbmd : EMPTY_DBMD,
+        prevRelSignals,
+        relSignals
       );
 
-      // If there's dbmd sql defined for this database type then use that, else use jdbc metadata.
-      StoredDatabaseMetadata storedDbmd = sql != null
-        ? executeDbmdSql(sql, includeRegex, excludeRegex)
-        : constructDbmdFromJdbcMetadata(includeRegex, excludeRegex);
+      return new Result(dbmd, relSignals);
+    });
 
-      objectMapper.writeValue(outputFile.toFile(), storedDbmd);
+    List<RelChangeSignal> relSignals =
+      res.dbmd().relationMetadatas().stream()
+      .map(RelMetadata::relationId)
+      .filter(relId -> res.relSignals().containsKey(relId))
+      .map(relId -> new RelChangeSignal(relId, res.relSignals().get(relId)))
+      .toList();
 
-      log.info("Success");
-      System.exit(0); // Added to keep Maven from complaining about lingering threads.
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.SERIALIZATION);
+    try
+    {
+      objectMapper().writeValue(outputFile.toFile(), res.dbmd());
+      objectMapper().writeValue(getRelChangeSignalsFile(outputFile).toFile(), relSignals);
     }
-    catch(Throwable t)
+    finally
     {
-      log.error(t.getMessage());
-      System.exit(1);
+      phase.close();
+    }
+  }
+
+  private static Path getRelChangeSignalsFile(Path dbmdFile)
+  {
+    return dbmdFile.resolveSibling(dbmdFile.getFileName() + ".signals.json");
+  }
+
+  private static Path getMetricsFile(Path dbmdFile)
+  {
+    return dbmdFile.resolveSibling(dbmdFile.getFileName() + ".metrics.json");
+  }
+
+  private static Path getChangeSetFile(Path dbmdFile)
+  {
+    return dbmdFile.resolveSibling(dbmdFile.getFileName() + ".changes.json");
+  }
+
+  private static Path getJournalFile(Path dbmdFile)
+  {
+    return dbmdFile.resolveSibling(dbmdFile.getFileName() + ".journal.jsonl");
+  }
+
+  private @Nullable StoredDatabaseMetadata readMetadataIfPresent(Path dbmdFile)
+    throws IOException
+  {
+    return Files.isRegularFile(dbmdFile)
+      ? objectMapper().readValue(dbmdFile.toFile(), StoredDatabaseMetadata.class)
+      : null;
+  }
+
+  // Write the changes from the previous metadata, if any, to the metadata in the given dbmd file, to the change set
+  // file for the dbmd file.
+  public DbmdChangeSet writeChangeSet
+    (
+      @Nullable StoredDatabaseMetadata prevDbmd,
+      Path dbmdFile
+    )
+    throws IOException
+  {
+    StoredDatabaseMetadata dbmd = objectMapper().readValue(dbmdFile.toFile(), StoredDatabaseMetadata.class);
+    DbmdChangeSet changeSet = DbmdChangeSet.compute(prevDbmd, dbmd);
+    objectMapper().writeValue(getChangeSetFile(dbmdFile).toFile(), changeSet);
+    return changeSet;
+  }
+
+  // Copy the JSON result of the dbmd query to the output file token by token as it is read from the result
+  // column's character stream, so that the document is neither materialized as a string nor bound to objects.
+  private void copyDbmdSqlResult
+    (
+      String sql,
+      String includeRegex,
+      String excludeRegex,
+      Path outputFile,
+      FetchMetrics metrics
+    )
+  {
+    // The query's result is read while it is written, so both are timed as the query phase.
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.PREDEFINED_SQL);
+    try
+    {
+      metrics.catalogCall();
+      jdbi.useHandle(db ->
+        prepareDbmdSqlSession(db).createQuery(sql)
+        .bind("relIncludePat", includeRegex)
+        .bind("relExcludePat", excludeRegex)
+        .bind("relChunkPat", ALL_RELATIONS_CHUNK_PATTERN)
+        .map((rs, ctx) -> {
+          try
+            (
+              Reader jsonReader = rs.getCharacterStream(1);
+              JsonParser parser = JSON_FACTORY.createParser(jsonReader);
+              JsonGenerator gen = JSON_FACTORY.createGenerator(outputFile.toFile(), JsonEncoding.UTF8)
+            )
+          {
+            gen.useDefaultPrettyPrinter();
+            while ( parser.nextToken() != null )
+              gen.copyCurrentEvent(parser);
+            return outputFile;
+          }
+          catch(IOException e) { throw new UncheckedIOException(e); }
+        })
+        .one()
+      );
+    }
+    finally
+    {
+      phase.close();
     }
   }
 
@@ -139,32 +769,173 @@ public class DbmdFetcher
     (
       String sql,
       String includeRegex,
-      String excludeRegex
+      String excludeRegex,
+      FetchMetrics metrics
+    )
+  {
+    return sqlChunks > 1 ?
+      executeDbmdSqlChunked(sql, includeRegex, excludeRegex, metrics)
+      : executeDbmdSql(sql, includeRegex, excludeRegex, ALL_RELATIONS_CHUNK_PATTERN, metrics);
+  }
+
+  // Run the dbmd query for each chunk of relations, with up to parallelism chunks at once on separate connections,
+  // and merge the results. A chunk's query yields metadata for the chunk's relations and the foreign keys from its
+  // tables to any included tables, so foreign keys between chunks are kept, each from the chunk of its child table.
+  // The merged relations are ordered by relation type and id, and foreign keys by their relation ids and names.
+  private StoredDatabaseMetadata executeDbmdSqlChunked
+    (
+      String sql,
+      String includeRegex,
+      String excludeRegex,
+      FetchMetrics metrics
     )
   {
-    String jsonStr = jdbi.withHandle(db ->
-      db.createQuery(sql)
-      .bind("relIncludePat", includeRegex)
-      .bind("relExcludePat", excludeRegex)
-      .mapTo(String.class)
-      .one()
+    List<String> chunkPats = getRelationChunkPatterns(sqlChunks);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunkPats.size()));
+
+    try
+    {
+      List<Future<StoredDatabaseMetadata>> chunkFutures = new ArrayList<>();
+      for (String chunkPat : chunkPats)
+        chunkFutures.add(executor.submit(() -> executeDbmdSql(sql, includeRegex, excludeRegex, chunkPat, metrics)));
+
+      List<StoredDatabaseMetadata> chunkDbmds = new ArrayList<>();
+      for (Future<StoredDatabaseMetadata> chunkFuture : chunkFutures)
+        chunkDbmds.add(chunkFuture.get());
+
+      return mergeChunkMetadatas(chunkDbmds);
+    }
+    catch(ExecutionException e) { throw new RuntimeException(e.getCause()); }
+    catch(InterruptedException e) { throw new RuntimeException(e); }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  // Get patterns for relation id strings ("schema.name") which partition relations into the given number of chunks
+  // by the first letter of the relation name, with names not starting with an ASCII letter in the last chunk. The
+  // patterns are written to have the same meaning in each database's regular expression dialect, whether patterns
+  // are matched against the whole string or any part of it.
+  static List<String> getRelationChunkPatterns(int chunks)
+  {
+    List<String> pats = new ArrayList<>();
+    int letters = CHUNK_NAME_LETTERS.length();
+
+    for (int i = 0; i < chunks; ++i)
+    {
+      String chunkLetters = CHUNK_NAME_LETTERS.substring(i * letters / chunks, (i + 1) * letters / chunks);
+      String firstCharClass = "[" + chunkLetters + chunkLetters.toLowerCase() + "]";
+      if ( i == chunks - 1 )
+        firstCharClass =
+          "(" + firstCharClass + "|[^" + CHUNK_NAME_LETTERS + CHUNK_NAME_LETTERS.toLowerCase() + "])";
+      pats.add("^[^.]*[.]" + firstCharClass + ".*$");
+    }
+
+    return pats;
+  }
+
+  private static StoredDatabaseMetadata mergeChunkMetadatas(List<StoredDatabaseMetadata> chunkDbmds)
+  {
+    Comparator<RelId> relIdOrder =
+      Comparator.comparing(RelId::schema, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+      .thenComparing(RelId::name);
+
+    List<RelMetadata> relMds =
+      chunkDbmds.stream()
+      .flatMap(chunkDbmd -> chunkDbmd.relationMetadatas().stream())
+      .sorted(Comparator.comparing(RelMetadata::relationType).thenComparing(RelMetadata::relationId, relIdOrder))
+      .toList();
+
+    List<ForeignKey> fks =
+      chunkDbmds.stream()
+      .flatMap(chunkDbmd -> chunkDbmd.foreignKeys().stream())
+      .sorted(
+        Comparator.comparing(ForeignKey::foreignKeyRelationId, relIdOrder)
+        .thenComparing(ForeignKey::primaryKeyRelationId, relIdOrder)
+        .thenComparing(ForeignKey::constraintName, Comparator.nullsFirst(Comparator.naturalOrder()))
+      )
+      .toList();
+
+    StoredDatabaseMetadata first = chunkDbmds.get(0);
+
+    return new StoredDatabaseMetadata(
+      first.dbmsName(),
+      first.dbmsVersion(),
+      first.majorVersion(),
+      first.minorVersion(),
+      first.caseSensitivity(),
+      relMds,
+      fks
     );
+  }
 
+  private StoredDatabaseMetadata executeDbmdSql
+    (
+      String sql,
+      String includeRegex,
+      String excludeRegex,
+      String chunkRegex,
+      FetchMetrics metrics
+    )
+  {
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.PREDEFINED_SQL);
     try
     {
-      return objectMapper.readValue(jsonStr, StoredDatabaseMetadata.class);
+      metrics.catalogCall();
+      String jsonStr = jdbi.withHandle(db ->
+        prepareDbmdSqlSession(db).createQuery(sql)
+        .bind("relIncludePat", includeRegex)
+        .bind("relExcludePat", excludeRegex)
+        .bind("relChunkPat", chunkRegex)
+        .mapTo(String.class)
+        .one()
+      );
+      metrics.rowRead();
+
+      return objectMapper().readValue(jsonStr, StoredDatabaseMetadata.class);
     }
     catch (JsonProcessingException e) { throw new RuntimeException(e); }
+    finally
+    {
+      phase.close();
+    }
+  }
+
+  // Prepare the session for a predefined dbmd query. MySQL truncates group_concat results to group_concat_max_len,
+  // by default only 1024 bytes, without error, so the limit is raised for the index field names listed with it.
+  private static Handle prepareDbmdSqlSession(Handle db)
+  {
+    try
+    {
+      if ( db.getConnection().getMetaData().getDatabaseProductName().startsWith("MySQL") )
+        db.execute("set session group_concat_max_len = 4294967295");
+      return db;
+    }
+    catch(SQLException e) { throw new RuntimeException(e); }
   }
 
   private StoredDatabaseMetadata constructDbmdFromJdbcMetadata
     (
       String includeRegex,
-      String excludeRegex
+      String excludeRegex,
+      FetchMetrics metrics
     )
   {
+    if ( parallelism > 1 )
+      return new JdbcDbmdFetcher(DATE_MAPPING, metrics).fetchMetadata(
+        connSource,
+        parallelism,
+        null,
+        true,
+        true,
+        Pattern.compile(includeRegex),
+        Pattern.compile(excludeRegex)
+      );
+
     return jdbi.withHandle(db ->
-      new JdbcDbmdFetcher().fetchMetadata(
+      new JdbcDbmdFetcher(DATE_MAPPING, metrics).fetchMetadata(
         db.getConnection(),
         null,
         true,
@@ -175,12 +946,59 @@ public class DbmdFetcher
     );
   }
 
+  private void streamDbmdFromJdbcMetadata
+    (
+      String includeRegex,
+      String excludeRegex,
+      Path outputFile,
+      FetchMetrics metrics
+    )
+    throws IOException
+  {
+    try (var writer = new StreamingDbmdWriter(objectMapper(), outputFile))
+    {
+      jdbi.useHandle(db ->
+        new JdbcDbmdFetcher(DATE_MAPPING, metrics).fetchMetadata(
+          db.getConnection(),
+          null,
+          true,
+          true,
+          Pattern.compile(includeRegex),
+          Pattern.compile(excludeRegex),
+          writer
+        )
+      );
+    }
+  }
+
+  private Connection openConnection() throws SQLException
+  {
+    return driverConnector.openConnection();
+  }
+
+  // Loading Jackson databind is a noticeable part of startup for short runs, so the object mapper is only created
+  // when metadata is actually bound to objects, which isn't needed when passing through the predefined SQL's JSON.
+  private synchronized ObjectMapper objectMapper()
+  {
+    if ( objectMapper == null )
+    {
+      objectMapper = new ObjectMapper();
+      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    }
+    return objectMapper;
+  }
+
   public Jdbi createJdbi(Path propsFile)
   {
-    try
+    return createJdbi(loadJdbcProperties(propsFile));
+  }
+
+  static Properties loadJdbcProperties(Path propsFile)
+  {
+    try (InputStream is = Files.newInputStream(propsFile))
     {
       Properties props = new Properties();
-      props.load(Files.newInputStream(propsFile));
+      props.load(is);
       if ( !props.containsKey("jdbc.driverClassName") ||
            !props.containsKey("jdbc.url") ||
            !props.containsKey("jdbc.username") ||
@@ -190,25 +1008,26 @@ public class DbmdFetcher
           "{ jdbc.driverClassName, jdbc.url, jdbc.username, jdbc.password } " +
           "in connection properties file."
         );
-
-      Class.forName(props.getProperty("jdbc.driverClassName"));
-
-      Jdbi jdbi = Jdbi.create(
-        props.getProperty("jdbc.url"),
-        props.getProperty("jdbc.username"),
-        props.getProperty("jdbc.password")
-      );
-
-      jdbi.getConfig(SqlStatements.class).setUnusedBindingAllowed(true);
-
-      return jdbi;
+      return props;
     }
-    catch(Exception e)
+    catch(IOException e)
     {
-      throw new RuntimeException(e);
+      throw new IOError(e);
     }
   }
 
+  static Jdbi createJdbi(Properties props)
+  {
+    return configureJdbi(Jdbi.create(new DriverConnector(props)::openConnection));
+  }
+
+  static Jdbi configureJdbi(Jdbi jdbi)
+  {
+    jdbi.getConfig(SqlStatements.class).setUnusedBindingAllowed(true);
+    jdbi.installPlugin(new SqliteRegexpPlugin());
+    return jdbi;
+  }
+
   public @Nullable InputStream getResourceInputStreamIfPresent(String resourcePath)
   {
     return DbmdFetcher.class.getClassLoader().getResourceAsStream(resourcePath);
@@ -0,0 +1,248 @@
+package sjq;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jdbi.v3.core.ConnectionFactory;
+import org.jdbi.v3.core.Jdbi;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+import sjq.models.StoredDatabaseMetadata;
+
+// Serves database metadata generation requests read as JSON lines, writing one JSON line response per request,
+// so that many generation runs can be served by one warmed-up JVM. A connection is kept open for each distinct
+// JDBC properties file and reused by later requests naming the same (unmodified) file. Requests are processed
+// one at a time in the order received. Logging goes to standard error, keeping standard output for responses.
+public class DbmdServer implements Closeable
+{
+  private static final Logger log = LoggerFactory.getLogger(DbmdServer.class);
+
+  private static final int CONNECTION_VALIDATION_TIMEOUT_SECS = 5;
+
+  private final ObjectMapper objectMapper;
+  private final Map<Path, ConnectionResources> connResourcesByPropsFile = new HashMap<>();
+
+  // A generation request. Only jdbcPropsFile and dbType are required. If no output file is given, the generated
+  // metadata is returned in the response instead of being written to a file. Parallelism greater than 1 is not
+  // supported, requests sharing one connection per properties file.
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Request
+    (
+      @Nullable String id,
+      String jdbcPropsFile,
+      String dbType,
+      @Nullable String outputFile,
+      @Nullable String includeRegex,
+      @Nullable String excludeRegex,
+      @Nullable Boolean useJdbcMetadata,
+      @Nullable Integer parallelism,
+      @Nullable Boolean streamOutput,
+      @Nullable Boolean passThroughSqlJson,
+      @Nullable String incremental
+    ) {}
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Response
+    (
+      @Nullable String id,
+      boolean success,
+      @Nullable String error,
+      @Nullable StoredDatabaseMetadata dbmd
+    ) {}
+
+  private record ConnectionResources
+    (
+      FileTime propsLastModified,
+      Properties props,
+      ReusedConnectionFactory connFactory,
+      Jdbi jdbi
+    ) {}
+
+  public DbmdServer()
+  {
+    this.objectMapper = new ObjectMapper();
+    this.objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+  }
+
+  // Read requests from the input stream until it is exhausted, writing a response line for each.
+  public void serve(InputStream in, OutputStream out)
+    throws IOException
+  {
+    var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+    String line;
+    while ((line = reader.readLine()) != null)
+    {
+      if (line.isBlank())
+        continue;
+
+      Response resp;
+      try
+      {
+        resp = handle(objectMapper.readValue(line, Request.class));
+      }
+      catch (IOException e)
+      {
+        resp = new Response(null, false, "Invalid request: " + e.getMessage(), null);
+      }
+
+      writer.write(objectMapper.writeValueAsString(resp));
+      writer.newLine();
+      writer.flush();
+    }
+  }
+
+  public Response handle(Request req)
+  {
+    try
+    {
+      Path jdbcPropsFile = Paths.get(req.jdbcPropsFile());
+      if (!Files.isRegularFile(jdbcPropsFile))
+        throw new RuntimeException("File not found: " + jdbcPropsFile);
+
+      // Parallel retrieval would share the single connection held for the properties file, as would chunks below.
+      if (req.parallelism() != null && req.parallelism() > 1)
+        throw new IllegalArgumentException("Parallel retrieval is not supported for server requests.");
+
+      ConnectionResources connRes = getConnectionResources(jdbcPropsFile);
+
+      var dbmdFetcher = new DbmdFetcher(
+        jdbcPropsFile,
+        connRes.props(),
+        connRes.jdbi(),
+        connRes.connFactory(),
+        Boolean.TRUE.equals(req.useJdbcMetadata()),
+        req.parallelism() != null ? req.parallelism() : 1,
+        Boolean.TRUE.equals(req.streamOutput()),
+        Boolean.TRUE.equals(req.passThroughSqlJson()),
+        1 // Chunks would share the single connection held for the properties file, so are not run separately.
+      );
+
+      String includeRegex = req.includeRegex() != null ? req.includeRegex().trim() : ".*";
+      String excludeRegex = req.excludeRegex() != null ? req.excludeRegex().trim() : "^$";
+
+      if (req.outputFile() != null)
+      {
+        @Nullable Path prevDbmdFile = req.incremental() != null ? Paths.get(req.incremental()) : null;
+        dbmdFetcher.generateMetadata(
+          req.dbType(),
+          includeRegex,
+          excludeRegex,
+          Paths.get(req.outputFile()),
+          prevDbmdFile
+        );
+        return new Response(req.id(), true, null, null);
+      }
+      else
+      {
+        if (req.incremental() != null)
+          throw new IllegalArgumentException("An output file is required for incremental generation.");
+        return new Response(req.id(), true, null, dbmdFetcher.fetchMetadata(req.dbType(), includeRegex, excludeRegex));
+      }
+    }
+    catch (Exception e)
+    {
+      log.error("Request " + req.id() + " failed.", e);
+      return new Response(req.id(), false, e.getMessage() != null ? e.getMessage() : e.toString(), null);
+    }
+  }
+
+  private ConnectionResources getConnectionResources(Path jdbcPropsFile)
+    throws IOException
+  {
+    Path key = jdbcPropsFile.toAbsolutePath().normalize();
+    FileTime lastModified = Files.getLastModifiedTime(key);
+
+    @Nullable ConnectionResources connRes = connResourcesByPropsFile.get(key);
+    if (connRes != null && connRes.propsLastModified().equals(lastModified))
+      return connRes;
+
+    if (connRes != null)
+    {
+      log.info("JDBC properties file " + key + " has changed, reconnecting.");
+      connRes.connFactory().close();
+    }
+
+    Properties props = DbmdFetcher.loadJdbcProperties(key);
+    var connFactory = new ReusedConnectionFactory(props);
+    var newConnRes =
+      new ConnectionResources(lastModified, props, connFactory, DbmdFetcher.configureJdbi(Jdbi.create(connFactory)));
+    connResourcesByPropsFile.put(key, newConnRes);
+
+    return newConnRes;
+  }
+
+  @Override
+  public void close()
+  {
+    for (ConnectionResources connRes : connResourcesByPropsFile.values())
+      connRes.connFactory().close();
+    connResourcesByPropsFile.clear();
+  }
+
+  // Hands out the same connection for every handle, opening a new one only if it has been closed or become invalid.
+  private static class ReusedConnectionFactory implements ConnectionFactory, ConnectionSource
+  {
+    private final DriverConnector driverConnector;
+    private @Nullable Connection conn;
+
+    ReusedConnectionFactory(Properties props)
+    {
+      this.driverConnector = new DriverConnector(props);
+    }
+
+    @Override
+    public synchronized Connection openConnection()
+      throws SQLException
+    {
+      if (conn == null || !conn.isValid(CONNECTION_VALIDATION_TIMEOUT_SECS))
+      {
+        close();
+        conn = driverConnector.openConnection();
+      }
+      return conn;
+    }
+
+    @Override
+    public void closeConnection(Connection conn)
+    {
+      // Kept open for reuse by later requests, closed when the server is closed.
+    }
+
+    synchronized void close()
+    {
+      if (conn == null)
+        return;
+      try
+      {
+        conn.close();
+      }
+      catch (SQLException e)
+      {
+        log.warn("Error closing connection: " + e.getMessage());
+      }
+      conn = null;
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package sjq;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.CaseSensitivity;
+import sjq.models.ForeignKey;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+import sjq.models.StoredDatabaseMetadata;
+
+// Database metadata split into shard files, one per schema or per fixed number of relations, with a manifest file
+// listing each shard's file, relations and content hash, and the other shards related to it by foreign keys. Each
+// shard is itself a database metadata file, holding its relations and the foreign keys from its tables, so that a
+// consumer needing only some relations can load just the shards containing them (see load()). Shard files are
+// written beside the manifest file, named for it with a write run id and shard number suffix.
+public final class DbmdShards
+{
+  private DbmdShards() {}
+
+  private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  @JsonPropertyOrder({"dbmsName", "dbmsVersion", "majorVersion", "minorVersion", "caseSensitivity", "shards"})
+  public record Manifest
+    (
+      String dbmsName,
+      String dbmsVersion,
+      @Nullable Integer majorVersion,
+      @Nullable Integer minorVersion,
+      CaseSensitivity caseSensitivity,
+      List<Shard> shards
+    ) {}
+
+  // A shard's schema is present when sharding by schema. Related shards are identified by file name: referenced
+  // shards contain the parent tables of foreign keys from this shard's tables, and referencing shards contain the
+  // child tables of foreign keys to them. The hash is the hex-encoded SHA-256 hash of the shard file's contents.
+  @JsonPropertyOrder({"file", "schema", "relations", "referencedShards", "referencingShards", "hash"})
+  public record Shard
+    (
+      String file,
+      @Nullable String schema,
+      List<RelId> relations,
+      List<String> referencedShards,
+      List<String> referencingShards,
+      String hash
+    ) {}
+
+  // Write shards and their manifest for the metadata in the given dbmd file. See write().
+  public static Manifest writeFromJson
+    (
+      Path dbmdFile,
+      Path manifestFile,
+      @Nullable Integer shardSize
+    )
+    throws IOException
+  {
+    return write(objectMapper.readValue(dbmdFile.toFile(), StoredDatabaseMetadata.class), manifestFile, shardSize);
+  }
+
+  // Write the metadata as shards of the given number of relations, in the metadata's relation order, or by schema
+  // if shard size is null, followed by the manifest. Shard files are written concurrently, under names unique to this
+  // write so that the shards of a previous manifest are left intact until the new manifest replaces it. Shard files
+  // not part of the new manifest, such as those of the previous one or of failed writes, are then removed.
+  public static Manifest write
+    (
+      StoredDatabaseMetadata dbmd,
+      Path manifestFile,
+      @Nullable Integer shardSize
+    )
+    throws IOException
+  {
+    if (shardSize != null && shardSize < 1)
+      throw new IllegalArgumentException("Shard size must be at least 1.");
+
+    List<List<RelMetadata>> shardRelMds = new ArrayList<>();
+    if (shardSize == null)
+    {
+      Map<@Nullable String, List<RelMetadata>> relMdsBySchema = new LinkedHashMap<>();
+      for (RelMetadata relMd : dbmd.relationMetadatas())
+        relMdsBySchema.computeIfAbsent(relMd.relationId().schema(), k -> new ArrayList<>()).add(relMd);
+      shardRelMds.addAll(relMdsBySchema.values());
+    }
+    else
+    {
+      List<RelMetadata> relMds = dbmd.relationMetadatas();
+      for (int i = 0; i < relMds.size(); i += shardSize)
+        shardRelMds.add(relMds.subList(i, Math.min(i + shardSize, relMds.size())));
+    }
+
+    int shardCount = shardRelMds.size();
+
+    String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    List<String> shardFileNames = new ArrayList<>();
+    Map<RelId, Integer> shardIxsByRelId = new HashMap<>();
+    for (int i = 0; i < shardCount; ++i)
+    {
+      shardFileNames.add(getShardFileName(manifestFile, runId, i + 1, shardCount));
+      for (RelMetadata relMd : shardRelMds.get(i))
+        shardIxsByRelId.put(relMd.relationId(), i);
+    }
+
+    // Foreign keys go in the shard of their child table.
+    List<List<ForeignKey>> shardFks = new ArrayList<>();
+    List<Set<String>> referencedShards = new ArrayList<>();
+    List<Set<String>> referencingShards = new ArrayList<>();
+    for (int i = 0; i < shardCount; ++i)
+    {
+      shardFks.add(new ArrayList<>());
+      referencedShards.add(new TreeSet<>());
+      referencingShards.add(new TreeSet<>());
+    }
+    for (ForeignKey fk : dbmd.foreignKeys())
+    {
+      @Nullable Integer childShardIx = shardIxsByRelId.get(fk.foreignKeyRelationId());
+      @Nullable Integer parentShardIx = shardIxsByRelId.get(fk.primaryKeyRelationId());
+      if (childShardIx == null || parentShardIx == null)
+        throw new IllegalArgumentException("Foreign key " + fk + " references a relation not in the metadata.");
+      shardFks.get(childShardIx).add(fk);
+      if (!childShardIx.equals(parentShardIx))
+      {
+        referencedShards.get(childShardIx).add(shardFileNames.get(parentShardIx));
+        referencingShards.get(parentShardIx).add(shardFileNames.get(childShardIx));
+      }
+    }
+
+    ExecutorService executor =
+      Executors.newFixedThreadPool(Math.max(1, Math.min(shardCount, Runtime.getRuntime().availableProcessors())));
+
+    List<Shard> shards = new ArrayList<>();
+    try
+    {
+      List<Future<String>> hashFutures = new ArrayList<>();
+      for (int i = 0; i < shardCount; ++i)
+      {
+        var shardDbmd = new StoredDatabaseMetadata(
+          dbmd.dbmsName(), dbmd.dbmsVersion(), dbmd.majorVersion(), dbmd.minorVersion(), dbmd.caseSensitivity(),
+          shardRelMds.get(i),
+          shardFks.get(i)
+        );
+        Path shardFile = manifestFile.resolveSibling(shardFileNames.get(i));
+        hashFutures.add(executor.submit(() -> {
+          byte[] bytes = objectMapper.writeValueAsBytes(shardDbmd);
+          Files.write(shardFile, bytes);
+          return sha256Hex(bytes);
+        }));
+      }
+
+      for (int i = 0; i < shardCount; ++i)
+      {
+        List<RelMetadata> relMds = shardRelMds.get(i);
+        shards.add(new Shard(
+          shardFileNames.get(i),
+          shardSize == null ? relMds.get(0).relationId().schema() : null,
+          relMds.stream().map(RelMetadata::relationId).toList(),
+          List.copyOf(referencedShards.get(i)),
+          List.copyOf(referencingShards.get(i)),
+          hashFutures.get(i).get()
+        ));
+      }
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof IOException ioe)
+        throw ioe;
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) { throw new RuntimeException(e); }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    var manifest = new Manifest(
+      dbmd.dbmsName(), dbmd.dbmsVersion(), dbmd.majorVersion(), dbmd.minorVersion(), dbmd.caseSensitivity(),
+      shards
+    );
+
+    // The manifest is replaced only once all of its shards are written.
+    Path tmpManifestFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+    objectMapper.writeValue(tmpManifestFile.toFile(), manifest);
+    Files.move(tmpManifestFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    removeStaleShardFiles(manifestFile, new HashSet<>(shardFileNames));
+
+    return manifest;
+  }
+
+  public static Manifest readManifest(Path manifestFile)
+    throws IOException
+  {
+    return objectMapper.readValue(manifestFile.toFile(), Manifest.class);
+  }
+
+  // Load the shards containing any of the given relations, verifying each against its hash in the manifest, as a
+  // single database metadata. The result includes all relations of the loaded shards, and the foreign keys between
+  // them. Relations not found in the manifest are ignored.
+  public static StoredDatabaseMetadata load
+    (
+      Path manifestFile,
+      Collection<RelId> relIds
+    )
+    throws IOException
+  {
+    Manifest manifest = readManifest(manifestFile);
+
+    Set<RelId> soughtRelIds = new HashSet<>(relIds);
+
+    List<RelMetadata> relMds = new ArrayList<>();
+    List<ForeignKey> fks = new ArrayList<>();
+    for (Shard shard : manifest.shards())
+    {
+      if (shard.relations().stream().noneMatch(soughtRelIds::contains))
+        continue;
+
+      Path shardFile = manifestFile.resolveSibling(shard.file());
+      byte[] bytes = Files.readAllBytes(shardFile);
+      if (!sha256Hex(bytes).equals(shard.hash()))
+        throw new IOException("Shard file " + shardFile + " does not match its hash in manifest " + manifestFile + ".");
+
+      StoredDatabaseMetadata shardDbmd = objectMapper.readValue(bytes, StoredDatabaseMetadata.class);
+      relMds.addAll(shardDbmd.relationMetadatas());
+      fks.addAll(shardDbmd.foreignKeys());
+    }
+
+    Set<RelId> loadedRelIds = new HashSet<>();
+    relMds.forEach(relMd -> loadedRelIds.add(relMd.relationId()));
+
+    return new StoredDatabaseMetadata(
+      manifest.dbmsName(),
+      manifest.dbmsVersion(),
+      manifest.majorVersion(),
+      manifest.minorVersion(),
+      manifest.caseSensitivity(),
+      relMds,
+      fks.stream().filter(fk -> loadedRelIds.contains(fk.primaryKeyRelationId())).toList()
+    );
+  }
+
+  // Get the file name for a shard of the given write run, numbered from 1 and zero-padded so that shard files list
+  // in order.
+  private static String getShardFileName(Path manifestFile, String runId, int shardNum, int shardCount)
+  {
+    int width = Integer.toString(shardCount).length();
+    return manifestFile.getFileName() + ".shard-" + runId + "-" + String.format("%0" + width + "d", shardNum) + ".json";
+  }
+
+  private static void removeStaleShardFiles(Path manifestFile, Set<String> shardFileNames)
+    throws IOException
+  {
+    Path dir = manifestFile.toAbsolutePath().getParent();
+    Pattern shardFileNamePat =
+      Pattern.compile(Pattern.quote(manifestFile.getFileName() + ".shard-") + "([0-9a-z]+-)?[0-9]+\\.json");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, file -> {
+      String fileName = file.getFileName().toString();
+      return shardFileNamePat.matcher(fileName).matches() && !shardFileNames.contains(fileName);
+    }))
+    {
+      for (Path file : files)
+        Files.delete(file);
+    }
+  }
+
+  private static String sha256Hex(byte[] bytes)
+  {
+    try
+    {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+    catch (NoSuchAlgorithmException e) { throw new RuntimeException(e); }
+  }
+}
@@ -0,0 +1,377 @@
+package sjq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.CaseSensitivity;
+import sjq.models.ForeignKey;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+import sjq.models.StoredDatabaseMetadata;
+
+// A binary snapshot of database metadata, which is memory-mapped when opened and decodes relation metadatas and
+// foreign keys only when they are looked up, so single relations can be accessed without parsing the whole
+// metadata. Layout (big-endian ints):
+//   header:    magic, version, header json offset and length, relation count, relation index offset,
+//              foreign key count, foreign key table offset, foreign key references offset
+//   rel index: per relation in key byte order, key offset and length, metadata json offset and length,
+//              start and count of its outgoing foreign key references, start and count of its incoming ones
+//   fk table:  per foreign key, json offset and length
+//   fk refs:   foreign key numbers, grouped as referenced from the relation index entries
+//   data:      relation keys (see relKey()) and compact json of the header fields, relations and foreign keys
+public class DbmdSnapshot implements Closeable
+{
+  private static final byte[] MAGIC = "SJQDBMD1".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = MAGIC.length + 8 * 4;
+  private static final int REL_INDEX_ENTRY_SIZE = 8 * 4;
+  private static final int FK_TABLE_ENTRY_SIZE = 2 * 4;
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buf;
+  private final Header header;
+  private final int relCount;
+  private final int relIndexOffset;
+  private final int fkCount;
+  private final int fkTableOffset;
+  private final int fkRefsOffset;
+
+  // The fields of StoredDatabaseMetadata other than the relation metadatas and foreign keys.
+  private record Header
+    (
+      String dbmsName,
+      String dbmsVersion,
+      @Nullable Integer majorVersion,
+      @Nullable Integer minorVersion,
+      CaseSensitivity caseSensitivity
+    ) {}
+
+  private DbmdSnapshot(FileChannel channel)
+    throws IOException
+  {
+    this.channel = channel;
+    this.buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    buf.order(ByteOrder.BIG_ENDIAN);
+
+    byte[] magic = new byte[MAGIC.length];
+    buf.get(0, magic);
+    if (!Arrays.equals(magic, MAGIC) || buf.getInt(MAGIC.length) != VERSION)
+      throw new IOException("Not a database metadata snapshot file of a supported version.");
+
+    int ix = MAGIC.length + 4;
+    this.header = decode(buf.getInt(ix), buf.getInt(ix + 4), Header.class);
+    this.relCount = buf.getInt(ix + 8);
+    this.relIndexOffset = buf.getInt(ix + 12);
+    this.fkCount = buf.getInt(ix + 16);
+    this.fkTableOffset = buf.getInt(ix + 20);
+    this.fkRefsOffset = buf.getInt(ix + 24);
+  }
+
+  public static DbmdSnapshot open(Path snapshotFile)
+    throws IOException
+  {
+    FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ);
+    try
+    {
+      return new DbmdSnapshot(channel);
+    }
+    catch(IOException | RuntimeException e)
+    {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public String dbmsName() { return header.dbmsName(); }
+  public String dbmsVersion() { return header.dbmsVersion(); }
+  public @Nullable Integer majorVersion() { return header.majorVersion(); }
+  public @Nullable Integer minorVersion() { return header.minorVersion(); }
+  public CaseSensitivity caseSensitivity() { return header.caseSensitivity(); }
+
+  public int relationCount() { return relCount; }
+  public int foreignKeyCount() { return fkCount; }
+
+  public @Nullable RelMetadata getRelationMetadata(RelId relId)
+  {
+    int relIx = findRelation(relId);
+    if (relIx < 0)
+      return null;
+    int entryOffset = relIndexOffset + relIx * REL_INDEX_ENTRY_SIZE;
+    return decode(buf.getInt(entryOffset + 8), buf.getInt(entryOffset + 12), RelMetadata.class);
+  }
+
+  // Foreign keys from the given relation to other relations.
+  public List<ForeignKey> getForeignKeysFrom(RelId relId)
+  {
+    return getForeignKeys(relId, 16);
+  }
+
+  // Foreign keys from other relations to the given relation.
+  public List<ForeignKey> getForeignKeysTo(RelId relId)
+  {
+    return getForeignKeys(relId, 24);
+  }
+
+  // The relation ids in snapshot order, decoded as they are accessed.
+  public List<RelId> relationIds()
+  {
+    return new AbstractList<>()
+    {
+      @Override public RelId get(int i) { return decodeRelKey(readRelKey(i)); }
+      @Override public int size() { return relCount; }
+    };
+  }
+
+  // Decode the entire snapshot.
+  public StoredDatabaseMetadata toStoredDatabaseMetadata()
+  {
+    List<RelMetadata> relMds = new ArrayList<>(relCount);
+    for (int i = 0; i < relCount; ++i)
+    {
+      int entryOffset = relIndexOffset + i * REL_INDEX_ENTRY_SIZE;
+      relMds.add(decode(buf.getInt(entryOffset + 8), buf.getInt(entryOffset + 12), RelMetadata.class));
+    }
+
+    List<ForeignKey> fks = new ArrayList<>(fkCount);
+    for (int i = 0; i < fkCount; ++i)
+      fks.add(getForeignKey(i));
+
+    return new StoredDatabaseMetadata(
+      header.dbmsName(),
+      header.dbmsVersion(),
+      header.majorVersion(),
+      header.minorVersion(),
+      header.caseSensitivity(),
+      relMds,
+      fks
+    );
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    channel.close();
+  }
+
+  private List<ForeignKey> getForeignKeys(RelId relId, int refsFieldOffset)
+  {
+    int relIx = findRelation(relId);
+    if (relIx < 0)
+      return List.of();
+
+    int entryOffset = relIndexOffset + relIx * REL_INDEX_ENTRY_SIZE;
+    int refsStart = buf.getInt(entryOffset + refsFieldOffset);
+    int refsCount = buf.getInt(entryOffset + refsFieldOffset + 4);
+
+    List<ForeignKey> fks = new ArrayList<>(refsCount);
+    for (int i = 0; i < refsCount; ++i)
+      fks.add(getForeignKey(buf.getInt(fkRefsOffset + (refsStart + i) * 4)));
+
+    return fks;
+  }
+
+  private ForeignKey getForeignKey(int fkNum)
+  {
+    int entryOffset = fkTableOffset + fkNum * FK_TABLE_ENTRY_SIZE;
+    return decode(buf.getInt(entryOffset), buf.getInt(entryOffset + 4), ForeignKey.class);
+  }
+
+  // Binary search of the relation index, returning the relation's index or -1 if not found.
+  private int findRelation(RelId relId)
+  {
+    byte[] key = relKey(relId);
+    int lo = 0, hi = relCount - 1;
+    while (lo <= hi)
+    {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compareRelKey(mid, key);
+      if (cmp < 0)
+        lo = mid + 1;
+      else if (cmp > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  private int compareRelKey(int relIx, byte[] key)
+  {
+    int entryOffset = relIndexOffset + relIx * REL_INDEX_ENTRY_SIZE;
+    int keyOffset = buf.getInt(entryOffset);
+    int keyLen = buf.getInt(entryOffset + 4);
+    int n = Math.min(keyLen, key.length);
+    for (int i = 0; i < n; ++i)
+    {
+      int cmp = Byte.compareUnsigned(buf.get(keyOffset + i), key[i]);
+      if (cmp != 0)
+        return cmp;
+    }
+    return Integer.compare(keyLen, key.length);
+  }
+
+  private byte[] readRelKey(int relIx)
+  {
+    int entryOffset = relIndexOffset + relIx * REL_INDEX_ENTRY_SIZE;
+    byte[] key = new byte[buf.getInt(entryOffset + 4)];
+    buf.get(buf.getInt(entryOffset), key);
+    return key;
+  }
+
+  private <T> T decode(int offset, int length, Class<T> type)
+  {
+    byte[] bytes = new byte[length];
+    buf.get(offset, bytes);
+    try
+    {
+      return objectMapper.readValue(bytes, type);
+    }
+    catch(IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  // Relation keys are a flag byte for whether the schema is present, the schema, a zero byte, then the name,
+  // all UTF-8 encoded, so that their byte order is a total order on relation ids.
+  private static byte[] relKey(RelId relId)
+  {
+    String s = (relId.schema() != null ? "\1" + relId.schema() : "\0") + "\0" + relId.name();
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static RelId decodeRelKey(byte[] key)
+  {
+    String s = new String(key, StandardCharsets.UTF_8);
+    int sepIx = s.indexOf('\0', 1);
+    return new RelId(s.charAt(0) == '\1' ? s.substring(1, sepIx) : null, s.substring(sepIx + 1));
+  }
+
+  // Write the json dbmd file's metadata as a snapshot file.
+  public static void writeFromJson(Path dbmdJsonFile, Path snapshotFile)
+    throws IOException
+  {
+    write(objectMapper.readValue(dbmdJsonFile.toFile(), StoredDatabaseMetadata.class), snapshotFile);
+  }
+
+  public static void write(StoredDatabaseMetadata dbmd, Path snapshotFile)
+    throws IOException
+  {
+    record RelEntry(byte[] key, RelMetadata relMd, List<Integer> fkRefsFrom, List<Integer> fkRefsTo) {}
+
+    List<RelEntry> relEntries = new ArrayList<>(dbmd.relationMetadatas().size());
+    Map<RelId, RelEntry> relEntriesById = new HashMap<>();
+    for (RelMetadata relMd : dbmd.relationMetadatas())
+    {
+      var relEntry = new RelEntry(relKey(relMd.relationId()), relMd, new ArrayList<>(), new ArrayList<>());
+      if (relEntriesById.put(relMd.relationId(), relEntry) != null)
+        throw new IllegalArgumentException("Duplicate relation in metadata: " + relMd.relationId());
+      relEntries.add(relEntry);
+    }
+    relEntries.sort(Comparator.comparing(RelEntry::key, Arrays::compareUnsigned));
+
+    List<ForeignKey> fks = dbmd.foreignKeys();
+    for (int fkNum = 0; fkNum < fks.size(); ++fkNum)
+    {
+      @Nullable RelEntry fromEntry = relEntriesById.get(fks.get(fkNum).foreignKeyRelationId());
+      if (fromEntry != null)
+        fromEntry.fkRefsFrom().add(fkNum);
+      @Nullable RelEntry toEntry = relEntriesById.get(fks.get(fkNum).primaryKeyRelationId());
+      if (toEntry != null)
+        toEntry.fkRefsTo().add(fkNum);
+    }
+
+    int fkRefsCount = 0;
+    for (RelEntry relEntry : relEntries)
+      fkRefsCount += relEntry.fkRefsFrom().size() + relEntry.fkRefsTo().size();
+
+    int relIndexOffset = HEADER_SIZE;
+    int fkTableOffset = relIndexOffset + relEntries.size() * REL_INDEX_ENTRY_SIZE;
+    int fkRefsOffset = fkTableOffset + fks.size() * FK_TABLE_ENTRY_SIZE;
+    int dataOffset = fkRefsOffset + fkRefsCount * 4;
+
+    var data = new DataArea(dataOffset);
+    var header = new Header(
+      dbmd.dbmsName(), dbmd.dbmsVersion(), dbmd.majorVersion(), dbmd.minorVersion(), dbmd.caseSensitivity()
+    );
+    int headerJsonOffset = data.add(objectMapper.writeValueAsBytes(header));
+    int headerJsonLength = data.lastLength();
+
+    ByteBuffer index = ByteBuffer.allocate(dataOffset - HEADER_SIZE);
+    List<Integer> fkRefs = new ArrayList<>(fkRefsCount);
+    for (RelEntry relEntry : relEntries)
+    {
+      index.putInt(data.add(relEntry.key())).putInt(data.lastLength());
+      index.putInt(data.add(objectMapper.writeValueAsBytes(relEntry.relMd()))).putInt(data.lastLength());
+      index.putInt(fkRefs.size()).putInt(relEntry.fkRefsFrom().size());
+      fkRefs.addAll(relEntry.fkRefsFrom());
+      index.putInt(fkRefs.size()).putInt(relEntry.fkRefsTo().size());
+      fkRefs.addAll(relEntry.fkRefsTo());
+    }
+    for (ForeignKey fk : fks)
+      index.putInt(data.add(objectMapper.writeValueAsBytes(fk))).putInt(data.lastLength());
+    for (int fkNum : fkRefs)
+      index.putInt(fkNum);
+
+    ByteBuffer headerBuf = ByteBuffer.allocate(HEADER_SIZE);
+    headerBuf.put(MAGIC).putInt(VERSION).putInt(headerJsonOffset).putInt(headerJsonLength);
+    headerBuf.putInt(relEntries.size()).putInt(relIndexOffset);
+    headerBuf.putInt(fks.size()).putInt(fkTableOffset).putInt(fkRefsOffset);
+
+    try (FileChannel out = FileChannel.open(
+      snapshotFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+    {
+      writeFully(out, headerBuf.flip());
+      writeFully(out, index.flip());
+      for (byte[] chunk : data.chunks())
+        writeFully(out, ByteBuffer.wrap(chunk));
+    }
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer bytes)
+    throws IOException
+  {
+    while (bytes.hasRemaining())
+      out.write(bytes);
+  }
+
+  // Accumulates the byte arrays of the data area, tracking their file offsets.
+  private static class DataArea
+  {
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long nextOffset;
+
+    DataArea(int startOffset) { this.nextOffset = startOffset; }
+
+    // Add the bytes, returning their file offset.
+    int add(byte[] bytes)
+    {
+      long offset = nextOffset;
+      nextOffset += bytes.length;
+      if (nextOffset > Integer.MAX_VALUE)
+        throw new IllegalStateException("Database metadata is too large for a snapshot file.");
+      chunks.add(bytes);
+      return (int)offset;
+    }
+
+    int lastLength() { return chunks.get(chunks.size() - 1).length; }
+
+    List<byte[]> chunks() { return chunks; }
+  }
+}
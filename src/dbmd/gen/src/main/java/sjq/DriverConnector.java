@@ -0,0 +1,43 @@
+package sjq;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.Properties;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+
+// Opens connections via the JDBC driver named by jdbc.driverClassName in the connection properties, loading only
+// that driver. Connecting via DriverManager would instead load and initialize every driver registered as a service
+// on the class path on first use, which with all the supported drivers bundled costs more time than many short
+// metadata runs spend querying.
+class DriverConnector implements ConnectionSource
+{
+  private final Driver driver;
+  private final String url;
+  private final Properties connectionProps;
+
+  DriverConnector(Properties jdbcProps)
+  {
+    String driverClassName = jdbcProps.getProperty("jdbc.driverClassName");
+    try
+    {
+      this.driver = (Driver) Class.forName(driverClassName).getDeclaredConstructor().newInstance();
+    }
+    catch(Exception e) { throw new RuntimeException("Could not load JDBC driver " + driverClassName + ".", e); }
+
+    this.url = jdbcProps.getProperty("jdbc.url");
+    this.connectionProps = new Properties();
+    connectionProps.setProperty("user", jdbcProps.getProperty("jdbc.username"));
+    connectionProps.setProperty("password", jdbcProps.getProperty("jdbc.password"));
+  }
+
+  @Override
+  public Connection openConnection()
+    throws SQLException
+  {
+    Connection conn = driver.connect(url, connectionProps);
+    if (conn == null)
+      throw new SQLException("JDBC driver " + driver.getClass().getName() + " does not accept url " + url + ".");
+    return conn;
+  }
+}
@@ -0,0 +1,211 @@
+package sjq;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.ForeignKey;
+import sjq.models.RelId;
+import sjq.models.RelMetadata;
+
+// An append-only journal of the relation metadatas and per-table foreign keys retrieved so far by a metadata
+// extraction, one JSON value per line, from which an interrupted extraction can be resumed. The first line records
+// the parameters of the extraction, and a journal found with other parameters is started over when opened. Each
+// entry is flushed to the file as it is appended. When an existing journal is opened, it is rewritten without any
+// incomplete last entry, as left by a process killed while appending, so that appended entries start on a new line.
+public class ExtractionJournal implements Closeable
+{
+  private static final int VERSION = 1;
+
+  private final BufferedWriter writer;
+  private final ObjectWriter lineWriter;
+  private final Map<RelId, RelMetadata> relMdsByRelId;
+  private final Map<RelId, List<ForeignKey>> fksByTable;
+
+  @JsonPropertyOrder({"journalVersion", "parameters"})
+  private record Header
+    (
+      int journalVersion,
+      Map<String, String> parameters
+    ) {}
+
+  // Either a relation metadata, or the foreign keys from a table (possibly none) under the table's relation id.
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonPropertyOrder({"relationMetadata", "foreignKeysFrom", "foreignKeys"})
+  private record Entry
+    (
+      @Nullable RelMetadata relationMetadata,
+      @Nullable RelId foreignKeysFrom,
+      @Nullable List<ForeignKey> foreignKeys
+    ) {}
+
+  private ExtractionJournal
+    (
+      BufferedWriter writer,
+      ObjectWriter lineWriter,
+      Map<RelId, RelMetadata> relMdsByRelId,
+      Map<RelId, List<ForeignKey>> fksByTable
+    )
+  {
+    this.writer = writer;
+    this.lineWriter = lineWriter;
+    this.relMdsByRelId = relMdsByRelId;
+    this.fksByTable = fksByTable;
+  }
+
+  // Open the journal file for an extraction with the given parameters, loading its entries if it exists and was
+  // written for the same parameters, or else starting a new journal in its place.
+  public static ExtractionJournal open
+    (
+      Path journalFile,
+      Map<String, String> parameters,
+      ObjectMapper objectMapper
+    )
+    throws IOException
+  {
+    ObjectWriter lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    var header = new Header(VERSION, parameters);
+
+    List<Entry> entries = new ArrayList<>();
+    if (Files.isRegularFile(journalFile) && readEntries(journalFile, header, objectMapper, entries))
+    {
+      // Rewrite the loaded entries and replace the journal file, so an incomplete entry is never appended to.
+      Path tmpFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+      try (BufferedWriter tmpWriter = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8))
+      {
+        writeLine(tmpWriter, lineWriter, header);
+        for (Entry entry : entries)
+          writeLine(tmpWriter, lineWriter, entry);
+      }
+      Files.move(tmpFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    else
+    {
+      entries.clear();
+      try (BufferedWriter newWriter = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8))
+      {
+        writeLine(newWriter, lineWriter, header);
+      }
+    }
+
+    Map<RelId, RelMetadata> relMdsByRelId = new HashMap<>();
+    Map<RelId, List<ForeignKey>> fksByTable = new HashMap<>();
+    for (Entry entry : entries)
+    {
+      if (entry.relationMetadata() != null)
+        relMdsByRelId.put(entry.relationMetadata().relationId(), entry.relationMetadata());
+      else if (entry.foreignKeysFrom() != null && entry.foreignKeys() != null)
+        fksByTable.put(entry.foreignKeysFrom(), entry.foreignKeys());
+    }
+
+    BufferedWriter writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    return new ExtractionJournal(writer, lineWriter, relMdsByRelId, fksByTable);
+  }
+
+  // Read the entries of the journal file into the given list, up to any incomplete last entry, returning false
+  // without reading entries if the journal's header does not match the given one.
+  private static boolean readEntries
+    (
+      Path journalFile,
+      Header header,
+      ObjectMapper objectMapper,
+      List<Entry> entries
+    )
+    throws IOException
+  {
+    try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8))
+    {
+      @Nullable String headerLine = reader.readLine();
+      try
+      {
+        if (headerLine == null || !objectMapper.readValue(headerLine, Header.class).equals(header))
+          return false;
+      }
+      catch (JsonProcessingException e)
+      {
+        return false;
+      }
+
+      for (@Nullable String line = reader.readLine(); line != null; line = reader.readLine())
+      {
+        try
+        {
+          entries.add(objectMapper.readValue(line, Entry.class));
+        }
+        catch (JsonProcessingException e)
+        {
+          break; // incomplete entry, entries are only ever appended after the last complete one
+        }
+      }
+    }
+
+    return true;
+  }
+
+  public int relationMetadataCount() { return relMdsByRelId.size(); }
+
+  public @Nullable RelMetadata getRelationMetadata(RelId relId)
+  {
+    return relMdsByRelId.get(relId);
+  }
+
+  // Get the foreign keys recorded for the table, or null if none have been recorded.
+  public @Nullable List<ForeignKey> getForeignKeysFrom(RelId tableRelId)
+  {
+    return fksByTable.get(tableRelId);
+  }
+
+  public synchronized void addRelationMetadata(RelMetadata relMd)
+  {
+    append(new Entry(relMd, null, null));
+    relMdsByRelId.put(relMd.relationId(), relMd);
+  }
+
+  public synchronized void addForeignKeysFrom(RelId tableRelId, List<ForeignKey> fks)
+  {
+    append(new Entry(null, tableRelId, fks));
+    fksByTable.put(tableRelId, fks);
+  }
+
+  private void append(Entry entry)
+  {
+    try
+    {
+      writeLine(writer, lineWriter, entry);
+      writer.flush();
+    }
+    catch (IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  private static void writeLine(BufferedWriter w, ObjectWriter lineWriter, Object value)
+    throws IOException
+  {
+    w.write(lineWriter.writeValueAsString(value));
+    w.newLine();
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    writer.close();
+  }
+}
@@ -0,0 +1,223 @@
+package sjq;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.jetbrains.annotations.Nullable;
+
+// Collects wall times and counts for the phases of metadata retrieval, and emits a JFR event for each phase
+// occurrence. Phases may be nested on a thread, in which case the inner phase's time is excluded from the outer's.
+// Catalog calls and rows read or kept are counted against the innermost phase open on the calling thread. Safe for
+// concurrent use, phase times being summed over threads.
+public class FetchMetrics
+{
+  public enum Phase
+  {
+    RELATION_LISTING,
+    COLUMN_SCAN,
+    PRIMARY_KEYS,
+    INDEXES,
+    FOREIGN_KEYS,
+    CHANGE_SIGNALS,
+    PREDEFINED_SQL,
+    SERIALIZATION
+  }
+
+  private final long startNanos = System.nanoTime();
+  private final Map<Phase, PhaseTotals> phaseTotals = new EnumMap<>(Phase.class);
+  private final LongAdder bytesWritten = new LongAdder();
+  private final ThreadLocal<ArrayDeque<PhaseTiming>> openPhases = ThreadLocal.withInitial(ArrayDeque::new);
+
+  @JsonPropertyOrder({"totalMillis", "bytesWritten", "phases"})
+  public record Report
+    (
+      long totalMillis,
+      long bytesWritten,
+      Map<Phase, PhaseReport> phases
+    ) {}
+
+  @JsonPropertyOrder({"millis", "occurrences", "catalogCalls", "rowsRead", "rowsKept"})
+  public record PhaseReport
+    (
+      double millis,
+      long occurrences,
+      long catalogCalls,
+      long rowsRead,
+      long rowsKept
+    ) {}
+
+  public FetchMetrics()
+  {
+    for (Phase phase : Phase.values())
+      phaseTotals.put(phase, new PhaseTotals());
+  }
+
+  // Start timing an occurrence of a phase on the current thread, to be ended by closing the returned timing.
+  public PhaseTiming startPhase(Phase phase)
+  {
+    ArrayDeque<PhaseTiming> threadPhases = openPhases.get();
+    @Nullable PhaseTiming outer = threadPhases.peek();
+    if (outer != null)
+      outer.pause();
+    var timing = new PhaseTiming(phase);
+    threadPhases.push(timing);
+    return timing;
+  }
+
+  public void catalogCall()
+  {
+    @Nullable PhaseTiming timing = openPhases.get().peek();
+    if (timing != null)
+      ++timing.catalogCalls;
+  }
+
+  public void rowRead()
+  {
+    @Nullable PhaseTiming timing = openPhases.get().peek();
+    if (timing != null)
+      ++timing.rowsRead;
+  }
+
+  public void rowKept()
+  {
+    @Nullable PhaseTiming timing = openPhases.get().peek();
+    if (timing != null)
+      ++timing.rowsKept;
+  }
+
+  // Count rows kept for a phase after it has ended, such as by filtering its results.
+  public void rowsKept(Phase phase, long rows)
+  {
+    phaseTotals.get(phase).rowsKept.add(rows);
+  }
+
+  public void bytesWritten(long bytes)
+  {
+    bytesWritten.add(bytes);
+  }
+
+  public Report report()
+  {
+    Map<Phase, PhaseReport> phaseReports = new LinkedHashMap<>();
+    phaseTotals.forEach((phase, totals) -> {
+      if (totals.occurrences.sum() > 0 || totals.rowsKept.sum() > 0)
+        phaseReports.put(phase, totals.toReport());
+    });
+
+    return new Report((System.nanoTime() - startNanos) / 1_000_000, bytesWritten.sum(), phaseReports);
+  }
+
+  // An open occurrence of a phase on some thread, ended by closing it on the same thread.
+  public class PhaseTiming implements AutoCloseable
+  {
+    private final Phase phase;
+    private final PhaseEvent event;
+    private long elapsedNanos;
+    private long resumedNanos;
+    private long catalogCalls;
+    private long rowsRead;
+    private long rowsKept;
+
+    private PhaseTiming(Phase phase)
+    {
+      this.phase = phase;
+      this.event = new PhaseEvent();
+      event.begin();
+      this.resumedNanos = System.nanoTime();
+    }
+
+    private void pause()
+    {
+      elapsedNanos += System.nanoTime() - resumedNanos;
+    }
+
+    private void resume()
+    {
+      resumedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close()
+    {
+      pause();
+
+      ArrayDeque<PhaseTiming> threadPhases = openPhases.get();
+      if (threadPhases.peek() != this)
+        throw new IllegalStateException("Phase " + phase + " was not the innermost open phase when closed.");
+      threadPhases.pop();
+      @Nullable PhaseTiming outer = threadPhases.peek();
+      if (outer != null)
+        outer.resume();
+
+      PhaseTotals totals = phaseTotals.get(phase);
+      totals.nanos.add(elapsedNanos);
+      totals.occurrences.increment();
+      totals.catalogCalls.add(catalogCalls);
+      totals.rowsRead.add(rowsRead);
+      totals.rowsKept.add(rowsKept);
+
+      event.end();
+      if (event.shouldCommit())
+      {
+        event.phase = phase.name();
+        event.exclusiveNanos = elapsedNanos;
+        event.catalogCalls = catalogCalls;
+        event.rowsRead = rowsRead;
+        event.rowsKept = rowsKept;
+        event.commit();
+      }
+    }
+  }
+
+  private static class PhaseTotals
+  {
+    final LongAdder nanos = new LongAdder();
+    final LongAdder occurrences = new LongAdder();
+    final LongAdder catalogCalls = new LongAdder();
+    final LongAdder rowsRead = new LongAdder();
+    final LongAdder rowsKept = new LongAdder();
+
+    PhaseReport toReport()
+    {
+      return new PhaseReport(
+        nanos.sum() / 1_000_000.0,
+        occurrences.sum(),
+        catalogCalls.sum(),
+        rowsRead.sum(),
+        rowsKept.sum()
+      );
+    }
+  }
+
+  @Name("sjq.DbmdFetchPhase")
+  @Label("Dbmd Fetch Phase")
+  @Category({"SQL/JSON Query", "Database Metadata"})
+  @Description("An occurrence of a phase of database metadata retrieval.")
+  static class PhaseEvent extends Event
+  {
+    @Label("Phase")
+    String phase;
+
+    @Label("Exclusive Time")
+    @Timespan
+    long exclusiveNanos;
+
+    @Label("Catalog Calls")
+    long catalogCalls;
+
+    @Label("Rows Read")
+    long rowsRead;
+
+    @Label("Rows Kept")
+    long rowsKept;
+  }
+}
@@ -5,28 +5,47 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import org.jetbrains.annotations.Nullable;
 import sjq.models.CaseSensitivity;
+import sjq.models.CompactFieldList;
 import sjq.models.Field;
 import sjq.models.ForeignKey;
 import sjq.models.ForeignKeyComponent;
+import sjq.models.Index;
 import sjq.models.RelId;
 import sjq.models.RelMetadata;
 import sjq.models.RelType;
@@ -38,191 +57,1669 @@ public class JdbcDbmdFetcher
 
   private final DateMapping dateMapping;
 
+  private final FetchMetrics metrics;
+
+  // Canonical instances of schema, relation, column and type names, which repeat heavily across large catalogs.
+  // Held for the life of the fetcher, so a fetcher should not outlive the fetches whose results share them.
+  private final Map<String, String> internedNames = new ConcurrentHashMap<>();
+
+  // Columns are fetched with one getColumns() call per included relation, instead of scanning the columns of all
+  // relations searched, when no more than this many relations and this fraction of those searched are included.
+  private static final int MAX_TARGETED_COLUMN_FETCH_RELATIONS = 250;
+  private static final double MAX_TARGETED_COLUMN_FETCH_RATIO = 0.1;
+
+  // Indexes are read with schema-wide catalog queries, where known for the database, when at least this many tables
+  // are wanted, otherwise with one getIndexInfo() call per table.
+  private static final int MIN_SCHEMA_INDEX_QUERY_TABLES = 10;
+
+  // Number of relations whose fields are read and held in memory at once when streaming relation metadatas.
+  private static final int STREAMED_RELATIONS_GROUP_SIZE = 250;
+
+  private static final String HSQL_PK_COMPONENTS_SQL = """
+    select table_schem, table_name, column_name, key_seq
+    from information_schema.system_primarykeys
+    where 1 = 1""";
+
+  private static final String ORA_PK_COMPONENTS_SQL = """
+    select con.owner table_schem, con.table_name, col.column_name, col.position key_seq
+    from all_constraints con
+    join all_cons_columns col on col.constraint_name = con.constraint_name and col.owner = con.owner
+    where con.constraint_type = 'P'""";
+
+  // Row counts, as read by the predefined query, with columns named as in getIndexInfo(), whose results from
+  // HSQLDB include no table statistic rows.
+  private static final String HSQL_TABLE_STATS_SQL = """
+    select
+      ts.table_schema table_schem, ts.table_name, false non_unique, cast(null as varchar(128)) index_name,
+      0 type, 0 ordinal_position, cast(null as varchar(128)) column_name, ts.cardinality,
+      cast(null as varchar(128)) filter_condition
+    from information_schema.system_tablestats ts
+    where 1 = 1""";
+
+  // Index columns, with columns named as in getIndexInfo(), which HSQLDB reads from this same table.
+  private static final String HSQL_INDEX_INFO_SQL = """
+    select
+      table_schem, table_name, non_unique, index_name, type, ordinal_position, column_name, cardinality,
+      filter_condition
+    from information_schema.system_indexinfo
+    where 1 = 1""";
+
+  // Row counts as of when table statistics were last gathered, and distinct keys per index, as for getIndexInfo().
+  private static final String ORA_TABLE_STATS_SQL = """
+    select
+      t.owner table_schem, t.table_name, 0 non_unique, null index_name, 0 type, 0 ordinal_position,
+      null column_name, t.num_rows cardinality, null filter_condition
+    from all_tables t
+    where 1 = 1""";
+
+  // Function-based and domain indexes are omitted, as for the predefined query, their columns being reported under
+  // hidden column names.
+  private static final String ORA_INDEX_INFO_SQL = """
+    select
+      i.table_owner, i.table_name, case i.uniqueness when 'UNIQUE' then 0 else 1 end, i.index_name, 3,
+      ic.column_position, ic.column_name, i.distinct_keys, null
+    from all_indexes i
+    join all_ind_columns ic on ic.index_owner = i.owner and ic.index_name = i.index_name
+    where i.index_type in ('NORMAL', 'NORMAL/REV', 'BITMAP', 'IOT - TOP')""";
+
+  // Row counts as estimated when tables were last analyzed, negative if never analyzed. Expression index columns
+  // have no column name, and partial indexes have a filter condition, so that neither kind is recorded. No
+  // cardinality is reported for indexes, as by the predefined query.
+  private static final String PG_TABLE_STATS_SQL = """
+    select
+      n.nspname::text table_schem, c.relname::text table_name, false non_unique, null::text index_name, 0 type,
+      0::bigint ordinal_position, null::text column_name, c.reltuples::bigint cardinality, null::text filter_condition
+    from pg_class c
+    join pg_namespace n on n.oid = c.relnamespace
+    where c.relkind in ('r', 'p')""";
+
+  private static final String PG_INDEX_INFO_SQL = """
+    select
+      n.nspname::text, c.relname::text, not ix.indisunique, ic.relname::text, 3, k.ord, a.attname::text,
+      null::bigint, pg_get_expr(ix.indpred, ix.indrelid)
+    from pg_index ix
+    join pg_class ic on ic.oid = ix.indexrelid
+    join pg_class c on c.oid = ix.indrelid
+    join pg_namespace n on n.oid = c.relnamespace
+    cross join unnest(ix.indkey::int2[]) with ordinality k(attnum, ord)
+    left join pg_attribute a on a.attrelid = ix.indrelid and a.attnum = k.attnum and k.attnum > 0
+    where k.ord <= ix.indnkeyatts""";
+
+  // For the current database only, as for relation ids without a schema. Functional key parts have no column name.
+  private static final String MYSQL_INDEX_INFO_SQL = """
+    select
+      null table_schem, t.table_name, 0 non_unique, null index_name, 0 type, 0 ordinal_position,
+      null column_name, t.table_rows cardinality, null filter_condition
+    from information_schema.tables t
+    where t.table_schema = database() and t.table_type = 'BASE TABLE'
+    union all
+    select null, s.table_name, s.non_unique, s.index_name, 3, s.seq_in_index, s.column_name, s.cardinality, null
+    from information_schema.statistics s
+    where s.table_schema = database()""";
+
+  private static final String HSQL_FK_COMPONENTS_SQL = """
+    select fktable_schem, fktable_name, fkcolumn_name, pktable_schem, pktable_name, pkcolumn_name, key_seq, fk_name
+    from information_schema.system_crossreference
+    where 1 = 1""";
+
+  private static final String ORA_FK_COMPONENTS_SQL = """
+    select
+      fkcon.owner fktable_schem, fkcon.table_name fktable_name, fkcol.column_name fkcolumn_name,
+      pkcon.owner pktable_schem, pkcon.table_name pktable_name, pkcol.column_name pkcolumn_name,
+      fkcol.position key_seq, fkcon.constraint_name fk_name
+    from all_constraints fkcon
+    join all_constraints pkcon
+      on fkcon.r_constraint_name = pkcon.constraint_name and fkcon.r_owner = pkcon.owner
+    join all_cons_columns fkcol
+      on fkcol.constraint_name = fkcon.constraint_name and fkcol.owner = fkcon.owner
+    join all_cons_columns pkcol
+      on pkcol.constraint_name = fkcon.r_constraint_name and pkcol.owner = fkcon.r_owner
+      and pkcol.position = fkcol.position
+    where fkcon.constraint_type = 'R'""";
+
+  // MySQL databases are reported as catalogs, so relation ids have no schema. Foreign keys are read for the current
+  // database only, and only those to tables in the same database, as getImportedKeys() does for schema-less ids.
+  private static final String MYSQL_FK_COMPONENTS_SQL = """
+    select
+      null fktable_schem, kcu.table_name fktable_name, kcu.column_name fkcolumn_name,
+      null pktable_schem, kcu.referenced_table_name pktable_name, kcu.referenced_column_name pkcolumn_name,
+      kcu.ordinal_position key_seq, kcu.constraint_name fk_name
+    from information_schema.key_column_usage kcu
+    where kcu.table_schema = database() and kcu.referenced_table_schema = database()
+      and kcu.referenced_table_name is not null""";
+
+  private static final Comparator<RelId> RELID_ORDER =
+    Comparator.comparing(RelId::schema, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+    .thenComparing(RelId::name);
+
   public JdbcDbmdFetcher()
   {
-    this(DateMapping.DATES_AS_DRIVER_REPORTED);
+    this(DateMapping.DATES_AS_DRIVER_REPORTED);
+  }
+
+  public JdbcDbmdFetcher(DateMapping mapping)
+  {
+    this(mapping, new FetchMetrics());
+  }
+
+  public JdbcDbmdFetcher(DateMapping mapping, FetchMetrics metrics)
+  {
+    this.dateMapping = mapping;
+    this.metrics = metrics;
+  }
+
+  public StoredDatabaseMetadata fetchMetadata
+    (
+      Connection conn,
+      @Nullable String schema,
+      boolean includeViews,
+      boolean includeFks,
+      @Nullable Pattern includeRelsPat,
+      @Nullable Pattern excludeRelsPat
+    )
+  {
+    try
+    {
+      DatabaseMetaData dbmd = conn.getMetaData();
+
+      CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+
+      @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+
+      List<RelSearchPattern> relSearchPats = getRelationSearchPatterns(dbmd, nSchema, includeRelsPat);
+
+      List<RelDescr> searchedRelDescrs = fetchRelationDescriptions(dbmd, relSearchPats, includeViews);
+
+      List<RelDescr> relDescrs = filterRelationDescriptions(searchedRelDescrs, includeRelsPat, excludeRelsPat);
+
+      List<RelMetadata> relMds = withIndexInfos(
+        fetchRelationMetadatas(relDescrs, searchedRelDescrs.size(), relSearchPats, dbmd),
+        dbmd
+      );
+
+      List<RelId> tables = relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+
+      List<ForeignKey> fks = includeFks ? fetchForeignKeys(dbmd, nSchema, tables) : emptyList();
+
+      String dbmsName = dbmd.getDatabaseProductName();
+      String dbmsVer = dbmd.getDatabaseProductVersion();
+      int majorVer = dbmd.getDatabaseMajorVersion();
+      int minorVer = dbmd.getDatabaseMinorVersion();
+
+      return new StoredDatabaseMetadata(dbmsName, dbmsVer, majorVer, minorVer, caseSens, relMds, fks);
+    }
+    catch(Exception e) { throw new RuntimeException(e); }
+  }
+
+  // Fetch metadata, writing each relation metadata to the given writer as soon as its fields have been read, so that
+  // memory use does not grow with the number of fields. Only the relation descriptions, primary key part numbers,
+  // indexes and foreign keys are held in memory, with the fields of at most a group of relations. Relations are
+  // written in relation id order as by the other fetch methods, the columns of each group of contiguous relation ids
+  // being scanned with a getColumns() call for each of a few search patterns covering the group (see
+  // RelSearchPattern.coverRelationIds()), which doesn't depend on the order in which drivers report columns.
+  public void fetchMetadata
+    (
+      Connection conn,
+      @Nullable String schema,
+      boolean includeViews,
+      boolean includeFks,
+      @Nullable Pattern includeRelsPat,
+      @Nullable Pattern excludeRelsPat,
+      StreamingDbmdWriter writer
+    )
+  {
+    try
+    {
+      DatabaseMetaData dbmd = conn.getMetaData();
+
+      CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+
+      writer.writeHeader(
+        dbmd.getDatabaseProductName(),
+        dbmd.getDatabaseProductVersion(),
+        dbmd.getDatabaseMajorVersion(),
+        dbmd.getDatabaseMinorVersion(),
+        caseSens
+      );
+
+      @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+
+      List<RelSearchPattern> relSearchPats = getRelationSearchPatterns(dbmd, nSchema, includeRelsPat);
+
+      List<RelDescr> searchedRelDescrs = fetchRelationDescriptions(dbmd, relSearchPats, includeViews);
+
+      List<RelDescr> relDescrs = filterRelationDescriptions(searchedRelDescrs, includeRelsPat, excludeRelsPat);
+
+      Set<RelId> relIds = relDescrs.stream().map(RelDescr::relId).collect(toSet());
+
+      List<RelId> searchedRelIds = searchedRelDescrs.stream().map(RelDescr::relId).toList();
+
+      Map<RelId, Map<String, Integer>> pkPartNumsByRelId = fetchPrimaryKeyPartNumbers(dbmd, relSearchPats, relIds);
+
+      List<RelId> tables = relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+
+      Map<RelId, TableIndexInfo> tableIndexInfos = fetchTableIndexInfos(dbmd, tables);
+
+      List<RelDescr> relIdOrderedRelDescrs =
+        relDescrs.stream().sorted(Comparator.comparing(RelDescr::relId, RELID_ORDER)).toList();
+
+      String searchStringEscape = dbmd.getSearchStringEscape();
+
+      for (int i = 0; i < relIdOrderedRelDescrs.size(); i += STREAMED_RELATIONS_GROUP_SIZE)
+      {
+        List<RelDescr> groupRelDescrs =
+          relIdOrderedRelDescrs.subList(i, Math.min(i + STREAMED_RELATIONS_GROUP_SIZE, relIdOrderedRelDescrs.size()));
+
+        List<RelSearchPattern> groupRelSearchPats = RelSearchPattern.coverRelationIds(
+          groupRelDescrs.stream().map(RelDescr::relId).toList(), searchedRelIds, searchStringEscape
+        );
+
+        for (RelMetadata relMd : fetchRelationMetadatas(groupRelDescrs, groupRelSearchPats, dbmd, pkPartNumsByRelId))
+          writer.writeRelationMetadata(withIndexInfo(relMd, tableIndexInfos.get(relMd.relationId())));
+      }
+
+      writer.writeForeignKeys(includeFks ? fetchForeignKeys(dbmd, nSchema, tables) : emptyList());
+    }
+    catch(Exception e) { throw new RuntimeException(e); }
+  }
+
+  // Fetch metadata, reusing the relation metadatas and foreign keys of a previous snapshot for relations whose change
+  // signals (see RelChangeSignals) are unchanged. Only new or changed relations and the foreign keys from or to them
+  // are fetched from the database, besides indexes and row count estimates which are fetched for all tables.
+  public StoredDatabaseMetadata fetchMetadata
+    (
+      Connection conn,
+      @Nullable String schema,
+      boolean includeViews,
+      boolean includeFks,
+      @Nullable Pattern includeRelsPat,
+      @Nullable Pattern excludeRelsPat,
+      StoredDatabaseMetadata prevDbmd,
+      Map<RelId, String> prevRelSignals,
+      Map<RelId, String> relSignals
+    )
+  {
+    try
+    {
+      DatabaseMetaData dbmd = conn.getMetaData();
+
+      CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+
+      @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+
+      List<RelSearchPattern> relSearchPats = getRelationSearchPatterns(dbmd, nSchema, includeRelsPat);
+
+      List<RelDescr> searchedRelDescrs = fetchRelationDescriptions(dbmd, relSearchPats, includeViews);
+
+      List<RelDescr> relDescrs = filterRelationDescriptions(searchedRelDescrs, includeRelsPat, excludeRelsPat);
+
+      Map<RelId, RelMetadata> prevRelMdsByRelId =
+        prevDbmd.relationMetadatas().stream().collect(toMap(RelMetadata::relationId, identity()));
+
+      Set<RelId> changedRelIds = new HashSet<>();
+      for (RelDescr relDescr : relDescrs)
+      {
+        RelId relId = relDescr.relId();
+        @Nullable String signal = relSignals.get(relId);
+        if (!prevRelMdsByRelId.containsKey(relId) || signal == null || !signal.equals(prevRelSignals.get(relId)))
+          changedRelIds.add(relId);
+      }
+
+      List<RelDescr> changedRelDescrs = relDescrs.stream().filter(rd -> changedRelIds.contains(rd.relId())).toList();
+
+      List<RelMetadata> fetchedRelMds = new ArrayList<>(
+        fetchRelationMetadatas(changedRelDescrs, searchedRelDescrs.size(), relSearchPats, dbmd)
+      );
+
+      // Unchanged relations keep their previous fields, with type and comment as just listed.
+      for (RelDescr relDescr : relDescrs)
+      {
+        if (!changedRelIds.contains(relDescr.relId()))
+        {
+          RelMetadata prevRelMd = prevRelMdsByRelId.get(relDescr.relId());
+          fetchedRelMds.add(new RelMetadata(
+            relDescr.relId(), relDescr.relType(), prevRelMd.fields(), relDescr.comment(), emptyList(), null
+          ));
+        }
+      }
+
+      // Indexes and row count estimates are read for all tables, since row counts change without changing the
+      // signals.
+      List<RelMetadata> relMds = new ArrayList<>(withIndexInfos(fetchedRelMds, dbmd));
+
+      relMds.sort(Comparator.comparing(RelMetadata::relationId, RELID_ORDER));
+
+      List<RelId> tables = relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+
+      Set<RelId> tableSet = new HashSet<>(tables);
+
+      List<ForeignKey> fks = new ArrayList<>();
+
+      if (includeFks)
+      {
+        List<RelId> changedTables = tables.stream().filter(changedRelIds::contains).toList();
+
+        if (!changedTables.isEmpty())
+          fks.addAll(fetchForeignKeysOfChangedTables(dbmd, nSchema, tables, changedTables));
+
+        // A foreign key is kept only if neither of its tables changed, since a change to the referenced table may
+        // rename the referenced fields without changing the signal of the referencing table.
+        for (ForeignKey prevFk : prevDbmd.foreignKeys())
+        {
+          if (!changedRelIds.contains(prevFk.foreignKeyRelationId()) &&
+              !changedRelIds.contains(prevFk.primaryKeyRelationId()) &&
+              tableSet.contains(prevFk.foreignKeyRelationId()) &&
+              tableSet.contains(prevFk.primaryKeyRelationId()))
+            fks.add(prevFk);
+        }
+
+        Map<RelId, Integer> tableIxs = new HashMap<>();
+        for (RelId relId : tables)
+          tableIxs.putIfAbsent(relId, tableIxs.size());
+
+        fks.sort(
+          Comparator.<ForeignKey>comparingInt(fk -> tableIxs.get(fk.foreignKeyRelationId()))
+          .thenComparing(ForeignKey::primaryKeyRelationId, RELID_ORDER)
+          .thenComparing(ForeignKey::constraintName, Comparator.nullsFirst(Comparator.naturalOrder()))
+        );
+      }
+
+      String dbmsName = dbmd.getDatabaseProductName();
+      String dbmsVer = dbmd.getDatabaseProductVersion();
+      int majorVer = dbmd.getDatabaseMajorVersion();
+      int minorVer = dbmd.getDatabaseMinorVersion();
+
+      return new StoredDatabaseMetadata(dbmsName, dbmsVer, majorVer, minorVer, caseSens, relMds, fks);
+    }
+    catch(Exception e) { throw new RuntimeException(e); }
+  }
+
+  // Fetch metadata using up to the given number of concurrent connections in addition to a main connection used
+  // for listing relations and for schema-wide catalog queries. The relations are split into shards of contiguous
+  // relation ids whose columns, primary keys and (where no schema-wide query is available) foreign keys are fetched
+  // concurrently, with results merged in relation id order. Each shard's columns are scanned with a getColumns()
+  // call for each of a few search patterns covering its range of relation ids (see coverRelationIds()).
+  public StoredDatabaseMetadata fetchMetadata
+    (
+      ConnectionSource connSource,
+      int parallelism,
+      @Nullable String schema,
+      boolean includeViews,
+      boolean includeFks,
+      @Nullable Pattern includeRelsPat,
+      @Nullable Pattern excludeRelsPat
+    )
+  {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+    try
+    {
+      Connection conn = connSource.openConnection();
+      try
+      {
+        if (parallelism == 1)
+          return fetchMetadata(conn, schema, includeViews, includeFks, includeRelsPat, excludeRelsPat);
+
+        DatabaseMetaData dbmd = conn.getMetaData();
+
+        CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+
+        @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+
+        List<RelSearchPattern> relSearchPats = getRelationSearchPatterns(dbmd, nSchema, includeRelsPat);
+
+        List<RelDescr> searchedRelDescrs = fetchRelationDescriptions(dbmd, relSearchPats, includeViews);
+
+        List<RelDescr> relDescrs = filterRelationDescriptions(searchedRelDescrs, includeRelsPat, excludeRelsPat);
+
+        Set<RelId> relIds = relDescrs.stream().map(RelDescr::relId).collect(toSet());
+
+        List<RelId> searchedRelIds = searchedRelDescrs.stream().map(RelDescr::relId).toList();
+
+        List<RelId> tables =
+          relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+
+        Set<RelId> tableSet = new HashSet<>(tables);
+
+        String searchStringEscape = dbmd.getSearchStringEscape();
+
+        @Nullable Map<RelId, Map<String, Integer>> schemaPkPartNums =
+          fetchSchemaPrimaryKeyPartNumbers(dbmd, singletonList(nSchema), relIds);
+
+        boolean bulkFks = includeFks && hasForeignKeyComponentsQuery(dbmd);
+
+        boolean bulkIndexes = tables.size() >= MIN_SCHEMA_INDEX_QUERY_TABLES && hasIndexInfoQuery(dbmd);
+
+        // Shards are contiguous ranges of relation ids, so that each can be scanned with a few search patterns.
+        List<RelDescr> relIdOrderedRelDescrs =
+          relDescrs.stream().sorted(Comparator.comparing(RelDescr::relId, RELID_ORDER)).toList();
+
+        List<Future<ShardMetadata>> shardFutures = new ArrayList<>();
+        int shardSize = (relDescrs.size() + parallelism - 1) / parallelism;
+        for (int i = 0; i < relIdOrderedRelDescrs.size(); i += shardSize)
+        {
+          List<RelDescr> shardRelDescrs =
+            relIdOrderedRelDescrs.subList(i, Math.min(i + shardSize, relIdOrderedRelDescrs.size()));
+          List<RelSearchPattern> shardRelSearchPats = RelSearchPattern.coverRelationIds(
+            shardRelDescrs.stream().map(RelDescr::relId).toList(), searchedRelIds, searchStringEscape
+          );
+          shardFutures.add(executor.submit(() ->
+            fetchShardMetadata(
+              connSource, shardRelDescrs, shardRelSearchPats, schemaPkPartNums, !bulkIndexes, includeFks && !bulkFks,
+              nSchema, tableSet
+            )
+          ));
+        }
+
+        // Schema-wide foreign keys and indexes are fetched on the main connection while the shards are processed.
+        List<ForeignKey> bulkFetchedFks = bulkFks ? fetchForeignKeys(dbmd, nSchema, tables) : emptyList();
+        @Nullable Map<RelId, TableIndexInfo> bulkTableIndexInfos =
+          bulkIndexes ? fetchSchemaTableIndexInfos(dbmd, tables) : null;
+
+        List<RelMetadata> relMds = new ArrayList<>();
+        List<ForeignKey> fks = new ArrayList<>(bulkFetchedFks);
+        for (Future<ShardMetadata> shardFuture : shardFutures)
+        {
+          ShardMetadata shardMd = shardFuture.get();
+          relMds.addAll(shardMd.relationMetadatas());
+          fks.addAll(shardMd.foreignKeys());
+        }
+
+        if (bulkTableIndexInfos != null)
+          relMds = new ArrayList<>(withIndexInfos(relMds, bulkTableIndexInfos));
+
+        relMds.sort(Comparator.comparing(RelMetadata::relationId, RELID_ORDER));
+
+        String dbmsName = dbmd.getDatabaseProductName();
+        String dbmsVer = dbmd.getDatabaseProductVersion();
+        int majorVer = dbmd.getDatabaseMajorVersion();
+        int minorVer = dbmd.getDatabaseMinorVersion();
+
+        return new StoredDatabaseMetadata(dbmsName, dbmsVer, majorVer, minorVer, caseSens, relMds, fks);
+      }
+      finally
+      {
+        connSource.closeConnection(conn);
+      }
+    }
+    catch(ExecutionException e) { throw new RuntimeException(e.getCause()); }
+    catch(Exception e) { throw new RuntimeException(e); }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private ShardMetadata fetchShardMetadata
+    (
+      ConnectionSource connSource,
+      List<RelDescr> relDescrs,
+      List<RelSearchPattern> relSearchPats,
+      @Nullable Map<RelId, Map<String, Integer>> schemaPkPartNums,
+      boolean includeIndexes,
+      boolean includeFks,
+      @Nullable String schema,
+      Set<RelId> tableSet
+    )
+    throws SQLException
+  {
+    Connection conn = connSource.openConnection();
+    try
+    {
+      DatabaseMetaData dbmd = conn.getMetaData();
+
+      List<RelId> relIds = relDescrs.stream().map(RelDescr::relId).toList();
+
+      Map<RelId, Map<String, Integer>> pkPartNums =
+        schemaPkPartNums != null ? schemaPkPartNums : fetchPrimaryKeyPartNumbersByRelation(dbmd, relIds);
+
+      List<RelMetadata> fetchedRelMds = fetchRelationMetadatas(relDescrs, relSearchPats, dbmd, pkPartNums);
+      List<RelMetadata> relMds = includeIndexes ? withIndexInfos(fetchedRelMds, dbmd) : fetchedRelMds;
+
+      List<RelId> shardTables = relIds.stream().filter(tableSet::contains).toList();
+      List<ForeignKey> fks = includeFks ? fetchForeignKeys(dbmd, schema, shardTables, tableSet, false) : emptyList();
+
+      return new ShardMetadata(relMds, fks);
+    }
+    finally
+    {
+      connSource.closeConnection(conn);
+    }
+  }
+
+  // Fetch metadata relation by relation, appending each relation metadata and the foreign keys from each table to
+  // the journal as they are fetched, and taking any already in the journal from there instead, so that a fetch
+  // which was interrupted can be resumed by repeating it with the same journal. The catalog calls for a relation,
+  // or for a table's foreign keys, are retried together per the retry policy on a new connection if any of them
+  // fails, so that a transient failure costs only the relation in progress. The result is the same as for a fetch
+  // on a single connection, except for relations found in the journal, which are as they were when journaled.
+  public StoredDatabaseMetadata fetchMetadata
+    (
+      ConnectionSource connSource,
+      @Nullable String schema,
+      boolean includeViews,
+      boolean includeFks,
+      @Nullable Pattern includeRelsPat,
+      @Nullable Pattern excludeRelsPat,
+      ExtractionJournal journal,
+      RetryPolicy retryPolicy
+    )
+  {
+    record Listing
+      (
+        String dbmsName,
+        String dbmsVersion,
+        int majorVersion,
+        int minorVersion,
+        CaseSensitivity caseSensitivity,
+        @Nullable String schema,
+        List<RelDescr> relDescrs
+      ) {}
+
+    try (var conn = new RetryingConnection(connSource, retryPolicy))
+    {
+      Listing listing = conn.run("list relations", dbmd -> {
+        CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+        @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+        List<RelSearchPattern> relSearchPats = getRelationSearchPatterns(dbmd, nSchema, includeRelsPat);
+        return new Listing(
+          dbmd.getDatabaseProductName(),
+          dbmd.getDatabaseProductVersion(),
+          dbmd.getDatabaseMajorVersion(),
+          dbmd.getDatabaseMinorVersion(),
+          caseSens,
+          nSchema,
+          filterRelationDescriptions(
+            fetchRelationDescriptions(dbmd, relSearchPats, includeViews),
+            includeRelsPat,
+            excludeRelsPat
+          )
+        );
+      });
+
+      List<RelMetadata> relMds = new ArrayList<>();
+      for (RelDescr relDescr : listing.relDescrs())
+      {
+        RelId relId = relDescr.relId();
+        @Nullable RelMetadata relMd = journal.getRelationMetadata(relId);
+        if (relMd == null)
+        {
+          List<RelMetadata> fetchedRelMds = conn.run("fetch metadata for relation " + relId, dbmd ->
+            withIndexInfos(
+              fetchRelationMetadatasByRelation(
+                List.of(relDescr), dbmd, fetchPrimaryKeyPartNumbersByRelation(dbmd, List.of(relId))
+              ),
+              dbmd
+            )
+          );
+          if (fetchedRelMds.isEmpty()) // dropped since listed
+            continue;
+          relMd = fetchedRelMds.get(0);
+          journal.addRelationMetadata(relMd);
+        }
+        relMds.add(relMd);
+      }
+
+      relMds.sort(Comparator.comparing(RelMetadata::relationId, RELID_ORDER));
+
+      List<RelId> tables =
+        listing.relDescrs().stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+
+      Set<RelId> tableSet = new HashSet<>(tables);
+
+      // Foreign keys are collected in order of their tables, each table's as ordered by fetchForeignKeys(), keeping
+      // only those to tables listed in this run since journaled foreign keys may be from an earlier one.
+      List<ForeignKey> fks = new ArrayList<>();
+      if (includeFks)
+      {
+        for (RelId relId : tables)
+        {
+          @Nullable List<ForeignKey> tableFks = journal.getForeignKeysFrom(relId);
+          if (tableFks == null)
+          {
+            tableFks = conn.run("fetch foreign keys from table " + relId, dbmd ->
+              fetchForeignKeys(dbmd, listing.schema(), List.of(relId), tableSet, false)
+            );
+            journal.addForeignKeysFrom(relId, tableFks);
+          }
+          for (ForeignKey fk : tableFks)
+          {
+            if (tableSet.contains(fk.primaryKeyRelationId()))
+              fks.add(fk);
+          }
+        }
+      }
+
+      return new StoredDatabaseMetadata(
+        listing.dbmsName(),
+        listing.dbmsVersion(),
+        listing.majorVersion(),
+        listing.minorVersion(),
+        listing.caseSensitivity(),
+        relMds,
+        fks
+      );
+    }
+    catch(Exception e) { throw new RuntimeException(e); }
+  }
+
+  public List<RelDescr> fetchRelationDescriptions
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema,
+      boolean includeViews,
+      @Nullable Pattern includeRelsPattern,
+      @Nullable Pattern excludeRelsPattern
+    )
+    throws SQLException
+  {
+    return filterRelationDescriptions(
+      fetchRelationDescriptions(dbmd, List.of(new RelSearchPattern(schema, null)), includeViews),
+      includeRelsPattern,
+      excludeRelsPattern
+    );
+  }
+
+  // Fetch descriptions of all relations matching any of the given search patterns, ordered by relation type and
+  // relation id as for a single getTables() call.
+  public List<RelDescr> fetchRelationDescriptions
+    (
+      DatabaseMetaData dbmd,
+      List<RelSearchPattern> relSearchPats,
+      boolean includeViews
+    )
+    throws SQLException
+  {
+    Map<RelId, RelDescr> relDescrsByRelId = new LinkedHashMap<>();
+
+    String[] relTypes = includeViews ? new String[]{"TABLE","VIEW"}: new String[]{"TABLE"};
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.RELATION_LISTING);
+    try
+    {
+      for (RelSearchPattern relSearchPat : relSearchPats)
+      {
+        metrics.catalogCall();
+        try (ResultSet rs = dbmd.getTables(null, relSearchPat.schemaPattern(), relSearchPat.namePattern(), relTypes))
+        {
+          while (rs.next())
+          {
+            metrics.rowRead();
+
+            @Nullable String relSchema = rs.getString("TABLE_SCHEM");
+            String relName = rs.getString("TABLE_NAME");
+
+            RelId relId = new RelId(internOrNull(relSchema), intern(relName));
+
+            RelType relType =
+              rs.getString("TABLE_TYPE").equalsIgnoreCase("table") ? RelType.table
+                : RelType.view;
+
+            relDescrsByRelId.putIfAbsent(relId, new RelDescr(relId, relType, rs.getString("REMARKS")));
+          }
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    List<RelDescr> relDescrs = new ArrayList<>(relDescrsByRelId.values());
+
+    relDescrs.sort(Comparator.comparing(RelDescr::relType).thenComparing(RelDescr::relId, RELID_ORDER));
+
+    return relDescrs;
+  }
+
+  private List<RelDescr> filterRelationDescriptions
+    (
+      List<RelDescr> relDescrs,
+      @Nullable Pattern includeRelsPattern,
+      @Nullable Pattern excludeRelsPattern
+    )
+  {
+    List<RelDescr> filteredRelDescrs = relDescrs.stream()
+      .filter(rd ->
+        matches(includeRelsPattern, rd.relId().getIdString(), true) &&
+        !matches(excludeRelsPattern, rd.relId().getIdString(), false)
+      )
+      .toList();
+
+    metrics.rowsKept(FetchMetrics.Phase.RELATION_LISTING, filteredRelDescrs.size());
+
+    return filteredRelDescrs;
+  }
+
+  // Get catalog search patterns to be used to find candidate relations for the include pattern, or a single pattern
+  // for the whole schema if the include pattern does not restrict relation names to known prefixes.
+  private static List<RelSearchPattern> getRelationSearchPatterns
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema,
+      @Nullable Pattern includeRelsPattern
+    )
+    throws SQLException
+  {
+    @Nullable List<RelSearchPattern> derivedPats = schema == null ?
+      RelSearchPattern.deriveFromRegex(
+        includeRelsPattern,
+        dbmd.supportsSchemasInTableDefinitions(),
+        dbmd.getSearchStringEscape()
+      )
+      : null;
+
+    return derivedPats != null ? derivedPats : List.of(new RelSearchPattern(schema, null));
+  }
+
+  public List<RelMetadata> fetchRelationMetadatas
+    (
+      List<RelDescr> relDescrs,
+      @Nullable String schema,
+      DatabaseMetaData dbmd
+    )
+    throws SQLException
+  {
+    return fetchRelationMetadatas(relDescrs, List.of(new RelSearchPattern(schema, null)), dbmd);
+  }
+
+  // Fetch relation metadatas for relations found via the given search patterns, choosing between one getColumns()
+  // call per relation and one per search pattern by the ratio of the relations wanted to those searched.
+  private List<RelMetadata> fetchRelationMetadatas
+    (
+      List<RelDescr> relDescrs,
+      int searchedRelsCount,
+      List<RelSearchPattern> relSearchPats,
+      DatabaseMetaData dbmd
+    )
+    throws SQLException
+  {
+    if (relDescrs.isEmpty())
+      return emptyList();
+
+    boolean targetedColumnFetch =
+      relDescrs.size() <= MAX_TARGETED_COLUMN_FETCH_RELATIONS &&
+      relDescrs.size() <= MAX_TARGETED_COLUMN_FETCH_RATIO * searchedRelsCount;
+
+    return targetedColumnFetch ?
+      fetchRelationMetadatasByRelation(
+        relDescrs, dbmd, fetchPrimaryKeyPartNumbersByRelation(dbmd, relDescrs.stream().map(RelDescr::relId).toList())
+      )
+      : fetchRelationMetadatas(relDescrs, relSearchPats, dbmd);
+  }
+
+  // Fetch relation metadatas with one getColumns() call per search pattern, the patterns together covering all of
+  // the given relations. Relation metadatas are returned in relation id order.
+  public List<RelMetadata> fetchRelationMetadatas
+    (
+      List<RelDescr> relDescrs,
+      List<RelSearchPattern> relSearchPats,
+      DatabaseMetaData dbmd
+    )
+    throws SQLException
+  {
+    Set<RelId> relIds = relDescrs.stream().map(RelDescr::relId).collect(toSet());
+
+    return
+      fetchRelationMetadatas(relDescrs, relSearchPats, dbmd, fetchPrimaryKeyPartNumbers(dbmd, relSearchPats, relIds));
+  }
+
+  private List<RelMetadata> fetchRelationMetadatas
+    (
+      List<RelDescr> relDescrs,
+      List<RelSearchPattern> relSearchPats,
+      DatabaseMetaData dbmd,
+      Map<RelId, Map<String, Integer>> pkPartNumsByRelId
+    )
+    throws SQLException
+  {
+    Map<RelId, RelDescr> relDescrsByRelId = relDescrs.stream().collect(toMap(RelDescr::relId, identity()));
+
+    List<RelMetadata> relMds = new ArrayList<>();
+    Set<RelId> readRelIds = new HashSet<>();
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.COLUMN_SCAN);
+    try
+    {
+      for (RelSearchPattern relSearchPat : relSearchPats)
+      {
+        String schemaPat = relSearchPat.schemaPattern();
+        String namePat = relSearchPat.namePattern() != null ? relSearchPat.namePattern() : "%";
+
+        metrics.catalogCall();
+        try (ResultSet colsRS = dbmd.getColumns(null, schemaPat, namePat, "%"))
+        {
+          // Search patterns may overlap, so skip relations already read via a previous pattern.
+          for (RelMetadata relMd : readRelationMetadatas(colsRS, relDescrsByRelId, pkPartNumsByRelId))
+          {
+            if (readRelIds.add(relMd.relationId()))
+              relMds.add(relMd);
+          }
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    relMds.sort(Comparator.comparing(RelMetadata::relationId, RELID_ORDER));
+
+    return relMds;
+  }
+
+  // Fetch relation metadatas with a separate getColumns() call for each relation, for when only a small subset
+  // of the relations is needed. Relation metadatas are returned in relation id order.
+  public List<RelMetadata> fetchRelationMetadatasByRelation
+    (
+      List<RelDescr> relDescrs,
+      DatabaseMetaData dbmd,
+      Map<RelId, Map<String, Integer>> pkPartNumsByRelId
+    )
+    throws SQLException
+  {
+    String esc = dbmd.getSearchStringEscape();
+
+    List<RelMetadata> relMds = new ArrayList<>();
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.COLUMN_SCAN);
+    try
+    {
+      for (RelDescr relDescr : relDescrs)
+      {
+        RelId relId = relDescr.relId();
+        @Nullable String schemaPat =
+          relId.schema() != null ? RelSearchPattern.escapeLiteral(relId.schema(), esc) : null;
+        String namePat = RelSearchPattern.escapeLiteral(relId.name(), esc);
+
+        metrics.catalogCall();
+        try (ResultSet colsRS = dbmd.getColumns(null, schemaPat, namePat, "%"))
+        {
+          relMds.addAll(readRelationMetadatas(colsRS, Map.of(relId, relDescr), pkPartNumsByRelId));
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    relMds.sort(Comparator.comparing(RelMetadata::relationId, RELID_ORDER));
+
+    return relMds;
+  }
+
+  // Fetch the metadata for a single relation, or null if the relation is not found.
+  public @Nullable RelMetadata fetchRelationMetadata
+    (
+      DatabaseMetaData dbmd,
+      RelId relId
+    )
+    throws SQLException
+  {
+    String esc = dbmd.getSearchStringEscape();
+    var relSearchPat = new RelSearchPattern(
+      relId.schema() != null ? RelSearchPattern.escapeLiteral(relId.schema(), esc) : null,
+      RelSearchPattern.escapeLiteral(relId.name(), esc)
+    );
+
+    List<RelDescr> relDescrs =
+      fetchRelationDescriptions(dbmd, List.of(relSearchPat), true).stream()
+      .filter(rd -> rd.relId().equals(relId))
+      .toList();
+
+    if (relDescrs.isEmpty())
+      return null;
+
+    List<RelMetadata> relMds = withIndexInfos(
+      fetchRelationMetadatasByRelation(relDescrs, dbmd, fetchPrimaryKeyPartNumbersByRelation(dbmd, List.of(relId))),
+      dbmd
+    );
+
+    return relMds.isEmpty() ? null : relMds.get(0);
+  }
+
+  private List<RelMetadata> readRelationMetadatas
+    (
+      ResultSet colsRS,
+      Map<RelId, RelDescr> relDescrsByRelId,
+      Map<RelId, Map<String, Integer>> pkPartNumsByRelId
+    )
+    throws SQLException
+  {
+    Map<RelId, RelMetadataBuilder> rmdBldrs = new LinkedHashMap<>();
+    @Nullable String curRelSchema = null;
+    @Nullable String curRelName = null;
+    @Nullable RelMetadataBuilder rmdBldr = null;
+    Map<String, Integer> pkPartNums = emptyMap();
+
+    while (colsRS.next())
+    {
+      metrics.rowRead();
+
+      @Nullable String relSchema = colsRS.getString("TABLE_SCHEM");
+      String relName = colsRS.getString("TABLE_NAME");
+
+      // A relation's columns are normally adjacent, so its lookups are only done when the relation changes.
+      if (!relName.equals(curRelName) || !Objects.equals(relSchema, curRelSchema))
+      {
+        curRelSchema = relSchema;
+        curRelName = relName;
+
+        RelDescr relDescr = relDescrsByRelId.get(new RelId(relSchema, relName));
+        if (relDescr != null) // Include this relation?
+        {
+          // Columns are grouped by relation here since not all drivers order them by relation for search patterns.
+          rmdBldr = rmdBldrs.computeIfAbsent(relDescr.relId(), relId ->
+            new RelMetadataBuilder(relId, relDescr.relType(), relDescr.comment())
+          );
+          pkPartNums = pkPartNumsByRelId.getOrDefault(relDescr.relId(), emptyMap());
+        }
+        else
+          rmdBldr = null;
+      }
+
+      if (rmdBldr != null)
+      {
+        rmdBldr.addField(makeField(colsRS, pkPartNums));
+        metrics.rowKept();
+      }
+    }
+
+    return rmdBldrs.values().stream().map(RelMetadataBuilder::build).toList();
+  }
+
+  // Fetch primary key part numbers by field name for each of the given relations, which are in the given schema
+  // unless it is null. A single schema-wide catalog query is used where one is known for the database, otherwise
+  // getPrimaryKeys() is called for each relation.
+  public Map<RelId, Map<String, Integer>> fetchPrimaryKeyPartNumbers
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema,
+      Set<RelId> relIds
+    )
+    throws SQLException
+  {
+    @Nullable Map<RelId, Map<String, Integer>> schemaPkPartNums =
+      fetchSchemaPrimaryKeyPartNumbers(dbmd, singletonList(schema), relIds);
+
+    return schemaPkPartNums != null ? schemaPkPartNums : fetchPrimaryKeyPartNumbersByRelation(dbmd, relIds);
+  }
+
+  // Fetch primary key part numbers for relations found via the given search patterns, schema-wide if the relations
+  // were searched by schema only. The schema pattern may be a LIKE pattern, so the relations' own schemas are queried.
+  private Map<RelId, Map<String, Integer>> fetchPrimaryKeyPartNumbers
+    (
+      DatabaseMetaData dbmd,
+      List<RelSearchPattern> relSearchPats,
+      Set<RelId> relIds
+    )
+    throws SQLException
+  {
+    if (relSearchPats.size() != 1 || relSearchPats.get(0).namePattern() != null)
+      return fetchPrimaryKeyPartNumbersByRelation(dbmd, relIds);
+
+    Collection<@Nullable String> schemas =
+      relSearchPats.get(0).schemaPattern() == null ? singletonList(null)
+      : relIds.stream().map(RelId::schema).collect(toCollection(LinkedHashSet::new));
+
+    @Nullable Map<RelId, Map<String, Integer>> schemaPkPartNums =
+      fetchSchemaPrimaryKeyPartNumbers(dbmd, schemas, relIds);
+
+    return schemaPkPartNums != null ? schemaPkPartNums : fetchPrimaryKeyPartNumbersByRelation(dbmd, relIds);
+  }
+
+  // Fetch primary key part numbers for the given relations with one schema-wide catalog query per given schema
+  // (null meaning all schemas), or return null if no schema-wide query is known for the database.
+  private @Nullable Map<RelId, Map<String, Integer>> fetchSchemaPrimaryKeyPartNumbers
+    (
+      DatabaseMetaData dbmd,
+      Collection<@Nullable String> schemas,
+      Set<RelId> relIds
+    )
+    throws SQLException
+  {
+    if (!hasPrimaryKeyComponentsQuery(dbmd))
+      return null;
+
+    Map<RelId, Map<String, Integer>> pkPartNumsByRelId = new HashMap<>();
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.PRIMARY_KEYS);
+    try
+    {
+      for (@Nullable String schema : schemas)
+      {
+        try (ResultSet pkRS = queryPrimaryKeyComponents(dbmd, schema))
+        {
+          addPrimaryKeyPartNumbers(pkRS, relIds, pkPartNumsByRelId);
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    return pkPartNumsByRelId;
+  }
+
+  // Query primary key components for all tables in the schema (or all schemas if null), with result columns named
+  // as in getPrimaryKeys(), for a database for which hasPrimaryKeyComponentsQuery() is true.
+  private ResultSet queryPrimaryKeyComponents
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema
+    )
+    throws SQLException
+  {
+    metrics.catalogCall();
+
+    String dbmsName = dbmd.getDatabaseProductName();
+
+    @Nullable String sql =
+      dbmsName.startsWith("HSQL") ? HSQL_PK_COMPONENTS_SQL + (schema != null ? " and table_schem = ?" : "") :
+      dbmsName.startsWith("Oracle") ? ORA_PK_COMPONENTS_SQL + (schema != null ? " and con.owner = ?" : "") :
+      null;
+
+    if (sql != null)
+    {
+      PreparedStatement ps = dbmd.getConnection().prepareStatement(sql);
+      ps.closeOnCompletion();
+      if (schema != null)
+        ps.setString(1, schema);
+      return ps.executeQuery();
+    }
+    else // The Postgres driver treats a null table name as matching all tables.
+      return dbmd.getPrimaryKeys(null, schema, null);
+  }
+
+  private static boolean hasPrimaryKeyComponentsQuery(DatabaseMetaData dbmd)
+    throws SQLException
+  {
+    String dbmsName = dbmd.getDatabaseProductName();
+    return dbmsName.startsWith("HSQL") || dbmsName.startsWith("Oracle") || dbmsName.startsWith("PostgreSQL");
+  }
+
+  private Map<RelId, Map<String, Integer>> fetchPrimaryKeyPartNumbersByRelation
+    (
+      DatabaseMetaData dbmd,
+      Collection<RelId> relIds
+    )
+    throws SQLException
+  {
+    Map<RelId, Map<String, Integer>> pkPartNumsByRelId = new HashMap<>();
+    Set<RelId> relIdSet = new HashSet<>(relIds);
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.PRIMARY_KEYS);
+    try
+    {
+      for (RelId relId : relIds)
+      {
+        metrics.catalogCall();
+        try (ResultSet pkRS = dbmd.getPrimaryKeys(null, relId.schema(), relId.name()))
+        {
+          addPrimaryKeyPartNumbers(pkRS, relIdSet, pkPartNumsByRelId);
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
+
+    return pkPartNumsByRelId;
+  }
+
+  private void addPrimaryKeyPartNumbers
+    (
+      ResultSet pkRS,
+      Set<RelId> relIds,
+      Map<RelId, Map<String, Integer>> pkPartNumsByRelId
+    )
+    throws SQLException
+  {
+    while (pkRS.next())
+    {
+      metrics.rowRead();
+      RelId relId = new RelId(pkRS.getString("TABLE_SCHEM"), pkRS.getString("TABLE_NAME"));
+      if (relIds.contains(relId))
+      {
+        pkPartNumsByRelId.computeIfAbsent(relId, k -> new HashMap<>())
+          .put(pkRS.getString("COLUMN_NAME"), pkRS.getInt("KEY_SEQ"));
+        metrics.rowKept();
+      }
+    }
+  }
+
+  // Add the indexes and estimated row counts of the tables among the given relation metadatas.
+  private List<RelMetadata> withIndexInfos
+    (
+      List<RelMetadata> relMds,
+      DatabaseMetaData dbmd
+    )
+    throws SQLException
+  {
+    List<RelId> tables =
+      relMds.stream().filter(relMd -> relMd.relationType() == RelType.table).map(RelMetadata::relationId).toList();
+
+    return withIndexInfos(relMds, fetchTableIndexInfos(dbmd, tables));
+  }
+
+  private static List<RelMetadata> withIndexInfos
+    (
+      List<RelMetadata> relMds,
+      Map<RelId, TableIndexInfo> tableIndexInfos
+    )
+  {
+    return relMds.stream().map(relMd -> withIndexInfo(relMd, tableIndexInfos.get(relMd.relationId()))).toList();
+  }
+
+  // Add the table's indexes, omitting any which are not on plain fields of the table, such as expression indexes.
+  private static RelMetadata withIndexInfo
+    (
+      RelMetadata relMd,
+      @Nullable TableIndexInfo tableIndexInfo
+    )
+  {
+    if (tableIndexInfo == null)
+      return relMd;
+
+    Set<String> fieldNames = relMd.fields().stream().map(Field::name).collect(toSet());
+
+    List<Index> indexes =
+      tableIndexInfo.indexes().stream()
+      .filter(index -> fieldNames.containsAll(index.fieldNames()))
+      .toList();
+
+    return new RelMetadata(
+      relMd.relationId(), relMd.relationType(), relMd.fields(), relMd.comment(),
+      indexes, tableIndexInfo.estimatedRowCount()
+    );
   }
 
-  public JdbcDbmdFetcher(DateMapping mapping)
+  // Fetch the indexes and estimated row count of each of the given tables. Schema-wide catalog queries are used where
+  // known for the database if at least MIN_SCHEMA_INDEX_QUERY_TABLES tables are wanted, otherwise getIndexInfo() is
+  // called for each table since drivers generally require a table name. Statistics are requested as approximate, so
+  // that they are reported as last gathered rather than being computed, which some databases would otherwise do.
+  private Map<RelId, TableIndexInfo> fetchTableIndexInfos
+    (
+      DatabaseMetaData dbmd,
+      Collection<RelId> tables
+    )
+    throws SQLException
   {
-    this.dateMapping = mapping;
+    @Nullable Map<RelId, TableIndexInfo> schemaTableIndexInfos =
+      tables.size() >= MIN_SCHEMA_INDEX_QUERY_TABLES ? fetchSchemaTableIndexInfos(dbmd, tables) : null;
+
+    return schemaTableIndexInfos != null ? schemaTableIndexInfos : fetchTableIndexInfosByTable(dbmd, tables);
   }
 
-  public StoredDatabaseMetadata fetchMetadata
+  // Fetch the indexes and estimated row counts of the given tables with one schema-wide catalog query for each of
+  // their schemas, or return null if no schema-wide query is known for the database.
+  private @Nullable Map<RelId, TableIndexInfo> fetchSchemaTableIndexInfos
     (
-      Connection conn,
-      @Nullable String schema,
-      boolean includeViews,
-      boolean includeFks,
-      @Nullable Pattern includeRelsPat,
-      @Nullable Pattern excludeRelsPat
+      DatabaseMetaData dbmd,
+      Collection<RelId> tables
     )
+    throws SQLException
   {
+    if (!hasIndexInfoQuery(dbmd))
+      return null;
+
+    Set<RelId> tableSet = new HashSet<>(tables);
+    Collection<@Nullable String> schemas = tables.stream().map(RelId::schema).collect(toCollection(LinkedHashSet::new));
+
+    Map<RelId, TableIndexInfoBuilder> ixInfoBldrs = new HashMap<>();
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.INDEXES);
     try
     {
-      DatabaseMetaData dbmd = conn.getMetaData();
+      for (@Nullable String schema : schemas)
+      {
+        try (ResultSet ixRS = queryIndexInfo(dbmd, schema))
+        {
+          while (ixRS.next())
+          {
+            metrics.rowRead();
+            RelId relId = new RelId(ixRS.getString("TABLE_SCHEM"), ixRS.getString("TABLE_NAME"));
+            if (tableSet.contains(relId))
+              addIndexInfoRow(ixRS, ixInfoBldrs.computeIfAbsent(relId, k -> new TableIndexInfoBuilder()));
+          }
+        }
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
 
-      CaseSensitivity caseSens = getDatabaseCaseSensitivity(dbmd);
+    return buildTableIndexInfos(tables, ixInfoBldrs);
+  }
 
-      @Nullable String nSchema = schema != null ? normalizeDatabaseIdentifier(schema, caseSens) : null;
+  private Map<RelId, TableIndexInfo> fetchTableIndexInfosByTable
+    (
+      DatabaseMetaData dbmd,
+      Collection<RelId> tables
+    )
+    throws SQLException
+  {
+    Map<RelId, TableIndexInfoBuilder> ixInfoBldrs = new HashMap<>();
 
-      List<RelDescr> relDescrs = fetchRelationDescriptions(dbmd, nSchema, includeViews, includeRelsPat, excludeRelsPat);
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.INDEXES);
+    try
+    {
+      for (RelId relId : tables)
+      {
+        var ixInfoBldr = new TableIndexInfoBuilder();
+        metrics.catalogCall();
+        try (ResultSet ixRS = dbmd.getIndexInfo(null, relId.schema(), relId.name(), false, true))
+        {
+          while (ixRS.next())
+          {
+            metrics.rowRead();
+            addIndexInfoRow(ixRS, ixInfoBldr);
+          }
+        }
+        ixInfoBldrs.put(relId, ixInfoBldr);
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
 
-      List<RelMetadata> relMds = fetchRelationMetadatas(relDescrs, nSchema, dbmd);
+    return buildTableIndexInfos(tables, ixInfoBldrs);
+  }
 
-      List<RelId> tables = relDescrs.stream().filter(rd -> rd.relType() == RelType.table).map(RelDescr::relId).toList();
+  // Query index columns and table statistics for all tables in the schema (or all schemas if null), with result
+  // columns named as in getIndexInfo(), for a database for which hasIndexInfoQuery() is true.
+  private ResultSet queryIndexInfo
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema
+    )
+    throws SQLException
+  {
+    metrics.catalogCall();
 
-      List<ForeignKey> fks = includeFks ? fetchForeignKeys(dbmd, tables) : emptyList();
+    String dbmsName = dbmd.getDatabaseProductName();
 
-      String dbmsName = dbmd.getDatabaseProductName();
-      String dbmsVer = dbmd.getDatabaseProductVersion();
-      int majorVer = dbmd.getDatabaseMajorVersion();
-      int minorVer = dbmd.getDatabaseMinorVersion();
+    String sql;
+    int schemaParams;
+    if (dbmsName.startsWith("HSQL"))
+    {
+      sql =
+        HSQL_TABLE_STATS_SQL + (schema != null ? " and ts.table_schema = ?" : "") +
+        "\nunion all\n" +
+        HSQL_INDEX_INFO_SQL + (schema != null ? " and table_schem = ?" : "");
+      schemaParams = 2;
+    }
+    else if (dbmsName.startsWith("Oracle"))
+    {
+      sql =
+        ORA_TABLE_STATS_SQL + (schema != null ? " and t.owner = ?" : "") +
+        "\nunion all\n" +
+        ORA_INDEX_INFO_SQL + (schema != null ? " and i.table_owner = ?" : "");
+      schemaParams = 2;
+    }
+    else if (dbmsName.startsWith("PostgreSQL"))
+    {
+      sql =
+        PG_TABLE_STATS_SQL + (schema != null ? " and n.nspname = ?" : "") +
+        "\nunion all\n" +
+        PG_INDEX_INFO_SQL + (schema != null ? " and n.nspname = ?" : "");
+      schemaParams = 2;
+    }
+    else // MySQL, whose relation ids have no schema
+    {
+      sql = MYSQL_INDEX_INFO_SQL;
+      schemaParams = 0;
+    }
 
-      return new StoredDatabaseMetadata(dbmsName, dbmsVer, majorVer, minorVer, caseSens, relMds, fks);
+    PreparedStatement ps = dbmd.getConnection().prepareStatement(sql);
+    ps.closeOnCompletion();
+    if (schema != null)
+    {
+      for (int i = 1; i <= schemaParams; ++i)
+        ps.setString(i, schema);
     }
-    catch(Exception e) { throw new RuntimeException(e); }
+    return ps.executeQuery();
   }
 
-  public List<RelDescr> fetchRelationDescriptions
+  private static boolean hasIndexInfoQuery(DatabaseMetaData dbmd)
+    throws SQLException
+  {
+    String dbmsName = dbmd.getDatabaseProductName();
+    return
+      dbmsName.startsWith("HSQL") || dbmsName.startsWith("Oracle") || dbmsName.startsWith("PostgreSQL") ||
+      dbmsName.startsWith("MySQL");
+  }
+
+  // Add an index column or table statistic row, with columns as from getIndexInfo(), to the table's index info.
+  private void addIndexInfoRow(ResultSet ixRS, TableIndexInfoBuilder ixInfoBldr)
+    throws SQLException
+  {
+    @Nullable String indexName = ixRS.getString("INDEX_NAME");
+    @Nullable Long cardinality = getRSLong(ixRS, "CARDINALITY");
+    if (cardinality != null && cardinality < 0) // unknown, e.g. for Postgres tables never analyzed
+      cardinality = null;
+
+    if (ixRS.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic)
+      ixInfoBldr.rowCount = cardinality;
+    else if (indexName != null)
+    {
+      @Nullable String colName = ixRS.getString("COLUMN_NAME");
+      if (colName == null || ixRS.getString("FILTER_CONDITION") != null)
+        ixInfoBldr.partialIndexNames.add(indexName);
+      else
+      {
+        ixInfoBldr.colsByIndexName.computeIfAbsent(indexName, k -> new ArrayList<>())
+          .add(new IndexColumn(ixRS.getInt("ORDINAL_POSITION"), intern(colName), cardinality));
+        ixInfoBldr.uniqueByIndexName.put(indexName, !ixRS.getBoolean("NON_UNIQUE"));
+        metrics.rowKept();
+      }
+    }
+  }
+
+  // Build the index info of each of the given tables, tables without any rows read having neither indexes nor
+  // a row count.
+  private static Map<RelId, TableIndexInfo> buildTableIndexInfos
+    (
+      Collection<RelId> tables,
+      Map<RelId, TableIndexInfoBuilder> ixInfoBldrs
+    )
+  {
+    Map<RelId, TableIndexInfo> tableIndexInfos = new HashMap<>();
+    for (RelId relId : tables)
+    {
+      @Nullable TableIndexInfoBuilder ixInfoBldr = ixInfoBldrs.get(relId);
+      tableIndexInfos.put(relId, ixInfoBldr != null ? ixInfoBldr.build() : new TableIndexInfo(emptyList(), null));
+    }
+    return tableIndexInfos;
+  }
+
+  public List<ForeignKey> fetchForeignKeys
+    (
+      DatabaseMetaData dbmd,
+      List<RelId> tableRelIds
+    )
+    throws SQLException
+  {
+    return fetchForeignKeys(dbmd, null, tableRelIds);
+  }
+
+  // Fetch the foreign keys between the given tables. All foreign key components for the schema are read in a
+  // single catalog query where the database allows it, otherwise getImportedKeys() is called for each table.
+  public List<ForeignKey> fetchForeignKeys
     (
       DatabaseMetaData dbmd,
       @Nullable String schema,
-      boolean includeViews,
-      @Nullable Pattern includeRelsPattern,
-      @Nullable Pattern excludeRelsPattern
+      List<RelId> tableRelIds
     )
     throws SQLException
   {
-    List<RelDescr> relDescrs = new ArrayList<>();
+    return fetchForeignKeys(dbmd, schema, tableRelIds, new HashSet<>(tableRelIds), true);
+  }
 
-    String[] relTypes = includeViews ? new String[]{"TABLE","VIEW"}: new String[]{"TABLE"};
+  // Fetch foreign keys from the given tables to any of the tables in the target table set, optionally allowing
+  // a single schema-wide query to be used in place of per-table getImportedKeys() calls.
+  private List<ForeignKey> fetchForeignKeys
+    (
+      DatabaseMetaData dbmd,
+      @Nullable String schema,
+      List<RelId> tableRelIds,
+      Set<RelId> tgtTableSet,
+      boolean allowBulkQuery
+    )
+    throws SQLException
+  {
+    Set<RelId> srcTableSet = new HashSet<>(tableRelIds);
 
-    ResultSet rs = dbmd.getTables(null, schema, null, relTypes);
+    Map<FkKey, FkBuilder> fkBldrs = new LinkedHashMap<>();
+    List<FkBuilder> completedUnnamedFkBldrs = new ArrayList<>();
 
-    while (rs.next())
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.FOREIGN_KEYS);
+    try
     {
-      @Nullable String relSchema = rs.getString("TABLE_SCHEM");
-      String relName = rs.getString("TABLE_NAME");
-
-      RelId relId = new RelId(relSchema, relName);
-
-      if (matches(includeRelsPattern, relId.getIdString(), true) &&
-          !matches(excludeRelsPattern, relId.getIdString(), false))
+      if (allowBulkQuery && hasForeignKeyComponentsQuery(dbmd))
       {
-        RelType relType =
-          rs.getString("TABLE_TYPE").equalsIgnoreCase("table") ? RelType.table
-            : RelType.view;
-
-        relDescrs.add(new RelDescr(relId, relType, rs.getString("REMARKS")));
+        try (ResultSet rs = queryForeignKeyComponents(dbmd, schema))
+        {
+          addForeignKeyComponents(rs, srcTableSet::contains, tgtTableSet::contains, fkBldrs, completedUnnamedFkBldrs);
+        }
+      }
+      else
+      {
+        for (RelId relId : tableRelIds)
+        {
+          metrics.catalogCall();
+          try (ResultSet rs = dbmd.getImportedKeys(null, relId.schema(), relId.name()))
+          {
+            addForeignKeyComponents(rs, srcTableSet::contains, tgtTableSet::contains, fkBldrs, completedUnnamedFkBldrs);
+          }
+        }
       }
     }
+    finally
+    {
+      phase.close();
+    }
 
-    return relDescrs;
+    // Order by foreign key table as given.
+    Map<RelId, Integer> tableIxs = new HashMap<>();
+    for (RelId relId : tableRelIds)
+      tableIxs.putIfAbsent(relId, tableIxs.size());
+
+    return buildForeignKeys(fkBldrs, completedUnnamedFkBldrs, Comparator.comparingInt(tableIxs::get));
   }
 
-  public List<RelMetadata> fetchRelationMetadatas
+  // Fetch the foreign keys between the given tables which are from or to any of the changed tables among them, with
+  // a single schema-wide query where the database allows it, otherwise with getImportedKeys() and getExportedKeys()
+  // calls for each changed table.
+  private List<ForeignKey> fetchForeignKeysOfChangedTables
     (
-      List<RelDescr> relDescrs,
+      DatabaseMetaData dbmd,
       @Nullable String schema,
-      DatabaseMetaData dbmd
+      List<RelId> tableRelIds,
+      List<RelId> changedTableRelIds
     )
     throws SQLException
   {
-    Map<RelId, RelDescr> relDescrsByRelId = relDescrs.stream().collect(toMap(RelDescr::relId, identity()));
+    Set<RelId> tableSet = new HashSet<>(tableRelIds);
+    Set<RelId> changedTableSet = new HashSet<>(changedTableRelIds);
 
-    try (ResultSet colsRS = dbmd.getColumns(null, schema, "%", "%"))
-    {
-      List<RelMetadata> relMds = new ArrayList<>();
-      RelMetadataBuilder rmdBldr = null;
+    if (hasForeignKeyComponentsQuery(dbmd))
+      return
+        fetchForeignKeys(dbmd, schema, tableRelIds, tableSet, true).stream()
+        .filter(fk ->
+          changedTableSet.contains(fk.foreignKeyRelationId()) || changedTableSet.contains(fk.primaryKeyRelationId())
+        )
+        .toList();
 
-      while (colsRS.next())
+    List<ForeignKey> fks = new ArrayList<>(fetchForeignKeys(dbmd, schema, changedTableRelIds, tableSet, false));
+
+    for (RelId relId : changedTableRelIds)
+    {
+      for (ForeignKey fk : fetchForeignKeysToTable(dbmd, relId))
       {
-        @Nullable String relSchema = colsRS.getString("TABLE_SCHEM");
-        String relName = colsRS.getString("TABLE_NAME");
+        // Those from changed tables were fetched above.
+        if (tableSet.contains(fk.foreignKeyRelationId()) && !changedTableSet.contains(fk.foreignKeyRelationId()))
+          fks.add(fk);
+      }
+    }
 
-        RelId relId = new RelId(relSchema, relName);
+    return fks;
+  }
 
-        RelDescr relDescr = relDescrsByRelId.get(relId);
-        if (relDescr != null) // Include this relation?
-        {
-          Field f = makeField(colsRS, dbmd);
+  // Fetch the foreign keys declared by the given table, whatever tables they reference.
+  public List<ForeignKey> fetchForeignKeysFromTable
+    (
+      DatabaseMetaData dbmd,
+      RelId tableRelId
+    )
+    throws SQLException
+  {
+    Map<FkKey, FkBuilder> fkBldrs = new LinkedHashMap<>();
+    List<FkBuilder> completedUnnamedFkBldrs = new ArrayList<>();
 
-          // Relation changed ?
-          if (rmdBldr == null || !relId.equals(rmdBldr.relId))
-          {
-            // finalize previous if any
-            if (rmdBldr != null)
-              relMds.add(rmdBldr.build());
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.FOREIGN_KEYS);
+    try
+    {
+      metrics.catalogCall();
+      try (ResultSet rs = dbmd.getImportedKeys(null, tableRelId.schema(), tableRelId.name()))
+      {
+        addForeignKeyComponents(rs, tableRelId::equals, relId -> true, fkBldrs, completedUnnamedFkBldrs);
+      }
+    }
+    finally
+    {
+      phase.close();
+    }
 
-            rmdBldr = new RelMetadataBuilder(relId, relDescr.relType(), relDescr.comment());
-          }
+    return buildForeignKeys(fkBldrs, completedUnnamedFkBldrs, RELID_ORDER);
+  }
 
-          rmdBldr.addField(f);
-        }
+  // Fetch the foreign keys referencing the given table, from whatever tables declare them.
+  public List<ForeignKey> fetchForeignKeysToTable
+    (
+      DatabaseMetaData dbmd,
+      RelId tableRelId
+    )
+    throws SQLException
+  {
+    Map<FkKey, FkBuilder> fkBldrs = new LinkedHashMap<>();
+    List<FkBuilder> completedUnnamedFkBldrs = new ArrayList<>();
+
+    FetchMetrics.PhaseTiming phase = metrics.startPhase(FetchMetrics.Phase.FOREIGN_KEYS);
+    try
+    {
+      metrics.catalogCall();
+      try (ResultSet rs = dbmd.getExportedKeys(null, tableRelId.schema(), tableRelId.name()))
+      {
+        addForeignKeyComponents(rs, relId -> true, tableRelId::equals, fkBldrs, completedUnnamedFkBldrs);
       }
+    }
+    finally
+    {
+      phase.close();
+    }
 
-      if (rmdBldr != null)
-        relMds.add(rmdBldr.build());
+    return buildForeignKeys(fkBldrs, completedUnnamedFkBldrs, RELID_ORDER);
+  }
 
-      return relMds;
-    }
+  // Build the foreign keys in the given order of their foreign key tables, then by primary key table and constraint
+  // name, so the result does not depend on the order in which the database reports foreign key components.
+  private static List<ForeignKey> buildForeignKeys
+    (
+      Map<FkKey, FkBuilder> fkBldrs,
+      List<FkBuilder> completedUnnamedFkBldrs,
+      Comparator<RelId> srcRelOrder
+    )
+  {
+    List<FkBuilder> allFkBldrs = new ArrayList<>(completedUnnamedFkBldrs);
+    allFkBldrs.addAll(fkBldrs.values());
+
+    return allFkBldrs.stream()
+      .sorted(
+        Comparator.<FkBuilder, RelId>comparing(fkb -> fkb.srcRel, srcRelOrder)
+        .thenComparing(fkb -> fkb.tgtRel.schema(), Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(fkb -> fkb.tgtRel.name())
+        .thenComparing(fkb -> fkb.constraintName, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparingInt(fkb -> fkb.discoveryIx)
+      )
+      .map(FkBuilder::build)
+      .toList();
   }
 
-  public List<ForeignKey> fetchForeignKeys
+  // Query foreign key components for all tables in the schema (or all schemas if null), with result columns named
+  // as in getImportedKeys(), for a database for which hasForeignKeyComponentsQuery() is true.
+  private ResultSet queryForeignKeyComponents
     (
       DatabaseMetaData dbmd,
-      List<RelId> tableRelIds
+      @Nullable String schema
     )
     throws SQLException
   {
-    Set<RelId> tableSet = new HashSet<>(tableRelIds);
+    metrics.catalogCall();
 
-    List<ForeignKey> fks = new ArrayList<>();
+    String dbmsName = dbmd.getDatabaseProductName();
 
-    for (RelId relId : tableRelIds)
+    @Nullable String sql =
+      dbmsName.startsWith("HSQL") ? HSQL_FK_COMPONENTS_SQL + (schema != null ? " and fktable_schem = ?" : "") :
+      dbmsName.startsWith("Oracle") ? ORA_FK_COMPONENTS_SQL + (schema != null ? " and fkcon.owner = ?" : "") :
+      dbmsName.startsWith("MySQL") ? MYSQL_FK_COMPONENTS_SQL :
+      null;
+
+    if (sql != null)
     {
-      try (ResultSet rs = dbmd.getImportedKeys(null, relId.schema(), relId.name()))
-      {
-        FkBuilder fkBldr = null;
+      PreparedStatement ps = dbmd.getConnection().prepareStatement(sql);
+      ps.closeOnCompletion();
+      if (schema != null && !dbmsName.startsWith("MySQL")) // MySQL relation ids have no schema
+        ps.setString(1, schema);
+      return ps.executeQuery();
+    }
+    else // The Postgres driver treats null primary and foreign table names as matching all tables.
+      return dbmd.getCrossReference(null, null, null, null, schema, null);
+  }
 
-        while (rs.next())
-        {
-          short compNum = rs.getShort("KEY_SEQ");
+  private static boolean hasForeignKeyComponentsQuery(DatabaseMetaData dbmd)
+    throws SQLException
+  {
+    String dbmsName = dbmd.getDatabaseProductName();
+    return
+      dbmsName.startsWith("HSQL") || dbmsName.startsWith("Oracle") || dbmsName.startsWith("PostgreSQL") ||
+      dbmsName.startsWith("MySQL");
+  }
 
-          if (compNum == 1) // starting new fk
-          {
-            // Finalize previous fk if any.
-            if (fkBldr != null && tableSet.contains(fkBldr.tgtRel))
-              fks.add(fkBldr.build());
-
-            fkBldr = new FkBuilder(
-              new RelId(rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME")),
-              new RelId(rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME")),
-              rs.getString("FK_NAME")
-            );
+  private void addForeignKeyComponents
+    (
+      ResultSet rs,
+      Predicate<RelId> srcTableFilter,
+      Predicate<RelId> tgtTableFilter,
+      Map<FkKey, FkBuilder> fkBldrs,
+      List<FkBuilder> completedUnnamedFkBldrs
+    )
+    throws SQLException
+  {
+    while (rs.next())
+    {
+      metrics.rowRead();
 
-            fkBldr.addComponent(new ForeignKeyComponent(
-              rs.getString("FKCOLUMN_NAME"),
-              rs.getString("PKCOLUMN_NAME")
-            ));
-          }
-          else // adding another fk component
-          {
-            requireNonNull(fkBldr); // because we should have seen a component # 1 before entering here
-            fkBldr.addComponent(new ForeignKeyComponent(
-              rs.getString("FKCOLUMN_NAME"),
-              rs.getString("PKCOLUMN_NAME")
-            ));
-          }
-        }
+      RelId srcRel = new RelId(rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME"));
+      RelId tgtRel = new RelId(rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME"));
+
+      if (!srcTableFilter.test(srcRel) || !tgtTableFilter.test(tgtRel))
+        continue;
+
+      metrics.rowKept();
+
+      @Nullable String fkName = rs.getString("FK_NAME");
+      short compNum = rs.getShort("KEY_SEQ");
+      var fkKey = new FkKey(srcRel, tgtRel, fkName);
+
+      FkBuilder fkBldr = fkBldrs.get(fkKey);
 
-        if (fkBldr != null && tableSet.contains(fkBldr.tgtRel))
-          fks.add(fkBldr.build());
+      // Without a constraint name, a repeated component number is the only sign that a new foreign key has started.
+      if (fkBldr != null && fkName == null && fkBldr.hasComponent(compNum))
+      {
+        completedUnnamedFkBldrs.add(fkBldr);
+        fkBldr = null;
       }
-    }
 
-    return fks;
+      if (fkBldr == null)
+      {
+        fkBldr = new FkBuilder(srcRel, tgtRel, fkName, fkBldrs.size() + completedUnnamedFkBldrs.size());
+        fkBldrs.put(fkKey, fkBldr);
+      }
+
+      fkBldr.addComponent(compNum, new ForeignKeyComponent(
+        rs.getString("FKCOLUMN_NAME"),
+        rs.getString("PKCOLUMN_NAME")
+      ));
+    }
   }
 
   public static CaseSensitivity getDatabaseCaseSensitivity(DatabaseMetaData dbmd)
@@ -240,14 +1737,7 @@ public class JdbcDbmdFetcher
 
   public String normalizeDatabaseIdentifier(String id, CaseSensitivity caseSens)
   {
-    if (id.startsWith("\"") && id.endsWith("\""))
-      return id;
-    else if (caseSens == CaseSensitivity.INSENSITIVE_STORED_LOWER)
-      return id.toLowerCase();
-    else if (caseSens == CaseSensitivity.INSENSITIVE_STORED_UPPER)
-      return id.toUpperCase();
-    else
-      return id;
+    return caseSens.normalizeIdentifier(id);
   }
 
   protected static @Nullable Integer getRSInt(ResultSet rs, String colName)
@@ -257,43 +1747,51 @@ public class JdbcDbmdFetcher
     return rs.wasNull() ? null : i;
   }
 
-  protected Field makeField(ResultSet colsRS, DatabaseMetaData dbmd)
+  protected static @Nullable Long getRSLong(ResultSet rs, String colName)
     throws SQLException
   {
-    try (ResultSet pkRS = dbmd.getPrimaryKeys(colsRS.getString(1), colsRS.getString(2), colsRS.getString(3)))
-    {
-      // Fetch the primary key field names and part numbers for this relation
-      Map<String, Integer> pkSeqNumsByName = new HashMap<>();
-      while (pkRS.next())
-        pkSeqNumsByName.put(pkRS.getString(4), pkRS.getInt(5));
-      pkRS.close();
-
-      String name = colsRS.getString("COLUMN_NAME");
-      int typeCode = colsRS.getInt("DATA_TYPE");
-      String dbType = colsRS.getString("TYPE_NAME");
+    long l = rs.getLong(colName);
+    return rs.wasNull() ? null : l;
+  }
 
-      // Handle special cases/conversions for the type code.
-      if (typeCode == Types.DATE || typeCode == Types.TIMESTAMP)
-        typeCode = getTypeCodeForDateOrTimestampColumn(typeCode, dbType);
-      else if ("XMLTYPE".equals(dbType) || "SYS.XMLTYPE".equals(dbType))
-        // Oracle uses proprietary "OPAQUE" code of 2007 as of 11.2, should be Types.SQLXML = 2009.
-        typeCode = Types.SQLXML;
+  protected Field makeField(ResultSet colsRS, Map<String, Integer> pkPartNumsByName)
+    throws SQLException
+  {
+    String name = intern(colsRS.getString("COLUMN_NAME"));
+    int typeCode = colsRS.getInt("DATA_TYPE");
+    String dbType = intern(colsRS.getString("TYPE_NAME"));
+
+    // Handle special cases/conversions for the type code.
+    if (typeCode == Types.DATE || typeCode == Types.TIMESTAMP)
+      typeCode = getTypeCodeForDateOrTimestampColumn(typeCode, dbType);
+    else if ("XMLTYPE".equals(dbType) || "SYS.XMLTYPE".equals(dbType))
+      // Oracle uses proprietary "OPAQUE" code of 2007 as of 11.2, should be Types.SQLXML = 2009.
+      typeCode = Types.SQLXML;
+
+    @Nullable Integer size = getRSInt(colsRS, "COLUMN_SIZE");
+    @Nullable Integer length = isJdbcTypeChar(typeCode) ? size : null;
+    @Nullable Integer nullableInt = getRSInt(colsRS, "NULLABLE");
+    @Nullable Boolean nullable =
+      Objects.equals(nullableInt, ResultSetMetaData.columnNullable) ? Boolean.TRUE :
+      Objects.equals(nullableInt, ResultSetMetaData.columnNoNulls) ? Boolean.FALSE:
+      null;
+    @Nullable Integer fracDigs = isJdbcTypeNumeric(typeCode) ? getRSInt(colsRS, "DECIMAL_DIGITS") : null;
+    @Nullable Integer prec = isJdbcTypeNumeric(typeCode) ? size : null;
+    @Nullable Integer rad = isJdbcTypeNumeric(typeCode) ? getRSInt(colsRS, "NUM_PREC_RADIX") : null;
+    @Nullable Integer pkPart = pkPartNumsByName.get(name);
+    @Nullable String comment = colsRS.getString("REMARKS");
+
+    return new Field(name, dbType, typeCode, nullable, pkPart, length, prec, rad, fracDigs, comment);
+  }
 
-      @Nullable Integer size = getRSInt(colsRS, "COLUMN_SIZE");
-      @Nullable Integer length = isJdbcTypeChar(typeCode) ? size : null;
-      @Nullable Integer nullableInt = getRSInt(colsRS, "NULLABLE");
-      @Nullable Boolean nullable =
-        Objects.equals(nullableInt, ResultSetMetaData.columnNullable) ? Boolean.TRUE :
-        Objects.equals(nullableInt, ResultSetMetaData.columnNoNulls) ? Boolean.FALSE:
-        null;
-      @Nullable Integer fracDigs = isJdbcTypeNumeric(typeCode) ? getRSInt(colsRS, "DECIMAL_DIGITS") : null;
-      @Nullable Integer prec = isJdbcTypeNumeric(typeCode) ? size : null;
-      @Nullable Integer rad = isJdbcTypeNumeric(typeCode) ? getRSInt(colsRS, "NUM_PREC_RADIX") : null;
-      @Nullable Integer pkPart = pkSeqNumsByName.get(name);
-      @Nullable String comment = colsRS.getString("REMARKS");
+  private String intern(String name)
+  {
+    return internedNames.computeIfAbsent(name, identity());
+  }
 
-      return new Field(name, dbType, typeCode, nullable, pkPart, length, prec, rad, fracDigs, comment);
-    }
+  private @Nullable String internOrNull(@Nullable String name)
+  {
+    return name != null ? intern(name) : null;
   }
 
   private int getTypeCodeForDateOrTimestampColumn
@@ -325,24 +1823,64 @@ public class JdbcDbmdFetcher
     private final RelId srcRel;
     private final RelId tgtRel;
     private final @Nullable String constraintName;
-    private final List<ForeignKeyComponent> comps;
+    private final int discoveryIx;
+    private final SortedMap<Short, ForeignKeyComponent> compsByNum;
 
-    public FkBuilder(RelId srcRel, RelId tgtRel, @Nullable String constraintName)
+    public FkBuilder(RelId srcRel, RelId tgtRel, @Nullable String constraintName, int discoveryIx)
     {
       this.srcRel = srcRel;
       this.tgtRel = tgtRel;
       this.constraintName = constraintName;
-      this.comps = new ArrayList<>();
+      this.discoveryIx = discoveryIx;
+      this.compsByNum = new TreeMap<>();
     }
 
     ForeignKey build()
     {
-      return new ForeignKey(constraintName, srcRel, tgtRel, comps);
+      return new ForeignKey(constraintName, srcRel, tgtRel, new ArrayList<>(compsByNum.values()));
+    }
+
+    void addComponent(short compNum, ForeignKeyComponent comp)
+    {
+      compsByNum.put(compNum, comp);
+    }
+
+    boolean hasComponent(short compNum)
+    {
+      return compsByNum.containsKey(compNum);
     }
+  }
+
+  private record FkKey(RelId srcRel, RelId tgtRel, @Nullable String constraintName) {}
+
+  private record TableIndexInfo(List<Index> indexes, @Nullable Long estimatedRowCount) {}
+
+  private record IndexColumn(int position, String fieldName, @Nullable Long cardinality) {}
 
-    void addComponent(ForeignKeyComponent comp)
+  private static class TableIndexInfoBuilder
+  {
+    // Ordered by index name, for output which doesn't vary with the driver's ordering.
+    private final Map<String, List<IndexColumn>> colsByIndexName = new TreeMap<>();
+    private final Map<String, Boolean> uniqueByIndexName = new HashMap<>();
+    private final Set<String> partialIndexNames = new HashSet<>();
+    private @Nullable Long rowCount;
+
+    TableIndexInfo build()
     {
-      comps.add(comp);
+      List<Index> indexes = new ArrayList<>();
+      colsByIndexName.forEach((indexName, cols) -> {
+        if (partialIndexNames.contains(indexName))
+          return;
+        cols.sort(Comparator.comparingInt(IndexColumn::position));
+        indexes.add(new Index(
+          indexName,
+          uniqueByIndexName.get(indexName),
+          cols.stream().map(IndexColumn::fieldName).toList(),
+          cols.get(cols.size() - 1).cardinality() // for the full key, where reported per key prefix
+        ));
+      });
+
+      return new TableIndexInfo(indexes, rowCount);
     }
   }
 
@@ -354,7 +1892,7 @@ public class JdbcDbmdFetcher
 
     private final @Nullable String comment;
 
-    private final List<Field> fields;
+    private final CompactFieldList.Builder fields;
 
     public RelMetadataBuilder
       (
@@ -366,7 +1904,7 @@ public class JdbcDbmdFetcher
       this.relId = requireNonNull(relId);
       this.relType = requireNonNull(relType);
       this.comment = comment;
-      this.fields = new ArrayList<>();
+      this.fields = new CompactFieldList.Builder();
     }
 
     public void addField(Field f)
@@ -376,7 +1914,7 @@ public class JdbcDbmdFetcher
 
     public RelMetadata build()
     {
-      return new RelMetadata(relId, relType, fields, comment);
+      return new RelMetadata(relId, relType, fields.build(), comment, emptyList(), null);
     }
   }
 
@@ -451,4 +1989,23 @@ public class JdbcDbmdFetcher
       @Nullable String comment
     )
   {}
+
+  private record ShardMetadata
+    (
+      List<RelMetadata> relationMetadatas,
+      List<ForeignKey> foreignKeys
+    )
+  {}
+
+  // A source of connections, which takes back each connection when done with it, by default closing it.
+  @FunctionalInterface
+  public interface ConnectionSource
+  {
+    Connection openConnection() throws SQLException;
+
+    default void closeConnection(Connection conn) throws SQLException
+    {
+      conn.close();
+    }
+  }
 }
@@ -0,0 +1,152 @@
+package sjq;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.RelId;
+
+// Cheap per-relation change signals, read for all relations in one catalog query, which change whenever the
+// metadata of a relation may have changed. The signals are only meaningful when compared with signals previously
+// obtained from the same database.
+public class RelChangeSignals
+{
+  private RelChangeSignals() {}
+
+  // Last DDL time, which is updated for column, constraint and comment changes, with the count and latest DDL time
+  // of the relation's indexes, which are separate objects.
+  private static final String ORA_SQL = """
+    select o.owner, o.object_name,
+      to_char(o.last_ddl_time, 'YYYYMMDDHH24MISS') ||
+      ':' || (select count(*) || '/' || to_char(max(io.last_ddl_time), 'YYYYMMDDHH24MISS')
+              from all_indexes i
+              join all_objects io
+                on io.owner = i.owner and io.object_name = i.index_name and io.object_type = 'INDEX'
+              where i.table_owner = o.owner and i.table_name = o.object_name)
+    from all_objects o
+    where o.object_type in ('TABLE', 'VIEW')""";
+
+  // Transaction ids of the catalog rows for the relation, its columns, constraints, comments and indexes.
+  private static final String PG_SQL = """
+    select n.nspname, c.relname,
+      c.xmin::text ||
+      ':' || (select coalesce(string_agg(a.attnum || '/' || a.xmin::text, ',' order by a.attnum), '')
+              from pg_attribute a where a.attrelid = c.oid and a.attnum > 0) ||
+      ':' || (select coalesce(string_agg(co.oid || '/' || co.xmin::text, ',' order by co.oid), '')
+              from pg_constraint co where co.conrelid = c.oid) ||
+      ':' || (select coalesce(string_agg(d.objsubid || '/' || d.xmin::text, ',' order by d.objsubid), '')
+              from pg_description d where d.objoid = c.oid and d.classoid = 'pg_class'::regclass) ||
+      ':' || (select coalesce(string_agg(ix.indexrelid || '/' || ix.xmin::text, ',' order by ix.indexrelid), '')
+              from pg_index ix where ix.indrelid = c.oid)
+    from pg_class c
+    join pg_namespace n on n.oid = c.relnamespace
+    where c.relkind in ('r', 'p', 'v', 'm', 'f')""";
+
+  // Table creation time (reset by table-rebuilding alters), with the column and index definitions and table comment,
+  // since not all alters change the creation time (e.g. instant column additions). The schema is left null to match
+  // the relation ids reported by the driver, for which MySQL databases are catalogs. The column and index definitions
+  // are only wholly digested with the group_concat length limit raised, see MYSQL_SESSION_SQL.
+  private static final String MYSQL_SQL = """
+    select null, t.table_name,
+      concat_ws(':',
+        t.create_time,
+        (select md5(group_concat(
+                  concat_ws(' ', c.column_name, c.column_type, c.is_nullable, c.column_key, c.column_comment)
+                  order by c.ordinal_position))
+         from information_schema.columns c
+         where c.table_schema = t.table_schema and c.table_name = t.table_name),
+        coalesce((select md5(group_concat(
+                           concat_ws(' ', s.index_name, s.seq_in_index, s.column_name, s.non_unique)
+                           order by s.index_name, s.seq_in_index))
+                  from information_schema.statistics s
+                  where s.table_schema = t.table_schema and s.table_name = t.table_name), ''),
+        t.table_comment)
+    from information_schema.tables t
+    where t.table_schema = database()""";
+
+  // MySQL truncates group_concat results to group_concat_max_len, by default only 1024 bytes, without error.
+  private static final String MYSQL_SESSION_SQL = "set session group_concat_max_len = 4294967295";
+
+  // No DDL times are kept, so the column count and definitions, constraints, comments and index definitions are used
+  // instead.
+  private static final String HSQL_SQL = """
+    select c.table_schem, c.table_name,
+      count(*) ||
+      ':' || group_concat(
+               c.column_name || ' ' || c.type_name ||
+               ' ' || coalesce(cast(c.column_size as varchar(20)), '') ||
+               ' ' || coalesce(cast(c.decimal_digits as varchar(20)), '') ||
+               ' ' || cast(c.nullable as varchar(5)) ||
+               ' ' || coalesce(c.remarks, '')
+               order by c.ordinal_position separator ',') ||
+      ':' || coalesce((select group_concat(tc.constraint_type || ' ' || tc.constraint_name
+                                           order by tc.constraint_name separator ',')
+                       from information_schema.table_constraints tc
+                       where tc.table_schema = c.table_schem and tc.table_name = c.table_name), '') ||
+      ':' || coalesce((select t.remarks
+                       from information_schema.system_tables t
+                       where t.table_schem = c.table_schem and t.table_name = c.table_name), '') ||
+      ':' || coalesce((select group_concat(
+                                ii.index_name || ' ' || cast(ii.ordinal_position as varchar(10)) ||
+                                ' ' || coalesce(ii.column_name, '') || ' ' || cast(ii.non_unique as varchar(5))
+                                order by ii.index_name, ii.ordinal_position separator ',')
+                       from information_schema.system_indexinfo ii
+                       where ii.table_schem = c.table_schem and ii.table_name = c.table_name), '')
+    from information_schema.system_columns c
+    group by c.table_schem, c.table_name""";
+
+  // Fetch change signals by relation id for all relations visible to the connection, or return null if
+  // change signals are not supported for the database.
+  public static @Nullable Map<RelId, String> fetch(DatabaseMetaData dbmd)
+    throws SQLException
+  {
+    String dbmsName = dbmd.getDatabaseProductName();
+
+    @Nullable String sql =
+      dbmsName.startsWith("Oracle") ? ORA_SQL :
+      dbmsName.startsWith("PostgreSQL") ? PG_SQL :
+      dbmsName.startsWith("MySQL") ? MYSQL_SQL :
+      dbmsName.startsWith("HSQL") ? HSQL_SQL :
+      null;
+
+    if (sql == null)
+      return null;
+
+    Map<RelId, String> signals = new HashMap<>();
+
+    try (Statement stmt = dbmd.getConnection().createStatement())
+    {
+      if (dbmsName.startsWith("MySQL"))
+        stmt.execute(MYSQL_SESSION_SQL);
+
+      try (ResultSet rs = stmt.executeQuery(sql))
+      {
+        while (rs.next())
+        {
+          @Nullable String signal = rs.getString(3);
+          if (signal != null)
+            signals.put(new RelId(rs.getString(1), rs.getString(2)), digest(signal));
+        }
+      }
+    }
+
+    return signals;
+  }
+
+  private static String digest(String signal)
+  {
+    try
+    {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(md.digest(signal.getBytes(StandardCharsets.UTF_8)));
+    }
+    catch (NoSuchAlgorithmException e) { throw new RuntimeException(e); }
+  }
+}
@@ -0,0 +1,266 @@
+package sjq;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.RelId;
+
+// A pair of schema and table name patterns in the LIKE syntax of DatabaseMetaData catalog methods, where a null
+// pattern matches anything.
+public record RelSearchPattern
+  (
+    @Nullable String schemaPattern,
+    @Nullable String namePattern
+  )
+{
+  // Beyond this many alternatives, a single unrestricted catalog scan is preferred over one call per alternative.
+  private static final int MAX_PATTERNS = 50;
+
+  // Patterns covering relation ids are narrowed until they match at most this many other relations per relation.
+  private static final double MAX_COVERED_OTHER_NAMES_RATIO = 0.25;
+
+  // Derive search patterns which together cover every relation id string ("schema.name", or just the name if
+  // schemas are not supported) that the given regular expression can fully match, based on the literal prefixes
+  // of its top-level alternatives. Returns null if the pattern has no usable literal prefix for some alternative.
+  public static @Nullable List<RelSearchPattern> deriveFromRegex
+    (
+      @Nullable Pattern relIdPattern,
+      boolean schemasSupported,
+      String searchStringEscape
+    )
+  {
+    if (relIdPattern == null || relIdPattern.flags() != 0)
+      return null;
+
+    @Nullable List<String> alts = splitTopLevelAlternatives(relIdPattern.pattern());
+    if (alts == null || alts.size() > MAX_PATTERNS)
+      return null;
+
+    List<RelSearchPattern> searchPats = new ArrayList<>();
+
+    for (String alt : alts)
+    {
+      StringBuilder prefix = new StringBuilder();
+      boolean complete = readLiteralPrefix(alt, prefix);
+
+      if (prefix.isEmpty())
+        return null;
+
+      String prefixStr = prefix.toString();
+      int dotIx = prefixStr.indexOf('.');
+
+      if (!schemasSupported)
+        searchPats.add(new RelSearchPattern(null, likePattern(prefixStr, complete, searchStringEscape)));
+      else if (dotIx != -1)
+        searchPats.add(new RelSearchPattern(
+          likePattern(prefixStr.substring(0, dotIx), true, searchStringEscape),
+          likePattern(prefixStr.substring(dotIx + 1), complete, searchStringEscape)
+        ));
+      else if (complete) // a whole id without a dot can only be that of a relation without a schema
+        searchPats.add(new RelSearchPattern(null, likePattern(prefixStr, true, searchStringEscape)));
+      else
+        searchPats.add(new RelSearchPattern(likePattern(prefixStr, false, searchStringEscape), null));
+    }
+
+    return searchPats;
+  }
+
+  // Get search patterns which together cover the given relation ids, such as a contiguous range of the ids in a
+  // relation listing, while matching few of the listing's other relations. The names of each schema are covered
+  // starting from their common prefix, repeatedly replacing the prefix which matches the most other listed names in
+  // the schema by its extensions of one more character, until the other names matched are few compared to the names
+  // covered, or the number of patterns would exceed a limit.
+  public static List<RelSearchPattern> coverRelationIds
+    (
+      Collection<RelId> relIds,
+      Collection<RelId> listedRelIds,
+      String searchStringEscape
+    )
+  {
+    Map<@Nullable String, NavigableSet<String>> namesBySchema = new LinkedHashMap<>();
+    for (RelId relId : relIds)
+      namesBySchema.computeIfAbsent(relId.schema(), k -> new TreeSet<>()).add(relId.name());
+
+    Map<@Nullable String, NavigableSet<String>> otherNamesBySchema = new HashMap<>();
+    for (RelId relId : listedRelIds)
+    {
+      @Nullable NavigableSet<String> names = namesBySchema.get(relId.schema());
+      if (names != null && !names.contains(relId.name()))
+        otherNamesBySchema.computeIfAbsent(relId.schema(), k -> new TreeSet<>()).add(relId.name());
+    }
+
+    List<RelSearchPattern> searchPats = new ArrayList<>();
+
+    namesBySchema.forEach((schema, names) -> {
+      NavigableSet<String> otherNames = otherNamesBySchema.getOrDefault(schema, Collections.emptyNavigableSet());
+
+      Set<NameCover> covers = new TreeSet<>(Comparator.comparing(NameCover::prefix));
+      covers.add(new NameCover(commonPrefix(names.first(), names.last()), false));
+
+      while (true)
+      {
+        @Nullable NameCover widestCover = null;
+        int widestCoverOthers = 0;
+        int totalOthers = 0;
+        for (NameCover cover : covers)
+        {
+          int others = cover.exact() ? 0 : withPrefix(otherNames, cover.prefix()).size();
+          totalOthers += others;
+          if (others > widestCoverOthers)
+          {
+            widestCover = cover;
+            widestCoverOthers = others;
+          }
+        }
+
+        if (widestCover == null || totalOthers <= names.size() * MAX_COVERED_OTHER_NAMES_RATIO)
+          break;
+
+        Set<NameCover> narrowerCovers = new LinkedHashSet<>();
+        for (String name : withPrefix(names, widestCover.prefix()))
+        {
+          int prefixLen = widestCover.prefix().length();
+          narrowerCovers.add(
+            name.length() == prefixLen ? new NameCover(name, true)
+            : new NameCover(name.substring(0, name.offsetByCodePoints(prefixLen, 1)), false)
+          );
+        }
+
+        if (covers.size() - 1 + narrowerCovers.size() > MAX_PATTERNS)
+          break;
+
+        covers.remove(widestCover);
+        covers.addAll(narrowerCovers);
+      }
+
+      @Nullable String schemaPat = schema != null ? escapeLiteral(schema, searchStringEscape) : null;
+      for (NameCover cover : covers)
+        searchPats.add(new RelSearchPattern(schemaPat, likePattern(cover.prefix(), cover.exact(), searchStringEscape)));
+    });
+
+    return searchPats;
+  }
+
+  // A name prefix, or a whole name if exact.
+  private record NameCover(String prefix, boolean exact) {}
+
+  private static String commonPrefix(String s1, String s2)
+  {
+    int len = 0;
+    while (len < s1.length() && len < s2.length() && s1.charAt(len) == s2.charAt(len))
+      ++len;
+    if (len > 0 && Character.isHighSurrogate(s1.charAt(len - 1)))
+      --len;
+    return s1.substring(0, len);
+  }
+
+  private static List<String> withPrefix(NavigableSet<String> names, String prefix)
+  {
+    List<String> res = new ArrayList<>();
+    for (String name : names.tailSet(prefix, true))
+    {
+      if (!name.startsWith(prefix))
+        break;
+      res.add(name);
+    }
+    return res;
+  }
+
+  // Split the regular expression on '|' characters which are not escaped or nested in a group or character class.
+  private static @Nullable List<String> splitTopLevelAlternatives(String regex)
+  {
+    List<String> alts = new ArrayList<>();
+    int depth = 0;
+    boolean inClass = false;
+    int altStart = 0;
+
+    for (int i = 0; i < regex.length(); ++i)
+    {
+      char c = regex.charAt(i);
+      if (c == '\\')
+        ++i;
+      else if (inClass)
+        inClass = c != ']';
+      else if (c == '[')
+        inClass = true;
+      else if (c == '(')
+        ++depth;
+      else if (c == ')' && --depth < 0)
+        return null;
+      else if (c == '|' && depth == 0)
+      {
+        alts.add(regex.substring(altStart, i));
+        altStart = i + 1;
+      }
+    }
+
+    if (depth != 0 || inClass)
+      return null;
+
+    alts.add(regex.substring(altStart));
+
+    return alts;
+  }
+
+  // Append to the builder the literal characters that any full match of the regular expression must start with,
+  // returning whether the expression consists of nothing but those characters.
+  private static boolean readLiteralPrefix(String regex, StringBuilder prefix)
+  {
+    int i = regex.startsWith("^") ? 1 : 0;
+
+    while (i < regex.length())
+    {
+      char c = regex.charAt(i);
+      char lit;
+
+      if (c == '\\')
+      {
+        // Only escaped punctuation stands for itself, letters and digits introduce classes, anchors etc.
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+          return false;
+        lit = regex.charAt(i + 1);
+        i += 2;
+      }
+      else if ("[](){}.*+?^$|".indexOf(c) != -1)
+        return c == '$' && i == regex.length() - 1;
+      else
+      {
+        lit = c;
+        ++i;
+      }
+
+      // A quantifier allowing zero occurrences makes the literal optional.
+      if (i < regex.length() && "?*{".indexOf(regex.charAt(i)) != -1)
+        return false;
+
+      prefix.append(lit);
+    }
+
+    return true;
+  }
+
+  private static String likePattern(String literal, boolean exact, String esc)
+  {
+    String escaped = escapeLiteral(literal, esc);
+    return exact ? escaped : escaped + "%";
+  }
+
+  // Escape the LIKE wildcard characters in a literal string, using the escape string reported by the driver.
+  static String escapeLiteral(String literal, String esc)
+  {
+    if (esc.isEmpty())
+      return literal;
+    return literal.replace(esc, esc + esc).replace("_", esc + "_").replace("%", esc + "%");
+  }
+}
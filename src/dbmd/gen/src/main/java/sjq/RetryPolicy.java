@@ -0,0 +1,33 @@
+package sjq;
+
+import java.time.Duration;
+
+// How many times in all a failing operation is attempted, and how long to wait before each retry: the initial
+// backoff before the first retry, doubling for each further retry up to the maximum backoff.
+public record RetryPolicy
+  (
+    int maxAttempts,
+    Duration initialBackoff,
+    Duration maxBackoff
+  )
+{
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  public RetryPolicy
+  {
+    if (maxAttempts < 1)
+      throw new IllegalArgumentException("Max attempts must be at least 1.");
+  }
+
+  public static RetryPolicy withMaxAttempts(int maxAttempts)
+  {
+    return new RetryPolicy(maxAttempts, Duration.ofSeconds(1), Duration.ofSeconds(30));
+  }
+
+  // Get the wait before the given retry, numbered from 1.
+  public Duration backoff(int retry)
+  {
+    Duration backoff = initialBackoff.multipliedBy(1L << Math.min(retry - 1, 30));
+    return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+  }
+}
@@ -0,0 +1,93 @@
+package sjq;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sjq.JdbcDbmdFetcher.ConnectionSource;
+
+// Runs catalog operations on a connection from the connection source, retrying an operation which fails with a
+// SQLException per the retry policy. The connection is discarded when an operation fails, since the failure may be
+// of the connection itself, and a new connection is opened for the retry.
+class RetryingConnection implements AutoCloseable
+{
+  private final ConnectionSource connSource;
+  private final RetryPolicy retryPolicy;
+  private @Nullable Connection conn;
+
+  private static final Logger log = LoggerFactory.getLogger(RetryingConnection.class);
+
+  @FunctionalInterface
+  interface CatalogOperation<T>
+  {
+    T run(DatabaseMetaData dbmd) throws SQLException;
+  }
+
+  RetryingConnection(ConnectionSource connSource, RetryPolicy retryPolicy)
+  {
+    this.connSource = connSource;
+    this.retryPolicy = retryPolicy;
+  }
+
+  // Run the operation, described for logging, returning its result from the first attempt to succeed or throwing
+  // the exception from the last attempt.
+  <T> T run(String description, CatalogOperation<T> op)
+    throws SQLException
+  {
+    for (int attempt = 1; ; ++attempt)
+    {
+      try
+      {
+        if (conn == null)
+          conn = connSource.openConnection();
+        return op.run(conn.getMetaData());
+      }
+      catch (SQLException e)
+      {
+        closeConnection();
+
+        if (attempt >= retryPolicy.maxAttempts())
+          throw e;
+
+        long backoffMillis = retryPolicy.backoff(attempt).toMillis();
+        log.warn(
+          "Attempt " + attempt + " to " + description + " failed, retrying in " + backoffMillis + " ms: " +
+          e.getMessage()
+        );
+        try
+        {
+          Thread.sleep(backoffMillis);
+        }
+        catch (InterruptedException ie)
+        {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private void closeConnection()
+  {
+    if (conn != null)
+    {
+      try
+      {
+        conn.close();
+      }
+      catch (SQLException e)
+      {
+        // The connection is being discarded as possibly broken anyway.
+      }
+      conn = null;
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    closeConnection();
+  }
+}
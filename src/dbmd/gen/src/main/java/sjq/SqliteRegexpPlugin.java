@@ -0,0 +1,53 @@
+package sjq;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.jdbi.v3.core.spi.JdbiPlugin;
+import org.jetbrains.annotations.Nullable;
+import org.sqlite.Function;
+
+// Defines the REGEXP function on SQLite connections, which SQLite's "regexp" operator calls but which SQLite does
+// not itself provide, so the predefined metadata query can filter relations by the include and exclude patterns.
+// As with filtering of relations fetched via JDBC metadata, a value matches only if the pattern matches all of it.
+class SqliteRegexpPlugin implements JdbiPlugin
+{
+  @Override
+  public Connection customizeConnection(Connection conn)
+    throws SQLException
+  {
+    if (conn.getMetaData().getURL().startsWith("jdbc:sqlite:"))
+      RegexpFunction.define(conn);
+
+    return conn;
+  }
+
+  // SQLite driver classes are only referenced from here, so they aren't loaded for connections to other databases.
+
+  private static class RegexpFunction extends Function
+  {
+    private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+    static void define(Connection conn)
+      throws SQLException
+    {
+      Function.create(conn, "REGEXP", new RegexpFunction());
+    }
+
+    // Called as regexp(pattern, value) for "value regexp pattern".
+    @Override
+    protected void xFunc()
+      throws SQLException
+    {
+      @Nullable String pattern = value_text(0);
+      @Nullable String value = value_text(1);
+
+      if (pattern == null || value == null)
+        result();
+      else
+        result(patterns.computeIfAbsent(pattern, Pattern::compile).matcher(value).matches() ? 1 : 0);
+    }
+  }
+}
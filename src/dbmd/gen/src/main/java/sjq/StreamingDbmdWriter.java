@@ -0,0 +1,104 @@
+package sjq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jetbrains.annotations.Nullable;
+import sjq.models.CaseSensitivity;
+import sjq.models.ForeignKey;
+import sjq.models.RelMetadata;
+
+// Writes database metadata incrementally in the same format and property order as serializing a whole
+// StoredDatabaseMetadata with the given object mapper, so relation metadatas need not be held in memory together.
+// Expects the header, then any number of relation metadatas, then the foreign keys.
+public class StreamingDbmdWriter implements Closeable
+{
+  private final JsonGenerator gen;
+  private final ObjectWriter valueWriter;
+  private State state;
+
+  private enum State { START, RELATIONS, DONE }
+
+  public StreamingDbmdWriter(ObjectMapper objectMapper, Path outputFile)
+    throws IOException
+  {
+    this.gen = objectMapper.createGenerator(outputFile.toFile(), JsonEncoding.UTF8);
+    if (objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT))
+      gen.useDefaultPrettyPrinter();
+    this.valueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.state = State.START;
+  }
+
+  public void writeHeader
+    (
+      String dbmsName,
+      String dbmsVersion,
+      @Nullable Integer majorVersion,
+      @Nullable Integer minorVersion,
+      CaseSensitivity caseSensitivity
+    )
+  {
+    requireState(State.START);
+    try
+    {
+      gen.writeStartObject();
+      gen.writeStringField("dbmsName", dbmsName);
+      gen.writeStringField("dbmsVersion", dbmsVersion);
+      gen.writeFieldName("majorVersion");
+      valueWriter.writeValue(gen, majorVersion);
+      gen.writeFieldName("minorVersion");
+      valueWriter.writeValue(gen, minorVersion);
+      gen.writeFieldName("caseSensitivity");
+      valueWriter.writeValue(gen, caseSensitivity);
+      gen.writeArrayFieldStart("relationMetadatas");
+      state = State.RELATIONS;
+    }
+    catch (IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  public void writeRelationMetadata(RelMetadata relMd)
+  {
+    requireState(State.RELATIONS);
+    try
+    {
+      valueWriter.writeValue(gen, relMd);
+    }
+    catch (IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  // Write the foreign keys, completing the document.
+  public void writeForeignKeys(List<ForeignKey> fks)
+  {
+    requireState(State.RELATIONS);
+    try
+    {
+      gen.writeEndArray();
+      gen.writeFieldName("foreignKeys");
+      valueWriter.writeValue(gen, fks);
+      gen.writeEndObject();
+      gen.flush();
+      state = State.DONE;
+    }
+    catch (IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    gen.close();
+  }
+
+  private void requireState(State expected)
+  {
+    if (state != expected)
+      throw new IllegalStateException("Streaming dbmd writer is in state " + state + ", expected " + expected + ".");
+  }
+}
@@ -5,5 +5,19 @@ public enum CaseSensitivity
     INSENSITIVE_STORED_LOWER,
     INSENSITIVE_STORED_UPPER,
     INSENSITIVE_STORED_MIXED,
-    SENSITIVE
+    SENSITIVE;
+
+    // Normalize an identifier as written in SQL to the case in which the database stores it, leaving quoted
+    // identifiers unchanged.
+    public String normalizeIdentifier(String id)
+    {
+        if (id.startsWith("\"") && id.endsWith("\""))
+            return id;
+        else if (this == INSENSITIVE_STORED_LOWER)
+            return id.toLowerCase();
+        else if (this == INSENSITIVE_STORED_UPPER)
+            return id.toUpperCase();
+        else
+            return id;
+    }
 }
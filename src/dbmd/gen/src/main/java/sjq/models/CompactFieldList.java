@@ -0,0 +1,195 @@
+package sjq.models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.Nullable;
+
+// A memory-compact, immutable list of the fields of a relation, as held by RelMetadata for large catalogs. Numeric
+// attributes are stored column-wise as primitive ints with null flags, and comments are only allocated for relations
+// having any. Names and type names are held as given, which when read via JdbcDbmdFetcher are canonical instances
+// shared within the fetch. Field instances are produced on demand as views over these arrays, and are not retained.
+public final class CompactFieldList extends AbstractList<Field> implements RandomAccess
+{
+  private static final int JDBC_TYPE_CODE = 0;
+  private static final int PK_PART_NUM = 1;
+  private static final int LENGTH = 2;
+  private static final int PRECISION = 3;
+  private static final int PRECISION_RADIX = 4;
+  private static final int FRACTIONAL_DIGITS = 5;
+  private static final int INT_ATTR_COUNT = 6;
+
+  // Flag bits per field, besides the null flag bit (1 << attr) of each int attribute.
+  private static final int NULLABLE_KNOWN = 1 << INT_ATTR_COUNT;
+  private static final int NULLABLE = 1 << (INT_ATTR_COUNT + 1);
+
+  private static final CompactFieldList EMPTY =
+    new CompactFieldList(0, new String[0], new String[0], new int[0], new short[0], null);
+
+  private final int size;
+  private final String[] names;
+  private final String[] dbTypes;
+  private final int[] intAttrs; // [attr * size + field number]
+  private final short[] flags;
+  private final @Nullable String[] comments; // null if no field has a comment
+
+  private CompactFieldList
+    (
+      int size,
+      String[] names,
+      String[] dbTypes,
+      int[] intAttrs,
+      short[] flags,
+      @Nullable String[] comments
+    )
+  {
+    this.size = size;
+    this.names = names;
+    this.dbTypes = dbTypes;
+    this.intAttrs = intAttrs;
+    this.flags = flags;
+    this.comments = comments;
+  }
+
+  // Get the fields in compact form, returning the list itself if it is already compact.
+  public static CompactFieldList of(List<Field> fields)
+  {
+    if (fields instanceof CompactFieldList compactFields)
+      return compactFields;
+
+    var builder = new Builder(fields.size());
+    for (Field f : fields)
+      builder.add(f);
+    return builder.build();
+  }
+
+  @Override
+  public Field get(int i)
+  {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException(i);
+
+    short fieldFlags = flags[i];
+    return new Field(
+      names[i],
+      dbTypes[i],
+      getIntAttr(JDBC_TYPE_CODE, i, fieldFlags),
+      (fieldFlags & NULLABLE_KNOWN) != 0 ? (fieldFlags & NULLABLE) != 0 : null,
+      getIntAttr(PK_PART_NUM, i, fieldFlags),
+      getIntAttr(LENGTH, i, fieldFlags),
+      getIntAttr(PRECISION, i, fieldFlags),
+      getIntAttr(PRECISION_RADIX, i, fieldFlags),
+      getIntAttr(FRACTIONAL_DIGITS, i, fieldFlags),
+      comments != null ? comments[i] : null
+    );
+  }
+
+  @Override
+  public int size() { return size; }
+
+  // Get the name of field i without producing the field.
+  public String getName(int i)
+  {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException(i);
+    return names[i];
+  }
+
+  private @Nullable Integer getIntAttr(int attr, int i, short fieldFlags)
+  {
+    return (fieldFlags & (1 << attr)) != 0 ? null : intAttrs[attr * size + i];
+  }
+
+  // Accumulates fields in compact form, as they are read in a column scan.
+  public static final class Builder
+  {
+    private int size;
+    private String[] names;
+    private String[] dbTypes;
+    private int[][] intAttrs; // [attr][field number], until built
+    private short[] flags;
+    private @Nullable String[] comments;
+
+    public Builder() { this(8); }
+
+    public Builder(int expectedSize)
+    {
+      int capacity = Math.max(expectedSize, 1);
+      this.names = new String[capacity];
+      this.dbTypes = new String[capacity];
+      this.intAttrs = new int[INT_ATTR_COUNT][capacity];
+      this.flags = new short[capacity];
+    }
+
+    public Builder add(Field f)
+    {
+      if (size == names.length)
+        grow();
+
+      names[size] = f.name();
+      dbTypes[size] = f.databaseType();
+
+      int fieldFlags = 0;
+      fieldFlags |= setIntAttr(JDBC_TYPE_CODE, f.jdbcTypeCode());
+      fieldFlags |= setIntAttr(PK_PART_NUM, f.primaryKeyPartNumber());
+      fieldFlags |= setIntAttr(LENGTH, f.length());
+      fieldFlags |= setIntAttr(PRECISION, f.precision());
+      fieldFlags |= setIntAttr(PRECISION_RADIX, f.precisionRadix());
+      fieldFlags |= setIntAttr(FRACTIONAL_DIGITS, f.fractionalDigits());
+      if (f.nullable() != null)
+        fieldFlags |= NULLABLE_KNOWN | (f.nullable() ? NULLABLE : 0);
+      flags[size] = (short)fieldFlags;
+
+      if (f.comment() != null)
+      {
+        if (comments == null)
+          comments = new String[names.length];
+        comments[size] = f.comment();
+      }
+
+      ++size;
+      return this;
+    }
+
+    public CompactFieldList build()
+    {
+      if (size == 0)
+        return EMPTY;
+
+      int[] builtIntAttrs = new int[INT_ATTR_COUNT * size];
+      for (int attr = 0; attr < INT_ATTR_COUNT; ++attr)
+        System.arraycopy(intAttrs[attr], 0, builtIntAttrs, attr * size, size);
+
+      return new CompactFieldList(
+        size,
+        Arrays.copyOf(names, size),
+        Arrays.copyOf(dbTypes, size),
+        builtIntAttrs,
+        Arrays.copyOf(flags, size),
+        comments != null ? Arrays.copyOf(comments, size) : null
+      );
+    }
+
+    // Set the attribute value for the field being added, returning its null flag bit if it is null.
+    private int setIntAttr(int attr, @Nullable Integer value)
+    {
+      if (value == null)
+        return 1 << attr;
+      intAttrs[attr][size] = value;
+      return 0;
+    }
+
+    private void grow()
+    {
+      int capacity = names.length * 2;
+      names = Arrays.copyOf(names, capacity);
+      dbTypes = Arrays.copyOf(dbTypes, capacity);
+      for (int attr = 0; attr < INT_ATTR_COUNT; ++attr)
+        intAttrs[attr] = Arrays.copyOf(intAttrs[attr], capacity);
+      flags = Arrays.copyOf(flags, capacity);
+      if (comments != null)
+        comments = Arrays.copyOf(comments, capacity);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package sjq.models;
+
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.jetbrains.annotations.Nullable;
+
+// An index on the fields of a relation. Unique and primary key constraints are represented by the unique indexes
+// which enforce them. Only indexes on plain fields without a filter condition are recorded, so that an index
+// here applies to every row of its relation.
+@JsonPropertyOrder({"name", "unique", "fieldNames", "cardinality"})
+public record Index
+  (
+    String name,
+    boolean unique,
+    List<String> fieldNames, // in index key order
+    @Nullable Long cardinality // estimated number of distinct keys, if reported by the database
+  )
+{}
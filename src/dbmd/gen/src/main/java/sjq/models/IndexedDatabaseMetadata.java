@@ -0,0 +1,223 @@
+package sjq.models;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
+import org.jetbrains.annotations.Nullable;
+
+// An immutable view of a database metadata snapshot, indexed once on construction so that relations, their fields
+// and primary keys, and the foreign keys from, to and between relations are found without scanning. Relation ids
+// and field names are looked up first as given, then as they would be written in SQL: unquoted identifiers are
+// normalized for the database's case sensitivity, and double-quoted identifiers are taken exactly as quoted.
+public final class IndexedDatabaseMetadata
+{
+  private final StoredDatabaseMetadata dbmd;
+  private final Map<RelId, RelIndex> relIndexesByRelId;
+  private final Map<RelId, List<ForeignKey>> fksByChildRelId;
+  private final Map<RelId, List<ForeignKey>> fksByParentRelId;
+  private final Map<RelPair, List<ForeignKey>> fksByRelPair;
+  private final Map<FkMatchKey, List<ForeignKey>> fksByFkFieldNames;
+
+  private record RelIndex
+    (
+      RelMetadata relMd,
+      Map<String, Integer> fieldNumsByName, // fields are produced from the relation's compact field list on lookup
+      List<Field> pkFields,
+      List<String> pkFieldNames
+    )
+  {}
+
+  private record RelPair(RelId childRelId, RelId parentRelId) {}
+
+  private record FkMatchKey(RelId childRelId, RelId parentRelId, Set<String> fkFieldNames) {}
+
+  public IndexedDatabaseMetadata(StoredDatabaseMetadata dbmd)
+  {
+    this.dbmd = dbmd;
+
+    Map<RelId, RelIndex> relIndexes = new HashMap<>(dbmd.relationMetadatas().size() * 2);
+    for (RelMetadata relMd : dbmd.relationMetadatas())
+    {
+      List<Field> fields = relMd.fields();
+      Map<String, Integer> fieldNumsByName = new HashMap<>(fields.size() * 2);
+      List<Field> pkFields = new ArrayList<>();
+      for (int fieldNum = 0; fieldNum < fields.size(); ++fieldNum)
+      {
+        Field f = fields.get(fieldNum);
+        fieldNumsByName.put(f.name(), fieldNum);
+        if (f.primaryKeyPartNumber() != null)
+          pkFields.add(f);
+      }
+      pkFields.sort(Comparator.comparingInt(Field::primaryKeyPartNumber));
+
+      relIndexes.put(relMd.relationId(), new RelIndex(
+        relMd,
+        Map.copyOf(fieldNumsByName),
+        List.copyOf(pkFields),
+        pkFields.stream().map(Field::name).toList()
+      ));
+    }
+    this.relIndexesByRelId = Map.copyOf(relIndexes);
+
+    Map<RelId, List<ForeignKey>> fksByChild = new HashMap<>();
+    Map<RelId, List<ForeignKey>> fksByParent = new HashMap<>();
+    Map<RelPair, List<ForeignKey>> fksByPair = new HashMap<>();
+    Map<FkMatchKey, List<ForeignKey>> fksByFieldNames = new HashMap<>();
+    for (ForeignKey fk : dbmd.foreignKeys())
+    {
+      RelId childRelId = fk.foreignKeyRelationId();
+      RelId parentRelId = fk.primaryKeyRelationId();
+      Set<String> fkFieldNames =
+        fk.foreignKeyComponents().stream().map(ForeignKeyComponent::foreignKeyFieldName).collect(toSet());
+
+      fksByChild.computeIfAbsent(childRelId, k -> new ArrayList<>()).add(fk);
+      fksByParent.computeIfAbsent(parentRelId, k -> new ArrayList<>()).add(fk);
+      fksByPair.computeIfAbsent(new RelPair(childRelId, parentRelId), k -> new ArrayList<>()).add(fk);
+      fksByFieldNames.computeIfAbsent(
+        new FkMatchKey(childRelId, parentRelId, Set.copyOf(fkFieldNames)), k -> new ArrayList<>()
+      ).add(fk);
+    }
+    this.fksByChildRelId = immutableValues(fksByChild);
+    this.fksByParentRelId = immutableValues(fksByParent);
+    this.fksByRelPair = immutableValues(fksByPair);
+    this.fksByFkFieldNames = immutableValues(fksByFieldNames);
+  }
+
+  public StoredDatabaseMetadata storedMetadata() { return dbmd; }
+  public CaseSensitivity caseSensitivity() { return dbmd.caseSensitivity(); }
+
+  public @Nullable RelMetadata getRelationMetadata(RelId relId)
+  {
+    @Nullable RelIndex relIndex = findRelIndex(relId);
+    return relIndex != null ? relIndex.relMd() : null;
+  }
+
+  public @Nullable Field getField(RelId relId, String fieldName)
+  {
+    RelIndex relIndex = requireRelIndex(relId);
+    @Nullable Integer fieldNum = relIndex.fieldNumsByName().get(fieldName);
+    if (fieldNum == null)
+      fieldNum = relIndex.fieldNumsByName().get(exactName(fieldName));
+    return fieldNum != null ? relIndex.relMd().fields().get(fieldNum) : null;
+  }
+
+  // Get the primary key fields of the relation, in order of primary key part number.
+  public List<Field> getPrimaryKeyFields(RelId relId)
+  {
+    return requireRelIndex(relId).pkFields();
+  }
+
+  public List<String> getPrimaryKeyFieldNames(RelId relId)
+  {
+    return requireRelIndex(relId).pkFieldNames();
+  }
+
+  public List<ForeignKey> getForeignKeysFrom(RelId childRelId)
+  {
+    return fksByChildRelId.getOrDefault(resolveRelId(childRelId), emptyList());
+  }
+
+  public List<ForeignKey> getForeignKeysTo(RelId parentRelId)
+  {
+    return fksByParentRelId.getOrDefault(resolveRelId(parentRelId), emptyList());
+  }
+
+  public List<ForeignKey> getForeignKeysFromTo(RelId childRelId, RelId parentRelId)
+  {
+    return fksByRelPair.getOrDefault(new RelPair(resolveRelId(childRelId), resolveRelId(parentRelId)), emptyList());
+  }
+
+  // Get the single foreign key from the child to the parent relation, with exactly the given foreign key fields if
+  // field names are specified, or null if there is no such foreign key. An exception is thrown if more than one
+  // foreign key qualifies.
+  public @Nullable ForeignKey getForeignKeyFromTo
+    (
+      RelId childRelId,
+      RelId parentRelId,
+      @Nullable Set<String> fkFieldNames
+    )
+  {
+    RelId resolvedChildRelId = resolveRelId(childRelId);
+    RelId resolvedParentRelId = resolveRelId(parentRelId);
+
+    List<ForeignKey> fks;
+    if (fkFieldNames == null)
+      fks = fksByRelPair.getOrDefault(new RelPair(resolvedChildRelId, resolvedParentRelId), emptyList());
+    else
+    {
+      @Nullable RelIndex childRelIndex = relIndexesByRelId.get(resolvedChildRelId);
+      Set<String> exactFkFieldNames =
+        fkFieldNames.stream()
+        .map(n -> childRelIndex != null && childRelIndex.fieldNumsByName().containsKey(n) ? n : exactName(n))
+        .collect(toSet());
+      fks = fksByFkFieldNames.getOrDefault(
+        new FkMatchKey(resolvedChildRelId, resolvedParentRelId, exactFkFieldNames), emptyList()
+      );
+    }
+
+    if (fks.size() > 1)
+      throw new RuntimeException(
+        "Multiple foreign key constraints exist from table " + childRelId + " to table " + parentRelId +
+        (fkFieldNames != null ?
+          " with the same specified foreign key fields."
+          : " and no foreign key fields were specified to disambiguate.")
+      );
+
+    return fks.isEmpty() ? null : fks.get(0);
+  }
+
+  // Determine whether the child relation of the foreign key has an index leading with the foreign key fields, so
+  // that the child rows of a parent row can be found without scanning the child relation.
+  public boolean isForeignKeyIndexed(ForeignKey fk)
+  {
+    return requireRelIndex(fk.foreignKeyRelationId()).relMd().hasIndexLeadingWith(
+      fk.foreignKeyComponents().stream().map(ForeignKeyComponent::foreignKeyFieldName).toList()
+    );
+  }
+
+  private @Nullable RelIndex findRelIndex(RelId relId)
+  {
+    @Nullable RelIndex relIndex = relIndexesByRelId.get(relId);
+    return relIndex != null ? relIndex : relIndexesByRelId.get(exactRelId(relId));
+  }
+
+  private RelIndex requireRelIndex(RelId relId)
+  {
+    @Nullable RelIndex relIndex = findRelIndex(relId);
+    if (relIndex == null)
+      throw new RuntimeException("Relation metadata not found for relation id '" + relId + "'.");
+    return relIndex;
+  }
+
+  // Get the relation id as stored in the metadata, if the relation is present.
+  private RelId resolveRelId(RelId relId)
+  {
+    @Nullable RelIndex relIndex = findRelIndex(relId);
+    return relIndex != null ? relIndex.relMd().relationId() : exactRelId(relId);
+  }
+
+  private RelId exactRelId(RelId relId)
+  {
+    return new RelId(relId.schema() != null ? exactName(relId.schema()) : null, exactName(relId.name()));
+  }
+
+  private String exactName(String id)
+  {
+    if (id.length() >= 2 && id.startsWith("\"") && id.endsWith("\""))
+      return id.substring(1, id.length() - 1).replace("\"\"", "\"");
+    else
+      return dbmd.caseSensitivity().normalizeIdentifier(id);
+  }
+
+  private static <K> Map<K, List<ForeignKey>> immutableValues(Map<K, List<ForeignKey>> m)
+  {
+    Map<K, List<ForeignKey>> res = new HashMap<>(m.size() * 2);
+    m.forEach((k, fks) -> res.put(k, List.copyOf(fks)));
+    return Map.copyOf(res);
+  }
+}
@@ -0,0 +1,11 @@
+package sjq.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonPropertyOrder({"relationId", "signal"})
+public record RelChangeSignal
+  (
+    RelId relationId,
+    String signal
+  )
+{}
@@ -1,21 +1,33 @@
 package sjq.models;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import org.jetbrains.annotations.Nullable;
 
-@JsonPropertyOrder({"relationId", "relationType", "fields", "comment"})
+@JsonPropertyOrder({"relationId", "relationType", "fields", "comment", "indexes", "estimatedRowCount"})
 public record RelMetadata
   (
     RelId relationId,
     RelType relationType,
     List<Field> fields,
-    @Nullable String comment
+    @Nullable String comment,
+    List<Index> indexes, // empty for views, and for metadata generated before indexes were recorded
+    @Nullable Long estimatedRowCount // from database statistics, which may be approximate or out of date
   )
 {
+  // The fields are held in compact form (see CompactFieldList), whichever list they are given as.
+  public RelMetadata
+  {
+    fields = CompactFieldList.of(fields);
+    if (indexes == null)
+      indexes = List.of();
+  }
+
   @JsonIgnore()
   public List<Field> getPrimaryKeyFields()
   {
@@ -31,4 +43,21 @@ public record RelMetadata
 
     return pks;
   }
+
+  // Determine whether some index has exactly the given fields, in any order, as its leading fields, so that it can
+  // be used to find rows by values of these fields, as when joining a child relation to its parent via a foreign key.
+  @JsonIgnore()
+  public boolean hasIndexLeadingWith(Collection<String> fieldNames)
+  {
+    var soughtFieldNames = new HashSet<>(fieldNames);
+
+    for (Index index : indexes)
+    {
+      if (index.fieldNames().size() >= soughtFieldNames.size() &&
+          new HashSet<>(index.fieldNames().subList(0, soughtFieldNames.size())).equals(soughtFieldNames))
+        return true;
+    }
+
+    return false;
+  }
 }
@@ -0,0 +1,131 @@
+with
+ignoreSchemasQuery as (
+  select schema_name from (values ('INFORMATION_SCHEMA'), ('SYSTEM_LOBS')) s(schema_name)
+),
+relationsQuery as (
+  select t.table_schem schema_name, t.table_name name, lower(t.table_type) type, t.remarks
+  from information_schema.system_tables t
+  where t.table_type in ('TABLE', 'VIEW')
+    and t.table_schem not in (select schema_name from ignoreSchemasQuery)
+    and regexp_matches(t.table_schem || '.' || t.table_name, :relIncludePat)
+    and not regexp_matches(t.table_schem || '.' || t.table_name, :relExcludePat)
+),
+relationMetadatasQuery as (
+  select
+    case when count(*) = 0 then json_array() else json_arrayagg(json_object(
+      'relationId' value json_object('name' value r.name, 'schema' value r.schema_name),
+      'relationType' value r.type,
+      'fields' value (
+        select
+          case when count(*) = 0 then json_array() else json_arrayagg(json_object(
+            'name' value col.column_name,
+            'databaseType' value col.type_name,
+            'jdbcTypeCode' value col.data_type,
+            'nullable' value case col.nullable when 0 then false when 1 then true end,
+            'primaryKeyPartNumber' value (
+              select pk.key_seq
+              from information_schema.system_primarykeys pk
+              where
+                pk.table_schem = col.table_schem and
+                pk.table_name = col.table_name and
+                pk.column_name = col.column_name
+            ),
+            -- Sizes are only reported for character and numeric types, as done for metadata retrieved via JDBC.
+            'length' value case when col.data_type in (1, 12, -1) then col.column_size end,
+            'precision' value case when col.data_type in (-6, 5, 4, -5, 6, 7, 8, 3, 2) then col.column_size end,
+            'precisionRadix' value case when col.data_type in (-6, 5, 4, -5, 6, 7, 8, 3, 2) then col.num_prec_radix end,
+            'fractionalDigits' value case when col.data_type in (-6, 5, 4, -5, 6, 7, 8, 3, 2) then col.decimal_digits end,
+            'comment' value col.remarks
+          null on null) order by col.ordinal_position) end
+        from information_schema.system_columns col
+        where col.table_schem = r.schema_name and col.table_name = r.name
+      ) format json, -- fields property
+      'comment' value r.remarks,
+      'indexes' value (
+        select
+          case when count(*) = 0 then json_array() else json_arrayagg(json_object(
+            'name' value ix.index_name,
+            'unique' value not ix.non_unique,
+            'fieldNames' value (
+              select json_arrayagg(ixc.column_name order by ixc.ordinal_position)
+              from information_schema.system_indexinfo ixc
+              where
+                ixc.table_schem = ix.table_schem and
+                ixc.table_name = ix.table_name and
+                ixc.index_name = ix.index_name
+            ) format json,
+            -- The cardinality of the full key, as for metadata retrieved via JDBC.
+            'cardinality' value (
+              select ixc.cardinality
+              from information_schema.system_indexinfo ixc
+              where
+                ixc.table_schem = ix.table_schem and
+                ixc.table_name = ix.table_name and
+                ixc.index_name = ix.index_name and
+                ixc.ordinal_position = (
+                  select max(ixm.ordinal_position)
+                  from information_schema.system_indexinfo ixm
+                  where
+                    ixm.table_schem = ix.table_schem and
+                    ixm.table_name = ix.table_name and
+                    ixm.index_name = ix.index_name
+                )
+            )
+          null on null) order by ix.index_name) end
+        from information_schema.system_indexinfo ix
+        where ix.table_schem = r.schema_name and ix.table_name = r.name and ix.ordinal_position = 1
+      ) format json, -- indexes property
+      'estimatedRowCount' value (
+        select ts.cardinality
+        from information_schema.system_tablestats ts
+        where ts.table_schema = r.schema_name and ts.table_name = r.name and r.type = 'table'
+      )
+    null on null) order by r.type, r.schema_name, r.name) end json
+  from relationsQuery r
+  where regexp_matches(r.schema_name || '.' || r.name, :relChunkPat)
+),
+foreignKeysQuery as (
+  select
+    case when count(*) = 0 then json_array() else json_arrayagg(json_object(
+      'constraintName' value fk.fk_name,
+      'foreignKeyRelationId' value json_object('name' value fk.fktable_name, 'schema' value fk.fktable_schem),
+      'primaryKeyRelationId' value json_object('name' value fk.pktable_name, 'schema' value fk.pktable_schem),
+      'foreignKeyComponents' value (
+        select
+          json_arrayagg(json_object(
+            'foreignKeyFieldName' value xr.fkcolumn_name,
+            'primaryKeyFieldName' value xr.pkcolumn_name
+          ) order by xr.key_seq)
+        from information_schema.system_crossreference xr
+        where
+          xr.fk_name = fk.fk_name and
+          xr.fktable_schem = fk.fktable_schem and xr.fktable_name = fk.fktable_name and
+          xr.pktable_schem = fk.pktable_schem and xr.pktable_name = fk.pktable_name
+      ) format json
+    ) order by fk.fktable_schem, fk.fktable_name, fk.pktable_schem, fk.pktable_name, fk.fk_name) end json
+  from (
+    select distinct xr.fk_name, xr.fktable_schem, xr.fktable_name, xr.pktable_schem, xr.pktable_name
+    from information_schema.system_crossreference xr
+    where
+      regexp_matches(xr.fktable_schem || '.' || xr.fktable_name, :relChunkPat) and
+      exists (
+        select 1 from relationsQuery r
+        where r.type = 'table' and r.schema_name = xr.fktable_schem and r.name = xr.fktable_name
+      ) and
+      exists (
+        select 1 from relationsQuery r
+        where r.type = 'table' and r.schema_name = xr.pktable_schem and r.name = xr.pktable_name
+      )
+  ) fk
+)
+-- main query
+select json_object(
+  'dbmsName' value 'HSQL Database Engine',
+  'dbmsVersion' value database_version(),
+  'majorVersion' value cast(regexp_substring(database_version(), '^[0-9]+') as int),
+  'minorVersion' value cast(regexp_substring(regexp_substring(database_version(), '^[0-9]+[.][0-9]+'), '[0-9]+$') as int),
+  'caseSensitivity' value 'INSENSITIVE_STORED_UPPER',
+  'relationMetadatas' value (select json from relationMetadatasQuery) format json,
+  'foreignKeys' value (select json from foreignKeysQuery) format json
+) json
+from (values (0))
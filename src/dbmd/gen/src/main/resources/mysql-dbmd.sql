@@ -2,6 +2,25 @@ with
 ignoreSchemasQuery as (
   select 'information_schema' schema_name
 ),
+indexesQuery as (
+  -- Indexes on expressions are omitted, as not being on fields. Field names are listed in key order via
+  -- group_concat, json_arrayagg not supporting ordering, with group_concat_max_len raised by the fetcher so that
+  -- long lists are not truncated.
+  select
+    s.table_schema,
+    s.table_name,
+    json_object(
+      'name', s.index_name,
+      'unique', case when min(s.non_unique) = 0 then cast(true as json) else cast(false as json) end,
+      'fieldNames', cast(concat('[', group_concat(json_quote(s.column_name) order by s.seq_in_index), ']') as json),
+      -- That of the full key, the reported cardinalities of key prefixes being no greater.
+      'cardinality', max(s.cardinality)
+    ) obj
+  from information_schema.statistics s
+  where s.table_schema not in (select * from ignoreSchemasQuery)
+  group by s.table_schema, s.table_name, s.index_name
+  having count(s.column_name) = count(*)
+),
 relationMetadatasQuery as (
   select
     cast(coalesce(json_arrayagg(json_object(
@@ -29,12 +48,20 @@ relationMetadatasQuery as (
           )), json_type('[]')) as json)
         from information_schema.columns col
         where col.table_schema = t.table_schema and col.table_name = t.table_name
-      ) -- fields property
+      ), -- fields property
+      'indexes', (
+        select cast(coalesce(json_arrayagg(ix.obj), json_type('[]')) as json)
+        from indexesQuery ix
+        where ix.table_schema = t.table_schema and ix.table_name = t.table_name
+      ),
+      -- Estimated for InnoDB tables.
+      'estimatedRowCount', case when t.table_type = 'BASE TABLE' then t.table_rows end
     )), json_type('[]')) as json) json
   from information_schema.tables t
   where t.table_schema not in (select * from ignoreSchemasQuery)
     and concat(t.table_schema, '.', t.table_name) regexp :relIncludePat
     and not (concat(t.table_schema, '.', t.table_name) regexp :relExcludePat)
+    and concat(t.table_schema, '.', t.table_name) regexp :relChunkPat
 ),
 foreignKeysQuery as (
   -- foreign keys
@@ -85,6 +112,7 @@ foreignKeysQuery as (
       and child_fk_comp.table_schema not in (select * from ignoreSchemasQuery)
       and concat(child_tc.table_schema, '.', child_tc.table_name) regexp :relIncludePat
       and not (concat(child_tc.table_schema, '.', child_tc.table_name) regexp :relExcludePat)
+      and concat(child_tc.table_schema, '.', child_tc.table_name) regexp :relChunkPat
       and concat(parent_tc.table_schema, '.', parent_tc.table_name) regexp :relIncludePat
       and not (concat(parent_tc.table_schema, '.', parent_tc.table_name) regexp :relExcludePat)
     group by
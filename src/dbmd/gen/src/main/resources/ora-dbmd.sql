@@ -28,27 +28,61 @@ fieldMetadatas as (
     ) fmds
   from all_tab_columns tc
   where regexp_like(tc.owner||'.'||tc.table_name, :relIncludePat) and not regexp_like(tc.owner||'.'||tc.table_name, :relExcludePat)
+    and regexp_like(tc.owner||'.'||tc.table_name, :relChunkPat)
   group by tc.owner, tc.table_name
 ),
+indexMetadatas as (
+  -- Function-based and other special-purpose indexes are omitted, as not being on fields.
+  select
+    i.table_owner,
+    i.table_name,
+    json_arrayagg(
+      json_object(
+        'name' value i.index_name,
+        'unique' value case i.uniqueness when 'UNIQUE' then 'true' else 'false' end format json,
+        'fieldNames' value (
+          select json_arrayagg(ic.column_name order by ic.column_position returning clob)
+          from all_ind_columns ic
+          where ic.index_owner = i.owner and ic.index_name = i.index_name
+        ) format json,
+        'cardinality' value i.distinct_keys
+        returning clob
+      )
+      order by i.index_name
+      returning clob
+    ) imds
+  from all_indexes i
+  where i.index_type in ('NORMAL', 'NORMAL/REV', 'BITMAP', 'IOT - TOP')
+    and regexp_like(i.table_owner||'.'||i.table_name, :relIncludePat) and not regexp_like(i.table_owner||'.'||i.table_name, :relExcludePat)
+    and regexp_like(i.table_owner||'.'||i.table_name, :relChunkPat)
+  group by i.table_owner, i.table_name
+),
 tableMetadatas as (
   select
     treat(coalesce(json_arrayagg(
       json_object(
         'relationId' value json_object('schema' value r.owner, 'name' value r.name),
         'relationType' value r.type,
-        'fields' value (select fmds from fieldMetadatas where  owner = r.owner and table_name = r.name)
+        'fields' value (select fmds from fieldMetadatas where  owner = r.owner and table_name = r.name),
+        'indexes' value
+          coalesce((select imds from indexMetadatas where table_owner = r.owner and table_name = r.name), to_clob('[]'))
+          format json,
+        -- Row count as of when table statistics were last gathered.
+        'estimatedRowCount' value r.num_rows
         returning clob
       )
       returning clob
     ), to_clob('[]')) as json) tableMds
   from (
-    select t.owner, t.table_name name, 'table' type
+    select t.owner, t.table_name name, 'table' type, t.num_rows
     from all_tables t
     where regexp_like(t.owner||'.'||t.table_name, :relIncludePat) and not regexp_like(t.owner||'.'||t.table_name, :relExcludePat)
+      and regexp_like(t.owner||'.'||t.table_name, :relChunkPat)
     union all
-    select v.owner, v.view_name, 'view' type
+    select v.owner, v.view_name, 'view' type, null
     from all_views v
     where regexp_like(v.owner||'.'||v.view_name, :relIncludePat) and not regexp_like(v.owner||'.'||v.view_name, :relExcludePat)
+      and regexp_like(v.owner||'.'||v.view_name, :relChunkPat)
   ) r
 ),
 foreignKeys as (
@@ -81,6 +115,7 @@ foreignKeys as (
    where
       fkcon.constraint_type = 'R' and
       regexp_like(fkcon.owner||'.'||fkcon.table_name, :relIncludePat) and (not regexp_like(fkcon.owner||'.'||fkcon.table_name, :relExcludePat)) and
+      regexp_like(fkcon.owner||'.'||fkcon.table_name, :relChunkPat) and
       regexp_like(pkcon.owner||'.'||pkcon.table_name, :relIncludePat) and (not regexp_like(pkcon.owner||'.'||pkcon.table_name, :relExcludePat))
     group by fkcon.constraint_name, fkcon.owner, fkcon.table_name, pkcon.owner, pkcon.table_name
   ) fk
@@ -35,7 +35,36 @@ relationMetadatasQuery as (
           ) order by col.ordinal_position), '[]'::json)
         from information_schema.columns col
         where col.table_schema = r.schemaname and col.table_name = r.name
-      ) -- fields property
+      ), -- fields property
+      -- Partial indexes and indexes on expressions are omitted, as applying only to some rows or not to fields.
+      'indexes', (
+        select
+          coalesce(json_agg(json_build_object(
+            'name', ic.relname,
+            'unique', ix.indisunique,
+            'fieldNames', (
+              select json_agg(a.attname order by k.ord)
+              from unnest(ix.indkey::int2[]) with ordinality k(attnum, ord)
+              join pg_attribute a on a.attrelid = ix.indrelid and a.attnum = k.attnum
+              where k.ord <= ix.indnkeyatts
+            ),
+            'cardinality', null
+          ) order by ic.relname), '[]'::json)
+        from pg_index ix
+        join pg_class ic on ic.oid = ix.indexrelid
+        join pg_class tc on tc.oid = ix.indrelid
+        join pg_namespace tn on tn.oid = tc.relnamespace
+        where tn.nspname = r.schemaname and tc.relname = r.name
+          and ix.indpred is null
+          and ix.indexprs is null
+      ), -- indexes property
+      -- Row count as estimated when the table was last analyzed (negative if never analyzed, since Postgres 14).
+      'estimatedRowCount', (
+        select case when tc.reltuples >= 0 then tc.reltuples::bigint end
+        from pg_class tc
+        join pg_namespace tn on tn.oid = tc.relnamespace
+        where tn.nspname = r.schemaname and tc.relname = r.name and r.type = 'table'
+      )
     )), '[]'::json) json
   from (
     select t.schemaname, t.tablename name, 'table' type
@@ -47,6 +76,7 @@ relationMetadatasQuery as (
   where r.schemaname not in (select * from ignoreSchemasQuery)
     and r.schemaname || '.' || r.name ~ :relIncludePat
     and r.schemaname || '.' || r.name !~ :relExcludePat
+    and r.schemaname || '.' || r.name ~ :relChunkPat
 ),
 foreignKeysQuery as (
   select coalesce(json_agg(fk.obj), '[]'::json) json
@@ -95,6 +125,7 @@ foreignKeysQuery as (
       and child_fk_comp.table_schema not in (select * from ignoreSchemasQuery)
       and child_tc.table_schema || '.' || child_tc.table_name ~ :relIncludePat
       and child_tc.table_schema || '.' || child_tc.table_name !~ :relExcludePat
+      and child_tc.table_schema || '.' || child_tc.table_name ~ :relChunkPat
       and parent_tc.table_schema || '.' || parent_tc.table_name ~ :relIncludePat
       and parent_tc.table_schema || '.' || parent_tc.table_name !~ :relExcludePat
     group by
@@ -0,0 +1,144 @@
+with
+ignoreSchemasQuery as (select 'temp' schema_name),
+relationsQuery as (
+  select m.schema, m.name, m.type
+  from pragma_table_list m
+  where m.type in ('table', 'view')
+    and m.schema not in (select schema_name from ignoreSchemasQuery)
+    and m.name not like 'sqlite\_%' escape '\'
+    and m.schema || '.' || m.name regexp :relIncludePat
+    and not (m.schema || '.' || m.name regexp :relExcludePat)
+),
+fieldsQuery as (
+  -- Declared types are split into the type name and its parenthesized size arguments, e.g. 'numeric(12,2)'.
+  select
+    t.schema, t.rel_name, t.cid, t.name, t.not_null, t.pk, t.type_name,
+    cast(case when instr(t.size_args, ',') > 0 then substr(t.size_args, 1, instr(t.size_args, ',') - 1) else t.size_args end as integer) size1,
+    cast(case when instr(t.size_args, ',') > 0 then trim(substr(t.size_args, instr(t.size_args, ',') + 1)) end as integer) size2
+  from (
+    select
+      r.schema, r.name rel_name, p.cid, p.name, p."notnull" not_null, p.pk,
+      case when instr(p.type, '(') > 0 then trim(substr(p.type, 1, instr(p.type, '(') - 1)) else p.type end type_name,
+      case when instr(p.type, '(') > 0 then trim(replace(substr(p.type, instr(p.type, '(') + 1), ')', '')) end size_args
+    from relationsQuery r
+    join pragma_table_info(r.name, r.schema) p
+  ) t
+),
+relationMetadatasQuery as (
+  select json_group_array(json(rm.obj)) json
+  from (
+    select
+      json_object(
+        'relationId', json_object('schema', r.schema, 'name', r.name),
+        'relationType', r.type,
+        'fields', json((
+          select json_group_array(json(fo.obj))
+          from (
+            select
+              json_object(
+                'name', f.name,
+                'databaseType', f.type_name,
+                'nullable', case when f.not_null = 1 then json('false') else json('true') end,
+                'primaryKeyPartNumber', case when f.pk > 0 then f.pk end,
+                -- Character and numeric type affinities are as determined by SQLite from the declared type name.
+                'length',
+                  case when upper(f.type_name) like '%CHAR%' or upper(f.type_name) like '%CLOB%' or upper(f.type_name) like '%TEXT%'
+                  then f.size1 end,
+                'precision',
+                  case when not (upper(f.type_name) like '%CHAR%' or upper(f.type_name) like '%CLOB%' or upper(f.type_name) like '%TEXT%')
+                  then f.size1 end,
+                'precisionRadix',
+                  case when not (upper(f.type_name) like '%CHAR%' or upper(f.type_name) like '%CLOB%' or upper(f.type_name) like '%TEXT%')
+                    and f.size1 is not null
+                  then 10 end,
+                'fractionalDigits',
+                  case when not (upper(f.type_name) like '%CHAR%' or upper(f.type_name) like '%CLOB%' or upper(f.type_name) like '%TEXT%')
+                    and f.size1 is not null
+                  then coalesce(f.size2, 0) end
+              ) obj
+            from fieldsQuery f
+            where f.schema = r.schema and f.rel_name = r.name
+            order by f.cid
+          ) fo
+        )), -- fields property
+        -- Partial indexes and indexes on expressions are omitted, as applying only to some rows or not to fields.
+        -- Table statistics are only present after ANALYZE, so no cardinalities or row counts are reported.
+        'indexes', json((
+          select json_group_array(json(io.obj))
+          from (
+            select
+              json_object(
+                'name', il.name,
+                'unique', case when il."unique" = 1 then json('true') else json('false') end,
+                'fieldNames', json((
+                  select json_group_array(ii.name)
+                  from (select ic.name from pragma_index_info(il.name, r.schema) ic order by ic.seqno) ii
+                )),
+                'cardinality', null
+              ) obj
+            from pragma_index_list(r.name, r.schema) il
+            where il.partial = 0
+              and not exists (select 1 from pragma_index_info(il.name, r.schema) ic where ic.name is null)
+            order by il.name
+          ) io
+        )), -- indexes property
+        'estimatedRowCount', null
+      ) obj
+    from relationsQuery r
+    where r.schema || '.' || r.name regexp :relChunkPat
+    order by r.type, r.schema, r.name
+  ) rm
+),
+foreignKeyComponentsQuery as (
+  -- Names in foreign key declarations are resolved case-insensitively to the declared names of the relations and
+  -- fields, as SQLite does. An omitted referenced field list refers to the primary key fields of the parent table.
+  select
+    r.schema,
+    r.name fk_rel_name,
+    fk.id fk_id,
+    fk.seq,
+    pkr.name pk_rel_name,
+    (select f.name from pragma_table_info(r.name, r.schema) f where f.name = fk."from" collate nocase) fk_field_name,
+    case when fk."to" is not null
+      then (select f.name from pragma_table_info(pkr.name, pkr.schema) f where f.name = fk."to" collate nocase)
+      else (select f.name from pragma_table_info(pkr.name, pkr.schema) f where f.pk = fk.seq + 1)
+    end pk_field_name
+  from relationsQuery r
+  join pragma_foreign_key_list(r.name, r.schema) fk
+  join relationsQuery pkr on pkr.schema = r.schema and pkr.name = fk."table" collate nocase and pkr.type = 'table'
+  where r.type = 'table'
+    and r.schema || '.' || r.name regexp :relChunkPat
+),
+foreignKeysQuery as (
+  select json_group_array(json(fko.obj)) json
+  from (
+    select
+      json_object(
+        -- SQLite does not report foreign key constraint names, so names are generated from the child table name
+        -- and the foreign key's number within the table.
+        'constraintName', fkc.fk_rel_name || '_fk_' || fkc.fk_id,
+        'foreignKeyRelationId', json_object('schema', fkc.schema, 'name', fkc.fk_rel_name),
+        'primaryKeyRelationId', json_object('schema', fkc.schema, 'name', fkc.pk_rel_name),
+        'foreignKeyComponents',
+          json_group_array(
+            json_object(
+              'foreignKeyFieldName', fkc.fk_field_name,
+              'primaryKeyFieldName', fkc.pk_field_name
+            )
+          )
+      ) obj
+    from (select * from foreignKeyComponentsQuery order by schema, fk_rel_name, fk_id, seq) fkc
+    group by fkc.schema, fkc.fk_rel_name, fkc.fk_id, fkc.pk_rel_name
+    order by fkc.schema, fkc.fk_rel_name, fkc.pk_rel_name, fkc.fk_id
+  ) fko
+)
+-- main query
+select json_object(
+  'dbmsName', 'SQLite',
+  'dbmsVersion', sqlite_version(),
+  'majorVersion', cast(sqlite_version() as integer),
+  'minorVersion', cast(substr(sqlite_version(), instr(sqlite_version(), '.') + 1) as integer),
+  'caseSensitivity', 'INSENSITIVE_STORED_MIXED',
+  'relationMetadatas', json((select json from relationMetadatasQuery)),
+  'foreignKeys', json((select json from foreignKeysQuery))
+) json
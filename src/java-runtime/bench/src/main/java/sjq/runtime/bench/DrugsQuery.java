@@ -0,0 +1,178 @@
+package sjq.runtime.bench;
+
+// Generated by the Java result types source emitter with JSON readers enabled (option javaEmitJsonReaders).
+
+import java.util.*;
+import java.math.*;
+import java.time.*;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.framework.qual.DefaultQualifier;
+import org.checkerframework.framework.qual.TypeUseLocation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.*;
+import java.io.IOException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+
+public class DrugsQuery
+{
+  // Below are types representing the result data for the generated query, with top-level result type first.
+
+  public static final Class<Drug> resultClass = Drug.class;
+
+  public record Drug(
+    int id,
+    String name,
+    @Nullable String description,
+    @Nullable BigDecimal price,
+    double massMg,
+    boolean registered,
+    @Nullable Long registrationNumber,
+    Category category,
+    List<Brand> brands,
+    List<Integer> referenceCodes
+  ){}
+
+  public record Category(
+    String code,
+    @Nullable String description
+  ){}
+
+  public record Brand(
+    String name,
+    @Nullable Manufacturer manufacturer
+  ){}
+
+  public record Manufacturer(
+    int id,
+    String name,
+    @Nullable String country
+  ){}
+
+  // Readers for the result types above which drive a JsonParser directly, without reflection. A reader is
+  // called with the parser at the START_OBJECT token of its object, and leaves the parser at the object's
+  // END_OBJECT token. Properties of other types are read via the parser's codec, normally an ObjectMapper.
+  @SuppressWarnings("nullness") // because property values are held in locals which start as null
+  public static final class JsonReaders
+  {
+    private JsonReaders() {}
+
+    public static Drug readDrug(JsonParser p_) throws IOException
+    {
+      int id = 0;
+      String name = null;
+      @Nullable String description = null;
+      @Nullable BigDecimal price = null;
+      double massMg = 0;
+      boolean registered = false;
+      @Nullable Long registrationNumber = null;
+      Category category = null;
+      List<Brand> brands = null;
+      List<Integer> referenceCodes = null;
+
+      for (String field_ = p_.nextFieldName(); field_ != null; field_ = p_.nextFieldName())
+      {
+        p_.nextToken();
+        switch (field_)
+        {
+          case "id": id = p_.getValueAsInt(); break;
+          case "name": name = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          case "description": description = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          case "price": price = p_.hasToken(JsonToken.VALUE_NULL) ? null : readBigDecimal(p_); break;
+          case "massMg": massMg = p_.getValueAsDouble(); break;
+          case "registered": registered = p_.getValueAsBoolean(); break;
+          case "registrationNumber": registrationNumber = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsLong(); break;
+          case "category": category = p_.hasToken(JsonToken.VALUE_NULL) ? null : readCategory(p_); break;
+          case "brands": brands = p_.hasToken(JsonToken.VALUE_NULL) ? null : readList(p_, pe_ -> pe_.hasToken(JsonToken.VALUE_NULL) ? null : readBrand(pe_)); break;
+          case "referenceCodes": referenceCodes = p_.hasToken(JsonToken.VALUE_NULL) ? null : readList(p_, pe_ -> pe_.hasToken(JsonToken.VALUE_NULL) ? null : pe_.getValueAsInt()); break;
+          default: p_.skipChildren();
+        }
+      }
+
+      return new Drug(id, name, description, price, massMg, registered, registrationNumber, category, brands, referenceCodes);
+    }
+
+    public static Category readCategory(JsonParser p_) throws IOException
+    {
+      String code = null;
+      @Nullable String description = null;
+
+      for (String field_ = p_.nextFieldName(); field_ != null; field_ = p_.nextFieldName())
+      {
+        p_.nextToken();
+        switch (field_)
+        {
+          case "code": code = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          case "description": description = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          default: p_.skipChildren();
+        }
+      }
+
+      return new Category(code, description);
+    }
+
+    public static Brand readBrand(JsonParser p_) throws IOException
+    {
+      String name = null;
+      @Nullable Manufacturer manufacturer = null;
+
+      for (String field_ = p_.nextFieldName(); field_ != null; field_ = p_.nextFieldName())
+      {
+        p_.nextToken();
+        switch (field_)
+        {
+          case "name": name = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          case "manufacturer": manufacturer = p_.hasToken(JsonToken.VALUE_NULL) ? null : readManufacturer(p_); break;
+          default: p_.skipChildren();
+        }
+      }
+
+      return new Brand(name, manufacturer);
+    }
+
+    public static Manufacturer readManufacturer(JsonParser p_) throws IOException
+    {
+      int id = 0;
+      String name = null;
+      @Nullable String country = null;
+
+      for (String field_ = p_.nextFieldName(); field_ != null; field_ = p_.nextFieldName())
+      {
+        p_.nextToken();
+        switch (field_)
+        {
+          case "id": id = p_.getValueAsInt(); break;
+          case "name": name = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          case "country": country = p_.hasToken(JsonToken.VALUE_NULL) ? null : p_.getValueAsString(); break;
+          default: p_.skipChildren();
+        }
+      }
+
+      return new Manufacturer(id, name, country);
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T>
+    {
+      T read(JsonParser p) throws IOException;
+    }
+
+    // Read the elements of the array at whose START_ARRAY token the parser is positioned.
+    private static <T> List<T> readList(JsonParser p, ValueReader<T> elementReader) throws IOException
+    {
+      List<T> list = new ArrayList<>();
+      while (p.nextToken() != JsonToken.END_ARRAY)
+        list.add(elementReader.read(p));
+      return list;
+    }
+
+    // Read a decimal number, which some databases represent as a string in JSON.
+    private static BigDecimal readBigDecimal(JsonParser p) throws IOException
+    {
+      return p.hasToken(JsonToken.VALUE_STRING) ? new BigDecimal(p.getText()) : p.getDecimalValue();
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+package sjq.runtime.bench;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sjq.runtime.bench.DrugsQuery.Brand;
+import sjq.runtime.bench.DrugsQuery.Category;
+import sjq.runtime.bench.DrugsQuery.Drug;
+import sjq.runtime.bench.DrugsQuery.Manufacturer;
+
+// Benchmarks reading result rows into the generated result types with Jackson databind versus with the generated
+// JSON readers, each row from its own parser as for a JSON_OBJECT_ROWS result. Run with "-prof gc" to also report
+// allocation rates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonReadersBenchmark
+{
+  @Param({"1000"})
+  public int rows;
+
+  @Param({"0", "5"})
+  public int brandsPerDrug;
+
+  private JsonFactory jsonFactory;
+  private ObjectReader drugReader;
+  private List<String> rowJsons;
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    var objectMapper = new ObjectMapper();
+    jsonFactory = objectMapper.getFactory();
+    drugReader = objectMapper.readerFor(DrugsQuery.resultClass);
+
+    var random = new Random(1);
+    rowJsons = new ArrayList<>();
+    for (int i = 0; i < rows; ++i)
+      rowJsons.add(objectMapper.writeValueAsString(makeDrug(i, random)));
+
+    for (String rowJson : rowJsons)
+    {
+      if (!readWithDatabind(rowJson).equals(readWithGeneratedReader(rowJson)))
+        throw new IllegalStateException("Generated reader result differs from databind result for: " + rowJson);
+    }
+  }
+
+  @Benchmark
+  public void databind(Blackhole bh)
+    throws IOException
+  {
+    for (String rowJson : rowJsons)
+      bh.consume(readWithDatabind(rowJson));
+  }
+
+  @Benchmark
+  public void generatedReader(Blackhole bh)
+    throws IOException
+  {
+    for (String rowJson : rowJsons)
+      bh.consume(readWithGeneratedReader(rowJson));
+  }
+
+  private Drug readWithDatabind(String rowJson)
+    throws IOException
+  {
+    try (JsonParser parser = jsonFactory.createParser(rowJson))
+    {
+      parser.nextToken();
+      return drugReader.readValue(parser);
+    }
+  }
+
+  private Drug readWithGeneratedReader(String rowJson)
+    throws IOException
+  {
+    try (JsonParser parser = jsonFactory.createParser(rowJson))
+    {
+      parser.nextToken();
+      return DrugsQuery.JsonReaders.readDrug(parser);
+    }
+  }
+
+  private Drug makeDrug(int id, Random random)
+  {
+    List<Brand> brands = new ArrayList<>();
+    for (int i = 0; i < brandsPerDrug; ++i)
+    {
+      var manufacturer = i % 4 == 3 ? null :
+        new Manufacturer(random.nextInt(1000), "Manufacturer " + random.nextInt(1000), i % 2 == 0 ? null : "US");
+      brands.add(new Brand("Brand " + id + "-" + i, manufacturer));
+    }
+
+    List<Integer> referenceCodes = new ArrayList<>();
+    for (int i = 0; i < id % 5; ++i)
+      referenceCodes.add(random.nextInt(100000));
+
+    return new Drug(
+      id,
+      "Drug " + id,
+      id % 3 == 0 ? null : "Description of drug " + id + ", which is long enough to be typical of a description.",
+      id % 7 == 0 ? null : BigDecimal.valueOf(random.nextInt(1000000), 2),
+      random.nextDouble() * 1000,
+      random.nextBoolean(),
+      id % 2 == 0 ? null : 1_000_000_000L + id,
+      new Category("C" + id % 20, id % 4 == 0 ? null : "Category " + id % 20),
+      brands,
+      referenceCodes
+    );
+  }
+}
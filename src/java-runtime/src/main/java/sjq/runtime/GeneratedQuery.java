@@ -0,0 +1,156 @@
+package sjq.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import com.fasterxml.jackson.core.JsonParser;
+import org.jetbrains.annotations.Nullable;
+
+// A query class generated with Java result types, as described by its static members: its top-level result class,
+// the names of its SQL resources and the names of its parameters. A query generated for a single result
+// representation has only an unqualified SQL resource member, which doesn't record the representation, while a query
+// generated for several has a member per representation. If the query was generated with JSON readers, the JSON
+// result reader is the generated reader method for the result class, of type (JsonParser)Object.
+public record GeneratedQuery<T>
+  (
+    Class<?> queryClass,
+    Class<T> resultClass,
+    @Nullable String sqlResource,
+    Map<ResultRepr, String> sqlResourcesByResultRepr,
+    Set<String> paramNames,
+    @Nullable MethodHandle jsonResultReader
+  )
+{
+  private static final String RESULT_CLASS_MEMBER = "resultClass";
+  private static final String SQL_RESOURCE_MEMBER = "sqlResource";
+  private static final String PARAM_MEMBER_SUFFIX = "Param";
+  private static final String JSON_READERS_CLASS = "JsonReaders";
+
+  // Query descriptions, read from each query class once.
+  private static final ClassValue<GeneratedQuery<?>> generatedQueries = new ClassValue<>()
+  {
+    @Override
+    protected GeneratedQuery<?> computeValue(Class<?> queryClass)
+    {
+      return describe(queryClass);
+    }
+  };
+
+  // Get the description of the generated query class from its static members, where the result class is the query
+  // class's own resultClass member, passed here for its type.
+  @SuppressWarnings("unchecked")
+  public static <T> GeneratedQuery<T> of(Class<?> queryClass, Class<T> resultClass)
+  {
+    GeneratedQuery<?> query = generatedQueries.get(queryClass);
+    if (query.resultClass() != resultClass)
+      throw new IllegalArgumentException(
+        "Result class " + resultClass.getName() + " is not the result class of query class " +
+        queryClass.getName() + "."
+      );
+    return (GeneratedQuery<T>)query;
+  }
+
+  private static GeneratedQuery<?> describe(Class<?> queryClass)
+  {
+    Map<ResultRepr, String> sqlResourcesByResultRepr = new EnumMap<>(ResultRepr.class);
+    Set<String> paramNames = new TreeSet<>();
+    @Nullable Object declaredResultClass = null;
+    @Nullable String sqlResource = null;
+
+    for (Field field : queryClass.getFields())
+    {
+      if (!Modifier.isStatic(field.getModifiers()))
+        continue;
+
+      String name = field.getName();
+      if (name.equals(RESULT_CLASS_MEMBER))
+        declaredResultClass = getStaticValue(field);
+      else if (field.getType() == String.class && name.equals(SQL_RESOURCE_MEMBER))
+        sqlResource = (String)getStaticValue(field);
+      else if (field.getType() == String.class && name.startsWith(SQL_RESOURCE_MEMBER))
+      {
+        for (ResultRepr resultRepr : ResultRepr.values())
+        {
+          if (name.equals(SQL_RESOURCE_MEMBER + resultRepr.sqlResourceMemberSuffix()))
+            sqlResourcesByResultRepr.put(resultRepr, (String)getStaticValue(field));
+        }
+      }
+      else if (field.getType() == String.class && name.endsWith(PARAM_MEMBER_SUFFIX))
+        paramNames.add((String)getStaticValue(field));
+    }
+
+    if (!(declaredResultClass instanceof Class<?> resultClass))
+      throw new IllegalArgumentException("Query class " + queryClass.getName() + " has no result class member.");
+    if (sqlResource == null && sqlResourcesByResultRepr.isEmpty())
+      throw new IllegalArgumentException("Query class " + queryClass.getName() + " has no SQL resource members.");
+
+    return new GeneratedQuery<>(
+      queryClass,
+      resultClass,
+      sqlResource,
+      Map.copyOf(sqlResourcesByResultRepr),
+      Set.copyOf(paramNames),
+      findJsonResultReader(queryClass, resultClass)
+    );
+  }
+
+  private static @Nullable MethodHandle findJsonResultReader(Class<?> queryClass, Class<?> resultClass)
+  {
+    for (Class<?> memberClass : queryClass.getClasses())
+    {
+      if (!memberClass.getSimpleName().equals(JSON_READERS_CLASS))
+        continue;
+      try
+      {
+        Method reader = memberClass.getMethod("read" + resultClass.getSimpleName(), JsonParser.class);
+        if (!Modifier.isStatic(reader.getModifiers()) || reader.getReturnType() != resultClass)
+          return null;
+        return
+          MethodHandles.publicLookup().unreflect(reader)
+          .asType(MethodType.methodType(Object.class, JsonParser.class));
+      }
+      catch (NoSuchMethodException e) { return null; }
+      catch (IllegalAccessException e) { throw new RuntimeException(e); }
+    }
+    return null;
+  }
+
+  // Get the SQL resource for the given result representation, or if null for the only representation or else for
+  // JSON object rows or a JSON array row in that order of preference. The unqualified SQL resource of a query
+  // generated for a single result representation is returned for any representation.
+  public String getSqlResource(@Nullable ResultRepr resultRepr)
+  {
+    if (sqlResource != null)
+      return sqlResource;
+
+    @Nullable String res =
+      resultRepr != null ? sqlResourcesByResultRepr.get(resultRepr)
+      : sqlResourcesByResultRepr.containsKey(ResultRepr.JSON_OBJECT_ROWS) ?
+        sqlResourcesByResultRepr.get(ResultRepr.JSON_OBJECT_ROWS)
+      : sqlResourcesByResultRepr.get(ResultRepr.JSON_ARRAY_ROW);
+
+    if (res == null)
+      throw new IllegalArgumentException(
+        "Query class " + queryClass.getName() + " has no SQL resource for " +
+        (resultRepr != null ? "result representation " + resultRepr : "a JSON result representation") + "."
+      );
+
+    return res;
+  }
+
+  private static @Nullable Object getStaticValue(Field field)
+  {
+    try
+    {
+      return field.get(null);
+    }
+    catch (IllegalAccessException e) { throw new RuntimeException(e); }
+  }
+}
@@ -0,0 +1,191 @@
+package sjq.runtime;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.jetbrains.annotations.Nullable;
+
+// SQL with named parameters of the form :name, as written in query specifications, converted to the positional form
+// taken by JDBC, with the positions (from 1) of each parameter name in order of first occurrence. Text in string
+// literals (including Postgres escape strings E'...' and dollar-quoted strings), quoted identifiers and comments is
+// left as is, as are "::" type casts and the ':' separating the bounds of array slices such as arr[lo:hi]. Within
+// square brackets, a ':' following an operand is taken as a slice separator, so that a parameter there must begin an
+// operand, as in arr[:lo : :hi]. Nested block comments are not recognized.
+public record NamedParameterSql
+  (
+    String positionalSql,
+    Map<String, List<Integer>> paramPositionsByName
+  )
+{
+  public static NamedParameterSql parse(String sql)
+  {
+    StringBuilder positionalSql = new StringBuilder(sql.length());
+    Map<String, List<Integer>> paramPositionsByName = new LinkedHashMap<>();
+    int paramCount = 0;
+    int bracketDepth = 0;
+
+    int len = sql.length();
+    int i = 0;
+    while (i < len)
+    {
+      char c = sql.charAt(i);
+      int end; // end of the token starting at i, copied as is unless a parameter
+      if (c == '\'' && isEscapeStringPrefix(sql, i))
+        end = escapeStringEnd(sql, i + 1);
+      else if (c == '\'' || c == '"')
+      {
+        int close = sql.indexOf(c, i + 1);
+        end = close == -1 ? len : close + 1;
+      }
+      else if (c == '$' && dollarQuoteTagEnd(sql, i) != -1)
+      {
+        int tagEnd = dollarQuoteTagEnd(sql, i);
+        int close = sql.indexOf(sql.substring(i, tagEnd), tagEnd);
+        end = close == -1 ? len : close + tagEnd - i;
+      }
+      else if (c == '-' && sql.startsWith("--", i))
+      {
+        int eol = sql.indexOf('\n', i);
+        end = eol == -1 ? len : eol;
+      }
+      else if (c == '/' && sql.startsWith("/*", i))
+      {
+        int close = sql.indexOf("*/", i + 2);
+        end = close == -1 ? len : close + 2;
+      }
+      else if (c == ':' && i + 1 < len && sql.charAt(i + 1) == ':')
+        end = i + 2;
+      else if (c == ':' && i + 1 < len && isParamNameStart(sql.charAt(i + 1)) &&
+               !(bracketDepth > 0 && followsOperand(positionalSql)))
+      {
+        end = i + 2;
+        while (end < len && isParamNamePart(sql.charAt(end)))
+          ++end;
+        paramPositionsByName.computeIfAbsent(sql.substring(i + 1, end), k -> new ArrayList<>()).add(++paramCount);
+        positionalSql.append('?');
+        i = end;
+        continue;
+      }
+      else
+      {
+        if (c == '[')
+          ++bracketDepth;
+        else if (c == ']' && bracketDepth > 0)
+          --bracketDepth;
+        end = i + 1;
+      }
+
+      positionalSql.append(sql, i, end);
+      i = end;
+    }
+
+    Map<String, List<Integer>> unmodPositionsByName = new LinkedHashMap<>();
+    paramPositionsByName.forEach((name, positions) -> unmodPositionsByName.put(name, List.copyOf(positions)));
+
+    return new NamedParameterSql(positionalSql.toString(), Collections.unmodifiableMap(unmodPositionsByName));
+  }
+
+  // Bind the parameter values by name to the positional parameters of a statement prepared from the positional SQL.
+  public void bind
+    (
+      PreparedStatement ps,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    for (Map.Entry<String, List<Integer>> paramPositions : paramPositionsByName.entrySet())
+    {
+      String paramName = paramPositions.getKey();
+      if (!paramValues.containsKey(paramName))
+        throw new IllegalArgumentException("No value was provided for query parameter '" + paramName + "'.");
+      @Nullable Object value = paramValues.get(paramName);
+      for (int position : paramPositions.getValue())
+        ps.setObject(position, value);
+    }
+
+    // Every parameter has a value, so any further values are for unknown parameters.
+    if (paramValues.size() != paramPositionsByName.size())
+    {
+      Set<String> unknownParamNames = new TreeSet<>(paramValues.keySet());
+      unknownParamNames.removeAll(paramPositionsByName.keySet());
+      throw new IllegalArgumentException(
+        "Values were provided for unknown query parameters " + unknownParamNames + "."
+      );
+    }
+  }
+
+  // Whether the quote at the given position starts a Postgres escape string, being prefixed by a standalone E.
+  private static boolean isEscapeStringPrefix(String sql, int quotePos)
+  {
+    return
+      quotePos > 0 && (sql.charAt(quotePos - 1) == 'E' || sql.charAt(quotePos - 1) == 'e') &&
+      (quotePos == 1 || !isIdentifierPart(sql.charAt(quotePos - 2)));
+  }
+
+  // Find the end of an escape string whose content starts at the given position, in which a backslash escapes the
+  // character following it, and a quote is escaped by doubling as in other string literals.
+  private static int escapeStringEnd(String sql, int contentStart)
+  {
+    int i = contentStart;
+    while (i < sql.length())
+    {
+      char c = sql.charAt(i);
+      if (c == '\\')
+        i += 2;
+      else if (c == '\'' && i + 1 < sql.length() && sql.charAt(i + 1) == '\'')
+        i += 2;
+      else if (c == '\'')
+        return i + 1;
+      else
+        ++i;
+    }
+    return sql.length();
+  }
+
+  // Find the end of the dollar quote tag such as $$ or $body$ starting at the given position, or -1 if none starts
+  // there, as for a positional parameter like $1 or a '$' within an identifier.
+  private static int dollarQuoteTagEnd(String sql, int start)
+  {
+    if (start > 0 && isIdentifierPart(sql.charAt(start - 1)))
+      return -1;
+    int i = start + 1;
+    if (i < sql.length() && Character.isDigit(sql.charAt(i)))
+      return -1;
+    while (i < sql.length() && isParamNamePart(sql.charAt(i)))
+      ++i;
+    return i < sql.length() && sql.charAt(i) == '$' ? i + 1 : -1;
+  }
+
+  // Whether the SQL so far ends with an operand, ignoring whitespace, so that a following ':' is not a parameter.
+  private static boolean followsOperand(CharSequence sql)
+  {
+    int i = sql.length() - 1;
+    while (i >= 0 && Character.isWhitespace(sql.charAt(i)))
+      --i;
+    if (i < 0)
+      return false;
+    char c = sql.charAt(i);
+    return isIdentifierPart(c) || c == ')' || c == ']' || c == '?' || c == '\'' || c == '"';
+  }
+
+  private static boolean isIdentifierPart(char c)
+  {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static boolean isParamNameStart(char c)
+  {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isParamNamePart(char c)
+  {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+}
@@ -0,0 +1,106 @@
+package sjq.runtime;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.Nullable;
+
+// Prepared statements of a connection kept for reuse by the query executor, up to a maximum number of statements,
+// beyond which the least recently used statement is closed. A statement is taken out of the cache while it is in use,
+// so a query executed again before its earlier results are closed gets a newly prepared statement. Closing the cache
+// closes its statements, and it should be closed before its connection is closed or returned to a pool.
+public final class PreparedStatementCache implements AutoCloseable
+{
+  private final Connection conn;
+  private final int maxStatements;
+  // Statements not in use by SQL, in order of their last use, least recent first.
+  private final LinkedHashMap<String, PreparedStatement> statementsBySql = new LinkedHashMap<>();
+  private boolean closed;
+
+  public PreparedStatementCache(Connection conn, int maxStatements)
+  {
+    if (maxStatements < 1)
+      throw new IllegalArgumentException("Max statements must be at least 1.");
+    this.conn = conn;
+    this.maxStatements = maxStatements;
+  }
+
+  public Connection connection() { return conn; }
+
+  public synchronized int size() { return statementsBySql.size(); }
+
+  // Take a statement for the SQL out of the cache, or prepare one if none is cached.
+  synchronized PreparedStatement take(String sql)
+    throws SQLException
+  {
+    if (closed)
+      throw new IllegalStateException("Prepared statement cache is closed.");
+
+    @Nullable PreparedStatement ps = statementsBySql.remove(sql);
+    if (ps != null && !ps.isClosed())
+      return ps;
+
+    return conn.prepareStatement(sql);
+  }
+
+  // Return a statement taken from the cache once it is no longer in use, closing it instead if the cache is closed
+  // or already has a statement for its SQL, and closing any least recently used statements beyond the maximum.
+  synchronized void release(String sql, PreparedStatement ps)
+    throws SQLException
+  {
+    if (closed || statementsBySql.containsKey(sql))
+    {
+      ps.close();
+      return;
+    }
+
+    statementsBySql.put(sql, ps);
+
+    List<PreparedStatement> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, PreparedStatement>> lruEntries = statementsBySql.entrySet().iterator();
+    while (statementsBySql.size() > maxStatements)
+    {
+      evicted.add(lruEntries.next().getValue());
+      lruEntries.remove();
+    }
+    closeAll(evicted);
+  }
+
+  @Override
+  public synchronized void close()
+    throws SQLException
+  {
+    closed = true;
+    List<PreparedStatement> statements = new ArrayList<>(statementsBySql.values());
+    statementsBySql.clear();
+    closeAll(statements);
+  }
+
+  // Close all the statements, throwing the first failure to close a statement after attempting to close the rest.
+  private static void closeAll(List<PreparedStatement> statements)
+    throws SQLException
+  {
+    @Nullable SQLException failure = null;
+    for (PreparedStatement ps : statements)
+    {
+      try
+      {
+        ps.close();
+      }
+      catch (SQLException e)
+      {
+        if (failure == null)
+          failure = e;
+        else
+          failure.addSuppressed(e);
+      }
+    }
+    if (failure != null)
+      throw failure;
+  }
+}
@@ -0,0 +1,379 @@
+package sjq.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.jetbrains.annotations.Nullable;
+
+// Executes generated queries over JDBC, binding named parameter values and reading the query's JSON results into
+// its result class. The JSON value of each result row is parsed as it is read from the row's character stream,
+// without first being read into a string. A row's value may be a JSON object, as for JSON_OBJECT_ROWS, which is read
+// as a single result, or a JSON array, as for JSON_ARRAY_ROW, whose elements are read as results one at a time as
+// they are consumed, while a null value holds no results. Results for the MULTI_COLUMN_ROWS representation are not
+// supported. Results are read with the JSON reader generated for the result class when there is one (see
+// GeneratedQuery.jsonResultReader()), or else with the object mapper. SQL resources are loaded with the query
+// class's class loader, under a given resource path, and are parsed into positional form only once per query class.
+// Queries are executed either on a connection, with a newly prepared statement, or with the statements of a
+// PreparedStatementCache for reuse across executions.
+public class QueryExecutor
+{
+  private final ObjectMapper objectMapper;
+  private final String sqlResourcesPath;
+  private final int fetchSize;
+  private final ClassValue<ConcurrentMap<String, NamedParameterSql>> sqlsByQueryClass = new ClassValue<>()
+  {
+    @Override
+    protected ConcurrentMap<String, NamedParameterSql> computeValue(Class<?> queryClass)
+    {
+      return new ConcurrentHashMap<>(); // by SQL resource name
+    }
+  };
+
+  // The SQL resources path is prefixed to a query's SQL resource name to form its resource path, and so should end
+  // with '/' unless empty. A fetch size of 0 leaves the number of rows fetched at once to the JDBC driver, which may
+  // read all rows of a result before returning the first (Postgres does so unless auto-commit is off).
+  public QueryExecutor
+    (
+      ObjectMapper objectMapper,
+      String sqlResourcesPath,
+      int fetchSize
+    )
+  {
+    if (fetchSize < 0)
+      throw new IllegalArgumentException("Fetch size must not be negative.");
+    this.objectMapper = objectMapper;
+    this.sqlResourcesPath = sqlResourcesPath;
+    this.fetchSize = fetchSize;
+  }
+
+  public QueryExecutor(ObjectMapper objectMapper, String sqlResourcesPath)
+  {
+    this(objectMapper, sqlResourcesPath, 0);
+  }
+
+  // Execute the query's SQL for a JSON result representation (see GeneratedQuery.getSqlResource()), returning its
+  // results as a lazily evaluated stream. The stream must be closed, to close the statement executing the query.
+  public <T> Stream<T> stream
+    (
+      Connection conn,
+      GeneratedQuery<T> query,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return execute(conn, null, query, null, paramValues);
+  }
+
+  public <T> Stream<T> stream
+    (
+      Connection conn,
+      GeneratedQuery<T> query,
+      @Nullable ResultRepr resultRepr,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return execute(conn, null, query, resultRepr, paramValues);
+  }
+
+  // Execute the query as with stream() on a connection, with a statement from the cache, which is returned to the
+  // cache when the stream is closed.
+  public <T> Stream<T> stream
+    (
+      PreparedStatementCache statements,
+      GeneratedQuery<T> query,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return execute(statements.connection(), statements, query, null, paramValues);
+  }
+
+  public <T> Stream<T> stream
+    (
+      PreparedStatementCache statements,
+      GeneratedQuery<T> query,
+      @Nullable ResultRepr resultRepr,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return execute(statements.connection(), statements, query, resultRepr, paramValues);
+  }
+
+  // Execute the query as with stream(), returning all of its results.
+  public <T> List<T> list
+    (
+      Connection conn,
+      GeneratedQuery<T> query,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return list(conn, query, null, paramValues);
+  }
+
+  public <T> List<T> list
+    (
+      Connection conn,
+      GeneratedQuery<T> query,
+      @Nullable ResultRepr resultRepr,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    try (Stream<T> results = stream(conn, query, resultRepr, paramValues))
+    {
+      return results.toList();
+    }
+  }
+
+  public <T> List<T> list
+    (
+      PreparedStatementCache statements,
+      GeneratedQuery<T> query,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    return list(statements, query, null, paramValues);
+  }
+
+  public <T> List<T> list
+    (
+      PreparedStatementCache statements,
+      GeneratedQuery<T> query,
+      @Nullable ResultRepr resultRepr,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    try (Stream<T> results = stream(statements, query, resultRepr, paramValues))
+    {
+      return results.toList();
+    }
+  }
+
+  private <T> Stream<T> execute
+    (
+      Connection conn,
+      @Nullable PreparedStatementCache statements,
+      GeneratedQuery<T> query,
+      @Nullable ResultRepr resultRepr,
+      Map<String, ? extends @Nullable Object> paramValues
+    )
+    throws SQLException
+  {
+    if (resultRepr == ResultRepr.MULTI_COLUMN_ROWS)
+      throw new IllegalArgumentException("Results in multi-column rows are not supported.");
+
+    NamedParameterSql sql = getSql(query, resultRepr);
+    String positionalSql = sql.positionalSql();
+
+    PreparedStatement ps = statements != null ? statements.take(positionalSql) : conn.prepareStatement(positionalSql);
+    try
+    {
+      sql.bind(ps, paramValues);
+      ps.setFetchSize(fetchSize);
+      ResultSet rs = ps.executeQuery();
+
+      var results = new JsonResultsIterator<T>(rs, objectMapper.readerFor(query.resultClass()), query);
+
+      return
+        StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED), false)
+        .onClose(() -> {
+          try
+          {
+            try
+            {
+              results.close();
+            }
+            finally
+            {
+              if (statements != null)
+                statements.release(positionalSql, ps);
+              else
+                ps.close();
+            }
+          }
+          catch (SQLException e) { throw new RuntimeException(e); }
+        });
+    }
+    catch (SQLException | RuntimeException e)
+    {
+      ps.close(); // not returned to any cache, as the statement may be unusable
+      throw e;
+    }
+  }
+
+  private NamedParameterSql getSql(GeneratedQuery<?> query, @Nullable ResultRepr resultRepr)
+  {
+    Class<?> queryClass = query.queryClass();
+    return sqlsByQueryClass.get(queryClass).computeIfAbsent(query.getSqlResource(resultRepr), sqlResource ->
+      NamedParameterSql.parse(loadSqlResource(queryClass, sqlResourcesPath + sqlResource))
+    );
+  }
+
+  private static String loadSqlResource(Class<?> queryClass, String resourcePath)
+  {
+    @Nullable ClassLoader classLoader = queryClass.getClassLoader();
+    try (@Nullable InputStream is =
+           classLoader != null ? classLoader.getResourceAsStream(resourcePath)
+           : ClassLoader.getSystemResourceAsStream(resourcePath))
+    {
+      if (is == null)
+        throw new IllegalArgumentException(
+          "SQL resource '" + resourcePath + "' for query class " + queryClass.getName() + " was not found."
+        );
+      return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) { throw new UncheckedIOException(e); }
+  }
+
+  // Iterates over the results in the JSON values of the result set's first column, reading each row's value from
+  // the column's character stream, and reading the elements of a JSON array value as they are iterated.
+  private static class JsonResultsIterator<T> implements Iterator<T>
+  {
+    private final ResultSet rs;
+    private final ObjectReader resultReader;
+    private final Class<T> resultClass;
+    private final @Nullable MethodHandle generatedResultReader;
+    private @Nullable JsonParser arrayParser; // positioned within the current row's JSON array, if any
+    private @Nullable T nextResult;
+    private boolean hasNextResult;
+
+    JsonResultsIterator(ResultSet rs, ObjectReader resultReader, GeneratedQuery<T> query)
+    {
+      this.rs = rs;
+      this.resultReader = resultReader;
+      this.resultClass = query.resultClass();
+      this.generatedResultReader = query.jsonResultReader();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      if (!hasNextResult)
+      {
+        try
+        {
+          hasNextResult = readNextResult();
+        }
+        catch (SQLException e) { throw new RuntimeException(e); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+      }
+      return hasNextResult;
+    }
+
+    @Override
+    public @Nullable T next() // a result may be null as a JSON array element
+    {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      hasNextResult = false;
+      @Nullable T result = nextResult;
+      nextResult = null;
+      return result;
+    }
+
+    private boolean readNextResult()
+      throws SQLException, IOException
+    {
+      while (true)
+      {
+        if (arrayParser != null)
+        {
+          if (arrayParser.nextToken() != JsonToken.END_ARRAY)
+          {
+            nextResult = readResult(arrayParser);
+            return true;
+          }
+          arrayParser.close();
+          arrayParser = null;
+        }
+
+        if (!rs.next())
+          return false;
+
+        // A null value, as for an empty array aggregate in some databases, contains no results.
+        @Nullable Reader json = rs.getCharacterStream(1);
+        if (json == null)
+          continue;
+
+        JsonParser parser = resultReader.createParser(json);
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NULL)
+          parser.close();
+        else if (token == JsonToken.START_OBJECT)
+        {
+          try (parser)
+          {
+            nextResult = readResult(parser);
+          }
+          return true;
+        }
+        else if (token == JsonToken.START_ARRAY)
+          arrayParser = parser;
+        else
+        {
+          parser.close();
+          throw new IllegalStateException(
+            "Expected a JSON object or array as query result row value, got " + token + "."
+          );
+        }
+      }
+    }
+
+    // Read a result from the parser positioned at the result value's first token.
+    private @Nullable T readResult(JsonParser parser)
+      throws IOException
+    {
+      if (generatedResultReader == null)
+        return resultReader.readValue(parser);
+      if (parser.hasToken(JsonToken.VALUE_NULL))
+        return null;
+      try
+      {
+        return resultClass.cast((Object)generatedResultReader.invokeExact(parser));
+      }
+      catch (IOException | RuntimeException | Error e) { throw e; }
+      catch (Throwable e) { throw new RuntimeException(e); }
+    }
+
+    void close()
+      throws SQLException
+    {
+      try
+      {
+        if (arrayParser != null)
+          arrayParser.close();
+      }
+      catch (IOException e) { throw new UncheckedIOException(e); }
+      finally
+      {
+        rs.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package sjq.runtime;
+
+// The result representations for which SQL can be generated for a query. The SQL for the JSON representations
+// yields a single JSON column: a JSON object per result row for JSON_OBJECT_ROWS, or a single row holding a JSON
+// array of the result objects for JSON_ARRAY_ROW.
+public enum ResultRepr
+{
+  MULTI_COLUMN_ROWS("MultiColumnRows"),
+  JSON_OBJECT_ROWS("JsonObjectRows"),
+  JSON_ARRAY_ROW("JsonArrayRow");
+
+  // The suffix of the SQL resource member name in a generated query class having multiple result representations.
+  private final String sqlResourceMemberSuffix;
+
+  ResultRepr(String sqlResourceMemberSuffix)
+  {
+    this.sqlResourceMemberSuffix = sqlResourceMemberSuffix;
+  }
+
+  public String sqlResourceMemberSuffix() { return sqlResourceMemberSuffix; }
+}
@@ -0,0 +1,178 @@
+package sjq.runtime;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class NamedParameterSqlTest
+{
+  @Test
+  public void replacesParametersInOrderOfOccurrence()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select * from t where a = :a and b in (:b1, :b_2)");
+
+    assertEquals("select * from t where a = ? and b in (?, ?)", sql.positionalSql());
+    assertEquals(
+      Map.of("a", List.of(1), "b1", List.of(2), "b_2", List.of(3)),
+      sql.paramPositionsByName()
+    );
+    assertEquals(List.of("a", "b1", "b_2"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void recordsEachPositionOfRepeatedParameters()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :x, :y, :x from t where :x > 0");
+
+    assertEquals("select ?, ?, ? from t where ? > 0", sql.positionalSql());
+    assertEquals(List.of(1, 3, 4), sql.paramPositionsByName().get("x"));
+    assertEquals(List.of(2), sql.paramPositionsByName().get("y"));
+  }
+
+  @Test
+  public void leavesStringLiteralsAndQuotedIdentifiersAsIs()
+  {
+    String sqlText = "select ':a', 'it''s :b', \"col:c\" from t where d = :d";
+
+    NamedParameterSql sql = NamedParameterSql.parse(sqlText);
+
+    assertEquals("select ':a', 'it''s :b', \"col:c\" from t where d = ?", sql.positionalSql());
+    assertEquals(List.of("d"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void leavesEscapeStringsAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select E'it\\'s :a', e'\\\\', 'x' || :b");
+
+    assertEquals("select E'it\\'s :a', e'\\\\', 'x' || ?", sql.positionalSql());
+    assertEquals(List.of("b"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void treatsBackslashesAsOrdinaryInPlainStrings()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select 'a\\', :b, type'x'");
+
+    assertEquals("select 'a\\', ?, type'x'", sql.positionalSql());
+  }
+
+  @Test
+  public void leavesDollarQuotedStringsAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select $$it's :a$$, $q$:b$q$, $1, x$y, :c");
+
+    assertEquals("select $$it's :a$$, $q$:b$q$, $1, x$y, ?", sql.positionalSql());
+    assertEquals(List.of("c"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void leavesCommentsAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :a -- :b\n, /* :c\n */ :d");
+
+    assertEquals("select ? -- :b\n, /* :c\n */ ?", sql.positionalSql());
+    assertEquals(List.of("a", "d"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void leavesTypeCastsAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :a::int, x::text, :b ::date");
+
+    assertEquals("select ?::int, x::text, ? ::date", sql.positionalSql());
+    assertEquals(List.of("a", "b"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void leavesArraySliceSeparatorsAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select arr[lo:hi], arr[1:2], arr[:lo : :hi], m[(i):j][k:l]");
+
+    assertEquals("select arr[lo:hi], arr[1:2], arr[? : ?], m[(i):j][k:l]", sql.positionalSql());
+    assertEquals(List.of("lo", "hi"), List.copyOf(sql.paramPositionsByName().keySet()));
+  }
+
+  @Test
+  public void leavesColonsNotFollowedByANameAsIs()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select ':', a : b, :1, :");
+
+    assertEquals("select ':', a : b, :1, :", sql.positionalSql());
+    assertTrue(sql.paramPositionsByName().isEmpty());
+  }
+
+  @Test
+  public void copiesUnterminatedTokensToTheEnd()
+  {
+    assertEquals("select 'a :b", NamedParameterSql.parse("select 'a :b").positionalSql());
+    assertEquals("select /* :b", NamedParameterSql.parse("select /* :b").positionalSql());
+    assertEquals("select $$ :b", NamedParameterSql.parse("select $$ :b").positionalSql());
+  }
+
+  @Test
+  public void bindsValuesAtEachPosition()
+    throws SQLException
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :x, :y, :x");
+    Map<Integer, Object> boundValues = new TreeMap<>();
+
+    Map<String, Object> paramValues = new HashMap<>();
+    paramValues.put("x", 1);
+    paramValues.put("y", null);
+    sql.bind(recordingStatement(boundValues), paramValues);
+
+    Map<Integer, Object> expected = new TreeMap<>();
+    expected.put(1, 1);
+    expected.put(2, null);
+    expected.put(3, 1);
+    assertEquals(expected, boundValues);
+  }
+
+  @Test
+  public void rejectsMissingValues()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :x, :y");
+
+    var e = assertThrows(
+      IllegalArgumentException.class,
+      () -> sql.bind(recordingStatement(new HashMap<>()), Map.of("x", 1))
+    );
+    assertEquals("No value was provided for query parameter 'y'.", e.getMessage());
+  }
+
+  @Test
+  public void rejectsValuesForUnknownParameters()
+  {
+    NamedParameterSql sql = NamedParameterSql.parse("select :x");
+
+    var e = assertThrows(
+      IllegalArgumentException.class,
+      () -> sql.bind(recordingStatement(new HashMap<>()), Map.of("x", 1, "z", 2, "w", 3))
+    );
+    assertEquals("Values were provided for unknown query parameters [w, z].", e.getMessage());
+  }
+
+  // A prepared statement recording the values set by position, supporting only setObject().
+  private static PreparedStatement recordingStatement(Map<Integer, Object> boundValues)
+  {
+    return (PreparedStatement) Proxy.newProxyInstance(
+      NamedParameterSqlTest.class.getClassLoader(),
+      new Class<?>[] { PreparedStatement.class },
+      (proxy, method, args) -> {
+        if (!method.getName().equals("setObject") || args.length != 2)
+          throw new UnsupportedOperationException(method.getName());
+        boundValues.put((Integer) args[0], args[1]);
+        return null;
+      }
+    );
+  }
+}
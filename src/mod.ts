@@ -1,12 +1,17 @@
 import * as path from 'path';
 import {promises as fs} from 'fs';
+import {createHash} from 'crypto';
 import {readTextFile, requireFileExists, writeTextFile} from './util/files';
 import {parseArgs, parseBoolOption} from './util/args';
 import {Nullable, replaceAll} from './util/mod';
-import {QueryGroupSpec, ResultRepr, SpecError} from './query-specs';
+import {getQueryTables, QueryGroupSpec, ResultRepr, SpecError} from './query-specs';
 import {SourceGenerationOptions, SourceLanguage} from './source-generation-options';
 import {QueryPropertiesMetadata} from './query-props-md-gen';
-import {DatabaseMetadata, GeneratedResultTypes, GeneratedSql, generateQueryGroupSources, parseStoredDatabaseMetadata} from './lib';
+import {
+  combineDbmdShards, DatabaseMetadata, GeneratedResultTypes, GeneratedSql, generateQueryGroupSources,
+  getShardsContainingRelations, isDbmdShardManifest, makeRelId, parseStoredDatabaseMetadata,
+  parseStoredDatabaseMetadataOrShardManifest, StoredDatabaseMetadata
+} from './lib';
 
 export * from './lib';
 export * from './dbmd/gen/gen-dbmd-lib';
@@ -24,6 +29,7 @@ export interface QueryGenerationOptions
   readonly javaBaseOutputDir?: Nullable<string>;
   readonly javaPackage?: Nullable<string>;
   readonly javaEmitRecords?: Nullable<boolean>;
+  readonly javaEmitJsonReaders?: Nullable<boolean>;
   readonly javaTypesHeaderFile?: Nullable<string>;
 }
 
@@ -41,7 +47,7 @@ export async function generateQueriesWithArgvOptions
     'sqlSpecDir',
     'propsMdDir',
     'tsDir', 'tsTypesHeader',
-    'javaBaseDir', 'javaPackage', 'javaTypesHeader', 'javaEmitRecords'
+    'javaBaseDir', 'javaPackage', 'javaTypesHeader', 'javaEmitRecords', 'javaEmitJsonReaders'
   ];
 
   const parsedArgs = parseArgs(args, requiredNamedArgs, optionalNamedArgs, 0);
@@ -58,6 +64,7 @@ export async function generateQueriesWithArgvOptions
     javaBaseOutputDir: parsedArgs['javaBaseDir'],
     javaPackage: parsedArgs['javaPackage'] ?? '',
     javaEmitRecords: parseBoolOption(parsedArgs['javaEmitRecords'] ?? 'true', 'javaEmitRecords'),
+    javaEmitJsonReaders: parseBoolOption(parsedArgs['javaEmitJsonReaders'] ?? 'false', 'javaEmitJsonReaders'),
     javaTypesHeaderFile: parsedArgs['javaTypesHeader'],
   };
 
@@ -98,14 +105,15 @@ export async function generateQueries
 {
   // Generate SQL source files if specified.
 
-  const dbmd = await readDatabaseMetadata(opts.dbmdFile);
+  const dbmd = await readDatabaseMetadata(opts.dbmdFile, queryGroupSpec);
 
   const srcGenOpts: SourceGenerationOptions = {
     resultTypeLanguages: resultTypeLanguages(opts),
     typesHeaders: await readTypesHeaderFiles(opts),
     customPropertyTypeFn: null, // not available for command line executions
     javaPackage: opts.javaPackage,
-    javaEmitRecords: opts.javaEmitRecords
+    javaEmitRecords: opts.javaEmitRecords,
+    javaEmitJsonReaders: opts.javaEmitJsonReaders
   };
 
   const querySourcess = generateQueryGroupSources(queryGroupSpec, dbmd, srcGenOpts);
@@ -219,11 +227,43 @@ async function writePropertiesMetadata
   );
 }
 
-async function readDatabaseMetadata(dbmdFile: string): Promise<DatabaseMetadata>
+// Read the database metadata file, which if it is a shard manifest is read together with just the shards containing
+// the tables of the queries.
+async function readDatabaseMetadata
+  (
+    dbmdFile: string,
+    queryGroupSpec: QueryGroupSpec
+  )
+  : Promise<DatabaseMetadata>
 {
   const jsonText = await readTextFile(dbmdFile);
-  const dbmdStoredProps = parseStoredDatabaseMetadata(jsonText);
-  return new DatabaseMetadata(dbmdStoredProps);
+  const dbmdOrManifest = parseStoredDatabaseMetadataOrShardManifest(jsonText);
+
+  if (!isDbmdShardManifest(dbmdOrManifest))
+    return new DatabaseMetadata(dbmdOrManifest);
+
+  const manifest = dbmdOrManifest;
+  const relIds = queryGroupSpec.querySpecs.flatMap(querySpec =>
+    getQueryTables(querySpec).map(table =>
+      makeRelId(table, queryGroupSpec.defaultSchema, manifest.caseSensitivity)
+    )
+  );
+
+  const shardDbmds = await Promise.all(
+    getShardsContainingRelations(manifest, relIds).map(shard =>
+      readDatabaseMetadataShard(path.join(path.dirname(dbmdFile), shard.file), shard.hash)
+    )
+  );
+
+  return new DatabaseMetadata(combineDbmdShards(manifest, shardDbmds));
+}
+
+async function readDatabaseMetadataShard(shardFile: string, hash: string): Promise<StoredDatabaseMetadata>
+{
+  const bytes = await fs.readFile(shardFile);
+  if (createHash('sha256').update(bytes).digest('hex') !== hash)
+    throw new Error(`Database metadata shard file ${shardFile} does not match its hash in the shard manifest.`);
+  return parseStoredDatabaseMetadata(bytes.toString('utf8'));
 }
 
 async function createOutputDirs(opts: QueryGenerationOptions): Promise<void>
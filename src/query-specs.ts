@@ -156,6 +156,25 @@ function getParamNames(tableJsonSpec: TableJsonSpec): string[]
   return paramNames;
 }
 
+// Get the tables of the query's table json specs, as written in the specs.
+export function getQueryTables(querySpec: QuerySpec): string[]
+{
+  return getTables(querySpec.tableJson);
+}
+
+function getTables(tableJsonSpec: TableJsonSpec): string[]
+{
+  const tables = [tableJsonSpec.table];
+
+  for (const childSpec of tableJsonSpec.childTables || [])
+    tables.push(...getTables(childSpec));
+
+  for (const parentSpec of tableJsonSpec.parentTables || [])
+    tables.push(...getTables(parentSpec));
+
+  return tables;
+}
+
 export function addLocPart(specLoc: SpecLocation, addPart: string)
 {
   return {
@@ -5,6 +5,7 @@ import {
   NamedResultTypeSpec,
   ParentReferenceResultTypeProperty,
   requireNamedResultType,
+  ResultTypeProperty,
   TableExpressionResultTypeProperty,
   TableFieldResultTypeProperty,
 } from '../result-type-specs';
@@ -35,6 +36,9 @@ export default function makeSource
     indentLines(`public static final Class<${resType}> resultClass = ${resType}.class;`, 2) + '\n\n'
     : '';
 
+  const jsonReadersMember = !opts?.javaEmitJsonReaders ? '' :
+    indentLines(jsonReadersDeclaration(resultTypeSpecs, opts), 2) + '\n';
+
   const compilationUnitNameNoExt = makeCompilationUnitNameNoExt(queryName);
 
   return {
@@ -42,7 +46,7 @@ export default function makeSource
     sourceCode:
       (opts?.javaPackage ? `package ${opts.javaPackage};\n\n` : '') +
       typesFileHeaders(opts, queryTypesFileHeader) +
-      standardImports + '\n\n' +
+      standardImports + (opts?.javaEmitJsonReaders ? jsonReaderImports : '') + '\n\n' +
       `public class ${compilationUnitNameNoExt}\n` +
       '{\n' +
         sqlPathMembers +
@@ -50,6 +54,7 @@ export default function makeSource
         "  // Below are types representing the result data for the generated query, with top-level result type first.\n\n" +
         topResultTypeRef +
         indentLines(resultTypeDeclarations(resultTypeSpecs, opts), 2) + '\n' +
+        jsonReadersMember +
       '}\n'
   };
 }
@@ -117,19 +122,9 @@ function makeResultTypeDeclaration
   const emitRecords: boolean = opts?.javaEmitRecords ?? true;
   const vis = emitRecords ? '' : 'public ';
 
-  const decls = resType.properties.map(prop => {
-    switch(prop.type)
-    {
-      case 'rtp-field':
-        return `${vis}${tableFieldType(prop, resType, opts)} ${prop.propertyName}`;
-      case 'rtp-expr':
-        return `${vis}${tableExprType(prop, opts)} ${prop.propertyName}`;
-      case 'rtp-parent-ref':
-        return `${vis}${parentRefType(prop)} ${prop.propertyName}`;
-      case 'rtp-child-coll':
-        return `${vis}${childCollType(prop, opts)} ${prop.propertyName}`;
-    }
-  });
+  const decls = resType.properties.map(prop =>
+    `${vis}${propertyType(prop, resType, opts)} ${prop.propertyName}`
+  );
 
   if (emitRecords) return (
     `public record ${resType.resultTypeName}(\n` +
@@ -145,6 +140,199 @@ function makeResultTypeDeclaration
   );
 }
 
+function propertyType
+  (
+    prop: ResultTypeProperty,
+    inResType: NamedResultTypeSpec,
+    opts: SourceGenerationOptions
+  )
+  : string
+{
+  switch(prop.type)
+  {
+    case 'rtp-field':
+      return tableFieldType(prop, inResType, opts);
+    case 'rtp-expr':
+      return tableExprType(prop, opts);
+    case 'rtp-parent-ref':
+      return parentRefType(prop);
+    case 'rtp-child-coll':
+      return childCollType(prop, opts);
+  }
+}
+
+// Declare a class of static methods to read each (non-unwrapped) result type from JSON, driving a JsonParser
+// directly with code specific to the result type, as an alternative to reading the result types via reflection
+// with Jackson's ObjectMapper.
+function jsonReadersDeclaration
+  (
+    resultTypes: NamedResultTypeSpec[],
+    opts: SourceGenerationOptions
+  )
+  : string
+{
+  const readableTypeNames = new Set(resultTypes.filter(rt => !rt.unwrapped).map(rt => rt.resultTypeName));
+  const helpers = new Set<JsonReaderHelper>();
+
+  const readers = resultTypes.flatMap(resType =>
+    resType.unwrapped ? [] : [ jsonReaderMethod(resType, readableTypeNames, helpers, opts) ]
+  );
+
+  const helperDecls = jsonReaderHelpers.filter(h => helpers.has(h.name)).map(h => h.declaration);
+
+  return (
+    '// Readers for the result types above which drive a JsonParser directly, without reflection. A reader is\n' +
+    '// called with the parser at the START_OBJECT token of its object, and leaves the parser at the object\'s\n' +
+    '// END_OBJECT token. Properties of other types are read via the parser\'s codec, normally an ObjectMapper.\n' +
+    '@SuppressWarnings("nullness") // because property values are held in locals which start as null\n' +
+    'public static final class JsonReaders\n' +
+    '{\n' +
+      '  private JsonReaders() {}\n\n' +
+      indentLines([...readers, ...helperDecls].join('\n\n'), 2) + '\n' +
+    '}\n'
+  );
+}
+
+function jsonReaderMethod
+  (
+    resType: NamedResultTypeSpec,
+    readableTypeNames: Set<string>,
+    helpers: Set<JsonReaderHelper>,
+    opts: SourceGenerationOptions
+  )
+  : string
+{
+  const typeName = resType.resultTypeName;
+  const emitRecords: boolean = opts?.javaEmitRecords ?? true;
+
+  // Locals holding property values are named for their properties, so other locals end with '_' to avoid clashes.
+  const props = resType.properties.map(prop => ({
+    name: prop.propertyName,
+    type: propertyType(prop, resType, opts)
+  }));
+
+  const localDecls = props.map(prop => `${prop.type} ${prop.name} = ${javaDefaultValue(prop.type)};`);
+
+  const readCases = props.map(prop => {
+    const readExpr = jsonValueReadExpression(prop.type, 'p_', readableTypeNames, helpers);
+    return `case "${prop.name}": ${prop.name} = ${readExpr}; break;`;
+  });
+
+  const construction = emitRecords ?
+    [ `return new ${typeName}(${props.map(prop => prop.name).join(', ')});` ]
+    : [
+        `${typeName} res_ = new ${typeName}();`,
+        ...props.map(prop => `res_.${prop.name} = ${prop.name};`),
+        'return res_;'
+      ];
+
+  return (
+    `public static ${typeName} read${typeName}(JsonParser p_) throws IOException\n` +
+    '{\n' +
+      (localDecls.length > 0 ? indentLines(localDecls.join('\n'), 2) + '\n\n' : '') +
+      '  for (String field_ = p_.nextFieldName(); field_ != null; field_ = p_.nextFieldName())\n' +
+      '  {\n' +
+      '    p_.nextToken();\n' +
+      '    switch (field_)\n' +
+      '    {\n' +
+      (readCases.length > 0 ? indentLines(readCases.join('\n'), 6) + '\n' : '') +
+      '      default: p_.skipChildren();\n' +
+      '    }\n' +
+      '  }\n\n' +
+      indentLines(construction.join('\n'), 2) + '\n' +
+    '}'
+  );
+}
+
+// Make an expression reading a value of the given Java type from the parser positioned at the value's first token.
+function jsonValueReadExpression
+  (
+    javaType: string,
+    parserVar: string,
+    readableTypeNames: Set<string>,
+    helpers: Set<JsonReaderHelper>
+  )
+  : string
+{
+  const type = javaType.replace(/^@Nullable\s+/, '');
+
+  const nonNullValueExpr = ((): string => {
+    switch (type)
+    {
+      case 'int': case 'Integer': return `${parserVar}.getValueAsInt()`;
+      case 'long': case 'Long': return `${parserVar}.getValueAsLong()`;
+      case 'double': case 'Double': return `${parserVar}.getValueAsDouble()`;
+      case 'boolean': case 'Boolean': return `${parserVar}.getValueAsBoolean()`;
+      case 'String': return `${parserVar}.getValueAsString()`;
+      case 'BigDecimal':
+        helpers.add('readBigDecimal');
+        return `readBigDecimal(${parserVar})`;
+    }
+
+    if (readableTypeNames.has(type))
+      return `read${type}(${parserVar})`;
+
+    const listElType = type.match(/^List<(.+)>$/)?.[1];
+    if (listElType != null)
+    {
+      helpers.add('readList');
+      const elParserVar = parserVar.replace(/_$/, '') + 'e_';
+      const elReadExpr = jsonValueReadExpression(listElType, elParserVar, readableTypeNames, helpers);
+      return `readList(${parserVar}, ${elParserVar} -> ${elReadExpr})`;
+    }
+
+    return type.includes('<') ?
+      `${parserVar}.readValueAs(new com.fasterxml.jackson.core.type.TypeReference<${type}>() {})`
+      : `${parserVar}.readValueAs(${type}.class)`;
+  })();
+
+  return primitiveTypeNames.has(type) ? nonNullValueExpr
+    : `${parserVar}.hasToken(JsonToken.VALUE_NULL) ? null : ${nonNullValueExpr}`;
+}
+
+function javaDefaultValue(javaType: string): string
+{
+  switch (javaType)
+  {
+    case 'boolean': return 'false';
+    case 'char': return "'\\0'";
+    default: return primitiveTypeNames.has(javaType) ? '0' : 'null';
+  }
+}
+
+const primitiveTypeNames = new Set(['int', 'long', 'double', 'float', 'boolean', 'char', 'short', 'byte']);
+
+type JsonReaderHelper = 'readList' | 'readBigDecimal';
+
+const jsonReaderHelpers: { name: JsonReaderHelper, declaration: string }[] = [
+  {
+    name: 'readList',
+    declaration:
+      '@FunctionalInterface\n' +
+      'private interface ValueReader<T>\n' +
+      '{\n' +
+      '  T read(JsonParser p) throws IOException;\n' +
+      '}\n\n' +
+      '// Read the elements of the array at whose START_ARRAY token the parser is positioned.\n' +
+      'private static <T> List<T> readList(JsonParser p, ValueReader<T> elementReader) throws IOException\n' +
+      '{\n' +
+      '  List<T> list = new ArrayList<>();\n' +
+      '  while (p.nextToken() != JsonToken.END_ARRAY)\n' +
+      '    list.add(elementReader.read(p));\n' +
+      '  return list;\n' +
+      '}'
+  },
+  {
+    name: 'readBigDecimal',
+    declaration:
+      '// Read a decimal number, which some databases represent as a string in JSON.\n' +
+      'private static BigDecimal readBigDecimal(JsonParser p) throws IOException\n' +
+      '{\n' +
+      '  return p.hasToken(JsonToken.VALUE_STRING) ? new BigDecimal(p.getText()) : p.getDecimalValue();\n' +
+      '}'
+  },
+];
+
 function tableFieldType
   (
     tfp: TableFieldResultTypeProperty,
@@ -352,6 +540,11 @@ const standardImports: string =
   'import com.fasterxml.jackson.databind.JsonNode;\n' +
   'import com.fasterxml.jackson.databind.node.*;\n';
 
+const jsonReaderImports: string =
+  'import java.io.IOException;\n' +
+  'import com.fasterxml.jackson.core.JsonParser;\n' +
+  'import com.fasterxml.jackson.core.JsonToken;\n';
+
 function makeCompilationUnitNameNoExt(queryName: string): string
 {
   return upperCamelCase(queryName);
@@ -15,4 +15,5 @@ export interface SourceGenerationOptions
   readonly customPropertyTypeFn?: Nullable<CustomPropertyTypeFn>;
   readonly javaPackage?: Nullable<string>;
   readonly javaEmitRecords?: Nullable<boolean>;
+  readonly javaEmitJsonReaders?: Nullable<boolean>;
 }
\ No newline at end of file